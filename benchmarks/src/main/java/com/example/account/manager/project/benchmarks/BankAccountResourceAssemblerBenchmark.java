@@ -0,0 +1,101 @@
+package com.example.account.manager.project.benchmarks;
+
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+
+import com.example.account.manager.project.assemblers.BankAccountResourceAssembler;
+import com.example.account.manager.project.controllers.BankAccountController;
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.core.EvoInflectorRelProvider;
+import org.springframework.hateoas.hal.Jackson2HalModule;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Стоимость построения одного Resource&lt;BankAccount&gt;: прежний вариант с linkTo(methodOn(...))
+ * на каждую ссылку против заранее вычисленных шаблонов в {@link BankAccountResourceAssembler},
+ * и то же вместе с сериализацией в HAL JSON, как в ответе контроллера.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BankAccountResourceAssemblerBenchmark {
+
+  @Param({"ACTIVE", "BLOCKED"})
+  public BankAccountStatus status;
+
+  private BankAccountResourceAssembler assembler;
+  private BankAccount bankAccount;
+  private ObjectMapper halObjectMapper;
+
+  @Setup
+  public void setUp() {
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    assembler = new BankAccountResourceAssembler();
+    bankAccount = new BankAccount(42L, new BigDecimal("10.01"), status, new User(1L, "Vladimir", "Dyakov"));
+    halObjectMapper = new ObjectMapper();
+    halObjectMapper.registerModule(new Jackson2HalModule());
+    halObjectMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(new EvoInflectorRelProvider(), null, null));
+  }
+
+  @TearDown
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Benchmark
+  public Resource<BankAccount> precomputedTemplates() {
+    return assembler.toResource(bankAccount);
+  }
+
+  @Benchmark
+  public byte[] precomputedTemplatesToJson() throws JsonProcessingException {
+    return halObjectMapper.writeValueAsBytes(assembler.toResource(bankAccount));
+  }
+
+  @Benchmark
+  public Resource<BankAccount> linkToMethodOn() {
+    Resource<BankAccount> bankAccountResource = new Resource<>(bankAccount,
+        linkTo(methodOn(BankAccountController.class).getAll(null)).withRel("bank/accounts"),
+        linkTo(methodOn(BankAccountController.class).get(bankAccount.getId(), null)).withSelfRel(),
+        linkTo(methodOn(BankAccountController.class).deleteBankAccount(bankAccount.getId())).withRel("delete")
+    );
+
+    if(bankAccount.getStatus() == BankAccountStatus.ACTIVE) {
+      bankAccountResource.add(
+          linkTo(methodOn(BankAccountController.class).depositMoney(bankAccount.getId(), null, null)).withRel("deposit"),
+          linkTo(methodOn(BankAccountController.class).withdrawMoney(bankAccount.getId(), null, null)).withRel("withdraw"),
+          linkTo(methodOn(BankAccountController.class).block(bankAccount.getId())).withRel("block")
+      );
+    } else {
+      bankAccountResource.add(
+          linkTo(methodOn(BankAccountController.class).activate(bankAccount.getId())).withRel("activate")
+      );
+    }
+
+    return bankAccountResource;
+  }
+}
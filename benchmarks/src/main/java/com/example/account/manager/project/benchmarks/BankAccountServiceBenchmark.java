@@ -0,0 +1,82 @@
+package com.example.account.manager.project.benchmarks;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.responses.TransferReceipt;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Операции BankAccountService на встроенной H2 без конкуренции: у каждого потока свои счета.
+ * Деньги ходят по кругу, поэтому остатки не кончаются при любом числе итераций.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BankAccountServiceBenchmark {
+
+  private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+  @Param({"pessimistic", "optimistic"})
+  public String locking;
+
+  private BenchmarkApplication application;
+
+  @Setup
+  public void setUp() {
+    application = new BenchmarkApplication("bank.accounts.locking=" + locking);
+  }
+
+  @TearDown
+  public void tearDown() {
+    application.close();
+  }
+
+  @State(Scope.Thread)
+  public static class Accounts {
+
+    Long first;
+    Long second;
+
+    @Setup(Level.Trial)
+    public void setUp(BankAccountServiceBenchmark benchmark) {
+      first = benchmark.application.newBankAccount(new BigDecimal("1000000.00")).getId();
+      second = benchmark.application.newBankAccount(new BigDecimal("1000000.00")).getId();
+    }
+  }
+
+  @Benchmark
+  public BankAccount depositMoney(Accounts accounts) {
+    return application.service().depositMoney(accounts.first, AMOUNT);
+  }
+
+  @Benchmark
+  public BankAccount withdrawMoney(Accounts accounts) {
+    return application.service().withdrawMoney(accounts.second, AMOUNT);
+  }
+
+  @Benchmark
+  public TransferReceipt transferMoney(Accounts accounts) {
+    TransferReceipt receipt = application.service().transferMoney(accounts.first, accounts.second, AMOUNT);
+    //меняем направление, чтобы остаток отправителя не кончился
+    Long first = accounts.first;
+    accounts.first = accounts.second;
+    accounts.second = first;
+    return receipt;
+  }
+}
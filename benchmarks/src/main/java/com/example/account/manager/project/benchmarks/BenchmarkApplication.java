@@ -0,0 +1,47 @@
+package com.example.account.manager.project.benchmarks;
+
+import com.example.account.manager.project.ApplicationStarter;
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.services.BankAccountService;
+import java.math.BigDecimal;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Приложение без веб-сервера на встроенной H2 для бенчмарков сервиса. Журнал выключен,
+ * логирование каждой операции понижено до WARN, чтобы не мерить вывод в консоль.
+ */
+final class BenchmarkApplication {
+
+  private final ConfigurableApplicationContext context;
+  private final BankAccountService service;
+  private final User owner;
+
+  BenchmarkApplication(String... properties) {
+    context = new SpringApplicationBuilder(ApplicationStarter.class)
+        .web(WebApplicationType.NONE)
+        .properties("journal.enabled=false", "logging.level.com.example.account.manager.project=WARN",
+            "logging.level.bank.operations=WARN",
+            "spring.main.banner-mode=off")
+        .properties(properties)
+        .run();
+    service = context.getBean(BankAccountService.class);
+    owner = context.getBean(UserRepository.class).save(new User("Benchmark", "Owner"));
+  }
+
+  BankAccountService service() {
+    return service;
+  }
+
+  BankAccount newBankAccount(BigDecimal balance) {
+    BankAccount bankAccount = service.createBankAccount(owner.getId());
+    return balance.signum() > 0 ? service.depositMoney(bankAccount.getId(), balance) : bankAccount;
+  }
+
+  void close() {
+    context.close();
+  }
+}
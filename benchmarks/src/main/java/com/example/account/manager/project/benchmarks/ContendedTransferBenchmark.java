@@ -0,0 +1,83 @@
+package com.example.account.manager.project.benchmarks;
+
+import com.example.account.manager.project.responses.TransferReceipt;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Переводы между случайными счетами из общего набора accounts при 1, 4 и 16 потоках.
+ * Чем меньше набор, тем чаще потоки ждут блокировки одних и тех же строк.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContendedTransferBenchmark {
+
+  private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+  @Param({"2", "16", "256"})
+  public int accounts;
+
+  @Param({"pessimistic", "optimistic"})
+  public String locking;
+
+  private BenchmarkApplication application;
+  private Long[] ids;
+
+  @Setup
+  public void setUp() {
+    application = new BenchmarkApplication("bank.accounts.locking=" + locking,
+        "bank.accounts.optimistic.max-attempts=100");
+    ids = new Long[accounts];
+    for (int i = 0; i < accounts; i++) {
+      ids[i] = application.newBankAccount(new BigDecimal("1000000.00")).getId();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    application.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public TransferReceipt threads01() {
+    return transfer();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public TransferReceipt threads04() {
+    return transfer();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public TransferReceipt threads16() {
+    return transfer();
+  }
+
+  private TransferReceipt transfer() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accounts);
+    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+    return application.service().transferMoney(ids[from], ids[to], AMOUNT);
+  }
+}
@@ -0,0 +1,93 @@
+package com.example.account.manager.project.benchmarks;
+
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import com.example.account.manager.project.journal.BankAccountJournal;
+import com.example.account.manager.project.journal.JournalState;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Время запуска хранилища счетов: запись снимка, восстановление по снимку и хвосту журнала
+ * и, для сравнения, проигрывание всего журнала. История - создание и пополнение каждого счёта,
+ * хвост - tail переводов после снимка. Пропускная способность - accounts / время операции.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalSnapshotBenchmark {
+
+  @Param({"100000", "1000000"})
+  public int accounts;
+
+  @Param({"10000"})
+  public int tail;
+
+  private Path directory;
+  private JournalState state;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("journal-benchmark");
+    BankAccountJournal journal = new BankAccountJournal(directory.toString(), 64, 10);
+    journal.open();
+    BigDecimal amount = new BigDecimal("100.00");
+    for (long id = 1; id <= accounts; id++) {
+      journal.append(BankAccountOperationEvent.created(id, id, new BigDecimal("0.00")));
+      journal.append(BankAccountOperationEvent.of(BankAccountOperation.DEPOSIT, id, amount, amount));
+    }
+    state = new JournalState();
+    state.catchUp(directory);
+    state.write(directory);
+    BigDecimal transfer = new BigDecimal("0.01");
+    for (int i = 0; i < tail; i++) {
+      long from = i % accounts + 1;
+      journal.append(BankAccountOperationEvent.transfer(from, from % accounts + 1, transfer, null, null));
+    }
+    journal.close();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public Path writeSnapshot() throws IOException {
+    return state.write(directory);
+  }
+
+  @Benchmark
+  public JournalState restoreFromSnapshot() throws IOException {
+    return JournalState.restore(directory);
+  }
+
+  @Benchmark
+  public JournalState replayWholeJournal() throws IOException {
+    JournalState replayed = new JournalState();
+    replayed.catchUp(directory);
+    return replayed;
+  }
+}
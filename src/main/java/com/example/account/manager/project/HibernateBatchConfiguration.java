@@ -0,0 +1,27 @@
+package com.example.account.manager.project;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Вставки и обновления отправляются в базу пачками JDBC. Значения по умолчанию можно переопределить
+ * через spring.jpa.properties.hibernate.*.
+ */
+@Configuration
+public class HibernateBatchConfiguration {
+
+  static final int JDBC_BATCH_SIZE = 50;
+
+  @Bean
+  HibernatePropertiesCustomizer jdbcBatching() {
+    return properties -> {
+      properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(JDBC_BATCH_SIZE));
+      properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, "true");
+      properties.putIfAbsent(AvailableSettings.BATCH_VERSIONED_DATA, "true");
+      //ограничений Bean Validation у сущностей нет, а проверка перед каждой вставкой создаёт новый Validator
+      properties.putIfAbsent(AvailableSettings.JPA_VALIDATION_MODE, "none");
+    };
+  }
+}
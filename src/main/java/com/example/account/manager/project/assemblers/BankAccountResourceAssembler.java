@@ -1,38 +1,105 @@
 package com.example.account.manager.project.assemblers;
 
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 
 import com.example.account.manager.project.controllers.BankAccountController;
 import com.example.account.manager.project.entities.BankAccount;
 import com.example.account.manager.project.entities.BankAccountStatus;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.Resource;
 import org.springframework.hateoas.ResourceAssembler;
 import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMapping;
 
+/**
+ * Шаблоны ссылок вычисляются один раз по аннотациям маппинга {@link BankAccountController},
+ * для каждого счёта в них подставляется только идентификатор.
+ */
 @Component
 public class BankAccountResourceAssembler implements ResourceAssembler<BankAccount, Resource<BankAccount>> {
 
+  private final String accountsPath = LinkTemplate.mappingPath("getAll");
+  private final LinkTemplate self = new LinkTemplate("get", Link.REL_SELF);
+  private final LinkTemplate delete = new LinkTemplate("deleteBankAccount", "delete");
+  private final LinkTemplate deposit = new LinkTemplate("depositMoney", "deposit");
+  private final LinkTemplate withdraw = new LinkTemplate("withdrawMoney", "withdraw");
+  private final LinkTemplate block = new LinkTemplate("block", "block");
+  private final LinkTemplate activate = new LinkTemplate("activate", "activate");
+
   @Override
   public Resource<BankAccount> toResource(BankAccount bankAccount) {
+    return toResource(bankAccount, baseUri());
+  }
+
+  public List<Resource<BankAccount>> toResources(List<BankAccount> bankAccounts) {
+    String baseUri = baseUri();
+    List<Resource<BankAccount>> resources = new ArrayList<>(bankAccounts.size());
+    for (BankAccount bankAccount : bankAccounts) {
+      resources.add(toResource(bankAccount, baseUri));
+    }
+    return resources;
+  }
+
+  private Resource<BankAccount> toResource(BankAccount bankAccount, String baseUri) {
+    Long id = bankAccount.getId();
     Resource<BankAccount> bankAccountResource = new Resource<>(bankAccount,
-          linkTo(methodOn(BankAccountController.class).getAll()).withRel("bank/accounts"),
-          linkTo(methodOn(BankAccountController.class).get(bankAccount.getId())).withSelfRel(),
-          linkTo(methodOn(BankAccountController.class).deleteBankAccount(bankAccount.getId())).withRel("delete")
+          new Link(baseUri + accountsPath, "bank/accounts"),
+          self.expand(baseUri, id),
+          delete.expand(baseUri, id)
         );
 
     if(bankAccount.getStatus() == BankAccountStatus.ACTIVE) {
       bankAccountResource.add(
-          linkTo(methodOn(BankAccountController.class).depositMoney(bankAccount.getId(), null)).withRel("deposit"),
-          linkTo(methodOn(BankAccountController.class).withdrawMoney(bankAccount.getId(),null)).withRel("withdraw"),
-          linkTo(methodOn(BankAccountController.class).block(bankAccount.getId())).withRel("block")
+          deposit.expand(baseUri, id),
+          withdraw.expand(baseUri, id),
+          block.expand(baseUri, id)
       );
     } else {
       bankAccountResource.add(
-          linkTo(methodOn(BankAccountController.class).activate(bankAccount.getId())).withRel("activate")
+          activate.expand(baseUri, id)
       );
     }
 
     return bankAccountResource;
   }
+
+  //схема, хост и контекст текущего запроса с учётом X-Forwarded-* заголовков, как в linkTo(methodOn(...))
+  private static String baseUri() {
+    return linkTo(BankAccountController.class).toString();
+  }
+
+  private static final class LinkTemplate {
+
+    private final String rel;
+    private final String prefix;
+    private final String suffix;
+
+    LinkTemplate(String controllerMethod, String rel) {
+      String path = mappingPath(controllerMethod);
+      int start = path.indexOf('{');
+      int end = path.indexOf('}', start);
+      this.rel = rel;
+      this.prefix = path.substring(0, start);
+      this.suffix = path.substring(end + 1);
+    }
+
+    Link expand(String baseUri, Long bankAccountId) {
+      return new Link(baseUri + prefix + bankAccountId + suffix, rel);
+    }
+
+    static String mappingPath(String controllerMethod) {
+      for (Method method : BankAccountController.class.getMethods()) {
+        if (method.getName().equals(controllerMethod)) {
+          RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+          String path = mapping.path()[0];
+          return path.startsWith("/") ? path : "/" + path;
+        }
+      }
+      throw new IllegalStateException("No request mapping for BankAccountController." + controllerMethod);
+    }
+  }
 }
@@ -5,21 +5,44 @@ import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 
 import com.example.account.manager.project.assemblers.BankAccountResourceAssembler;
 import com.example.account.manager.project.entities.BankAccount;
-import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.BankAccountTransaction;
 import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.exceptions.BankAccountBatchTransferException;
+import com.example.account.manager.project.exceptions.BankAccountBulkCreateException;
 import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
-import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.example.account.manager.project.executors.ReadExecutor;
+import com.example.account.manager.project.executors.WriteExecutor;
+import com.example.account.manager.project.feed.BankAccountChangeFeed;
+import com.example.account.manager.project.executors.WritePriority;
+import com.example.account.manager.project.money.Money;
+import com.example.account.manager.project.requests.BatchTransferRequest;
+import com.example.account.manager.project.requests.BulkCreateRequest;
 import com.example.account.manager.project.requests.DepositRequest;
+import com.example.account.manager.project.requests.OwnerAccounts;
 import com.example.account.manager.project.requests.TransferRequest;
 import com.example.account.manager.project.requests.WithdrawRequest;
+import com.example.account.manager.project.responses.BalanceSummary;
+import com.example.account.manager.project.responses.BatchTransferResponse;
+import com.example.account.manager.project.responses.BulkCreateResponse;
+import com.example.account.manager.project.responses.TransferReceipt;
+import com.example.account.manager.project.services.AccountSummaryService;
+import com.example.account.manager.project.services.BankAccountQueryService;
 import com.example.account.manager.project.services.BankAccountService;
+import com.example.account.manager.project.services.BankAccountVersions;
+import com.example.account.manager.project.services.IdempotencyService;
+import com.example.account.manager.project.writers.BankAccountExportWriter;
+import com.example.account.manager.project.writers.BankAccountJsonStreamWriter;
+import com.example.account.manager.project.writers.ExportFormat;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import org.springframework.hateoas.Resource;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.hateoas.Resources;
-import org.springframework.hateoas.VndErrors;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -29,89 +52,327 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 public class BankAccountController {
 
+  static final int MAX_PAGE_LIMIT = 1000;
+  static final int DEFAULT_HISTORY_LIMIT = 100;
+  static final int MAX_BULK_ACCOUNTS = 100000;
+  static final int MAX_BATCH_TRANSFERS = 1000;
+  static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
   private final BankAccountService service;
-  private final BankAccountRepository repository;
+  private final BankAccountQueryService queries;
   private final BankAccountResourceAssembler assembler;
+  private final BankAccountJsonStreamWriter streamWriter;
+  private final BankAccountExportWriter exportWriter;
+  private final IdempotencyService idempotency;
+  private final WriteExecutor writes;
+  private final ReadExecutor reads;
+  private final AccountSummaryService summaries;
+  private final BankAccountVersions versions;
+  private final BankAccountChangeFeed changes;
 
-  BankAccountController(BankAccountService service, BankAccountRepository repository, BankAccountResourceAssembler assembler) {
+  BankAccountController(BankAccountService service, BankAccountQueryService queries, BankAccountResourceAssembler assembler,
+      BankAccountJsonStreamWriter streamWriter, BankAccountExportWriter exportWriter, IdempotencyService idempotency, WriteExecutor writes,
+      ReadExecutor reads, AccountSummaryService summaries, BankAccountVersions versions, BankAccountChangeFeed changes) {
     this.service = service;
-    this.repository = repository;
+    this.queries = queries;
     this.assembler = assembler;
+    this.streamWriter = streamWriter;
+    this.exportWriter = exportWriter;
+    this.idempotency = idempotency;
+    this.writes = writes;
+    this.reads = reads;
+    this.summaries = summaries;
+    this.versions = versions;
+    this.changes = changes;
   }
 
+  //списки и счёт отдаются с ETag; совпавший If-None-Match получает 304 Not Modified без обращения к базе
   @GetMapping(value = "/bank/accounts", produces = MediaType.APPLICATION_JSON_VALUE)
-  public Resources<Resource<BankAccount>> getAll() {
-    List<Resource<BankAccount>> accounts = repository.findAll().stream()
-        .map(assembler::toResource)
-        .collect(Collectors.toList());
-    return new Resources<>(accounts, linkTo(methodOn(BankAccountController.class).getAll()).withSelfRel());
+  public Resources<Resource<BankAccount>> getAll(WebRequest request) {
+    if (request != null && request.checkNotModified(versions.listETag())) {
+      return null;
+    }
+    return allAccounts();
+  }
+
+  //постраничная выборка по ключу: следующая страница начинается после последнего идентификатора текущей
+  @GetMapping(value = "/bank/accounts", params = "limit", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Resources<Resource<BankAccount>> getPage(@RequestParam(value = "after", defaultValue = "0") Long after,
+      @RequestParam("limit") int limit, WebRequest request) {
+    if (request != null && request.checkNotModified(versions.listETag())) {
+      return null;
+    }
+    int pageLimit = Math.max(1, Math.min(limit, MAX_PAGE_LIMIT));
+    List<Resource<BankAccount>> accounts = assembler.toResources(queries.findPageAfter(after, pageLimit));
+    Resources<Resource<BankAccount>> page = new Resources<>(accounts,
+        linkTo(methodOn(BankAccountController.class).getPage(after, pageLimit, null)).withSelfRel());
+    if (accounts.size() == pageLimit) {
+      Long lastId = accounts.get(accounts.size() - 1).getContent().getId();
+      page.add(linkTo(methodOn(BankAccountController.class).getPage(lastId, pageLimit, null)).withRel("next"));
+    }
+    return page;
+  }
+
+  @GetMapping(value = "/bank/accounts", params = {"stream=true", "!limit"}, produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> stream() {
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON_UTF8)
+        .body(streamWriter::writeAll);
   }
 
+  //выгрузки пишутся в ответ по мере чтения строк; если клиент принимает gzip, ответ сжимается
+  @GetMapping("/bank/accounts/export")
+  public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", defaultValue = "csv") String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    ExportFormat exportFormat = ExportFormat.of(format);
+    boolean gzip = acceptsGzip(acceptEncoding);
+    return export(exportFormat, gzip, out -> exportWriter.writeAccounts(exportFormat, gzip, out));
+  }
+
+  @GetMapping("/users/{userId}/statement")
+  public ResponseEntity<StreamingResponseBody> statement(@PathVariable Long userId,
+      @RequestParam(value = "from", required = false) Instant from, @RequestParam(value = "to", required = false) Instant to,
+      @RequestParam(value = "format", defaultValue = "csv") String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    ExportFormat exportFormat = ExportFormat.of(format);
+    //после начала выгрузки статус ответа уже не изменить
+    queries.requireUser(userId);
+    boolean gzip = acceptsGzip(acceptEncoding);
+    long fromMillis = from == null ? 0 : from.toEpochMilli();
+    long toMillis = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+    return export(exportFormat, gzip, out -> exportWriter.writeStatement(userId, fromMillis, toMillis, exportFormat, gzip, out));
+  }
+
+  //операции записи выполняются в WriteExecutor, поток контейнера освобождается сразу;
+  //если очередь записи заполнена, ответ 429 с заголовком Retry-After
+
+  //с заголовком Idempotency-Key повтор запроса возвращает результат первого выполнения
   @PutMapping("/bank/accounts")
-  public Resources<Resource<BankAccount>> transferMoney(@RequestBody TransferRequest request) {
-    service.transferMoney(request.getBankAccountIdFrom(), request.getBankAccountIdTo(), new BigDecimal(request.getAmount()));
-    return getAll();
+  public CompletableFuture<TransferReceipt> transferMoney(@RequestBody TransferRequest request,
+      @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+    BigDecimal amount = Money.parse(request.getAmount());
+    return writes.submit(WritePriority.HIGH, () -> idempotencyKey == null
+        ? service.transferMoney(request.getBankAccountIdFrom(), request.getBankAccountIdTo(), amount)
+        : idempotency.transferMoney(idempotencyKey, request.getBankAccountIdFrom(), request.getBankAccountIdTo(), amount));
+  }
+
+  //прежний ответ со списком всех счетов, только по явному запросу клиента; список читается вне потоков записи
+  @PutMapping(value = "/bank/accounts", params = "view=full")
+  public CompletableFuture<Resources<Resource<BankAccount>>> transferMoneyAndGetAll(@RequestBody TransferRequest request,
+      @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+    return reads.after(transferMoney(request, idempotencyKey), this::allAccounts);
+  }
+
+  @PostMapping("/bank/accounts/transfers:batch")
+  public CompletableFuture<BatchTransferResponse> transferMoneyBatch(@RequestBody BatchTransferRequest request) {
+    //все счета пакета блокируются в одной транзакции, поэтому размер пакета ограничен
+    List<TransferRequest> transfers = request.getTransfers();
+    if (request.getMode() == null || transfers == null || transfers.contains(null)) {
+      throw new BankAccountBatchTransferException("Batch transfer needs a mode and a list of transfers");
+    }
+    if (transfers.isEmpty() || transfers.size() > MAX_BATCH_TRANSFERS) {
+      throw new BankAccountBatchTransferException("Could not apply " + transfers.size() + " transfers in one batch; limit:"
+          + MAX_BATCH_TRANSFERS);
+    }
+    return writes.submit(WritePriority.LOW, () -> service.transferMoney(request.getTransfers(), request.getMode()));
   }
 
   @PostMapping("/bank/accounts")
-  public ResponseEntity<Resource<BankAccount>> newBankAccount(@RequestBody User owner) {
-    BankAccount newBankAccount = service.createBankAccount(owner.getId());
-    return ResponseEntity.created(linkTo(methodOn(BankAccountController.class).get(newBankAccount.getId())).toUri())
-        .body(assembler.toResource(newBankAccount));
+  public CompletableFuture<ResponseEntity<Resource<BankAccount>>> newBankAccount(@RequestBody User owner) {
+    return writes.submit(WritePriority.HIGH, () -> {
+      BankAccount newBankAccount = service.createBankAccount(owner.getId());
+      return ResponseEntity.created(linkTo(methodOn(BankAccountController.class).get(newBankAccount.getId(), null)).toUri())
+          .body(assembler.toResource(newBankAccount));
+    });
   }
 
-  @GetMapping(value = "/bank/accounts/{bankAccountId}", produces = MediaType.APPLICATION_JSON_VALUE)
-  public Resource<BankAccount> get(@PathVariable Long bankAccountId) {
-    return assembler.toResource(repository.findById(bankAccountId).orElseThrow(()->new BankAccountNotFoundException(bankAccountId)));
+  @PostMapping("/bank/accounts:bulk")
+  public CompletableFuture<ResponseEntity<BulkCreateResponse>> newBankAccounts(@RequestBody BulkCreateRequest request) {
+    List<OwnerAccounts> owners = request.getOwners();
+    if (owners == null || owners.isEmpty()) {
+      throw new BankAccountBulkCreateException("Bulk creation needs a list of owners");
+    }
+    long total = 0;
+    for (OwnerAccounts owner : owners) {
+      if (owner == null || owner.getOwnerId() == null || owner.getCount() < 1) {
+        throw new BankAccountBulkCreateException("Each owner needs an ownerId and a positive count of bank accounts");
+      }
+      total += owner.getCount();
+    }
+    if (total == 0 || total > MAX_BULK_ACCOUNTS) {
+      throw new BankAccountBulkCreateException("Could not create " + total + " bank accounts in one request; limit:" + MAX_BULK_ACCOUNTS);
+    }
+    return writes.submit(WritePriority.LOW, () -> {
+      List<Long> ids = service.createBankAccounts(owners).stream().map(BankAccount::getId).collect(Collectors.toList());
+      return ResponseEntity.status(HttpStatus.CREATED).body(new BulkCreateResponse(ids));
+    });
   }
 
-  @DeleteMapping("/bank/accounts/{bankAccountId}/block")
-  public ResponseEntity<ResourceSupport> block(@PathVariable Long bankAccountId) {
-    BankAccount bankAccount = repository.findById(bankAccountId).orElseThrow(()->new BankAccountNotFoundException(bankAccountId));
-    if(bankAccount.getStatus() == BankAccountStatus.ACTIVE) {
-      bankAccount = service.blockBankAccount(bankAccountId);
-      return ResponseEntity.ok(assembler.toResource(bankAccount));
+  @GetMapping(value = "/users/{userId}/accounts", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Resources<Resource<BankAccount>> getByUser(@PathVariable Long userId, WebRequest request) {
+    if (request != null && request.checkNotModified(versions.listETag())) {
+      return null;
     }
+    List<Resource<BankAccount>> accounts = assembler.toResources(queries.findByUser(userId));
+    return new Resources<>(accounts, linkTo(methodOn(BankAccountController.class).getByUser(userId, null)).withSelfRel());
+  }
 
-    return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED)
-        .body(new VndErrors.VndError("Method not allowed", "You can't block bank account that is in the " + bankAccount.getStatus() + " status"));
+  //итоги читаются из счётчиков, которые обновляются вместе со счетами
+  @GetMapping(value = "/users/{userId}/summary", produces = MediaType.APPLICATION_JSON_VALUE)
+  public BalanceSummary getUserSummary(@PathVariable Long userId) {
+    return summaries.userSummary(userId);
   }
 
-  @DeleteMapping("/bank/accounts/{bankAccountId}/delete")
-  public  Resources<Resource<BankAccount>> deleteBankAccount(@PathVariable Long bankAccountId) {
-    service.deleteBankAccount(bankAccountId);
-    return getAll();
+  @GetMapping(value = "/bank/accounts/summary", produces = MediaType.APPLICATION_JSON_VALUE)
+  public BalanceSummary getSummary() {
+    return summaries.totalSummary();
   }
 
-  @PutMapping("bank/accounts/{bankAccountId}/activate")
-  public ResponseEntity<ResourceSupport> activate(@PathVariable Long bankAccountId) {
-    BankAccount bankAccount = repository.findById(bankAccountId).orElseThrow(()->new BankAccountNotFoundException(bankAccountId));
-    if(bankAccount.getStatus() == BankAccountStatus.BLOCKED) {
-      bankAccount = service.activateBankAccount(bankAccountId);
-      return ResponseEntity.ok(assembler.toResource(bankAccount));
+  //лента изменений вместо опроса списка счетов; браузерный EventSource сам присылает Last-Event-ID при переподключении
+  @GetMapping(value = "/bank/accounts/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter getChanges(@RequestParam(value = "bankAccountId", required = false) Long bankAccountId,
+      @RequestParam(value = "userId", required = false) Long userId,
+      @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+    return changes.subscribe(bankAccountId, userId, lastEventId);
+  }
+
+  //история за [from, to) по времени операции; следующая страница начинается со времени и идентификатора
+  //последней записи текущей, незаданные from и to в ссылки не попадают
+  @GetMapping(value = "/bank/accounts/{bankAccountId}/transactions", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Resources<BankAccountTransaction> getTransactions(@PathVariable Long bankAccountId,
+      @RequestParam(value = "from", required = false) Instant from, @RequestParam(value = "to", required = false) Instant to,
+      @RequestParam(value = "after", defaultValue = "0") Long after,
+      @RequestParam(value = "limit", defaultValue = "" + DEFAULT_HISTORY_LIMIT) int limit) {
+    int pageLimit = Math.max(1, Math.min(limit, MAX_PAGE_LIMIT));
+    List<BankAccountTransaction> transactions = queries.findTransactions(bankAccountId, from == null ? 0 : from.toEpochMilli(),
+        to == null ? Long.MAX_VALUE : to.toEpochMilli(), after, pageLimit);
+    Resources<BankAccountTransaction> page = new Resources<>(transactions,
+        linkTo(methodOn(BankAccountController.class).getTransactions(bankAccountId, from, to, after, pageLimit)).withSelfRel().expand());
+    if (transactions.size() == pageLimit) {
+      BankAccountTransaction last = transactions.get(transactions.size() - 1);
+      page.add(linkTo(methodOn(BankAccountController.class).getTransactions(bankAccountId, last.getTime(), to, last.getId(), pageLimit))
+          .withRel("next").expand());
+    }
+    return page;
+  }
+
+  @GetMapping(value = "/bank/accounts/{bankAccountId}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Resource<BankAccount> get(@PathVariable Long bankAccountId, WebRequest request) {
+    String eTag = versions.accountETag(bankAccountId);
+    if (eTag != null && request != null && request.checkNotModified(eTag)) {
+      return null;
+    }
+    long stamp = versions.stamp();
+    BankAccount bankAccount = queries.findById(bankAccountId).orElseThrow(()->new BankAccountNotFoundException(bankAccountId));
+    if (eTag == null && request != null && request.checkNotModified(versions.existingAccountETag(bankAccountId, stamp))) {
+      return null;
     }
+    return assembler.toResource(bankAccount);
+  }
+
+  //статус проверяется сервисом в том же update, счёт не в том статусе - 405 Method Not Allowed
+  @DeleteMapping("/bank/accounts/{bankAccountId}/block")
+  public CompletableFuture<ResponseEntity<ResourceSupport>> block(@PathVariable Long bankAccountId) {
+    return writes.submit(WritePriority.HIGH, () -> ResponseEntity.ok(assembler.toResource(service.blockBankAccount(bankAccountId))));
+  }
+
+  @DeleteMapping("/bank/accounts/{bankAccountId}/delete")
+  public CompletableFuture<ResponseEntity<Void>> deleteBankAccount(@PathVariable Long bankAccountId) {
+    return writes.submit(WritePriority.HIGH, () -> {
+      service.deleteBankAccount(bankAccountId);
+      return ResponseEntity.noContent().build();
+    });
+  }
 
-    return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED)
-        .body(new VndErrors.VndError("Method not allowed", "You can't activate bank account that is in the " + bankAccount.getStatus() + " status"));
+  @DeleteMapping(value = "/bank/accounts/{bankAccountId}/delete", params = "view=full")
+  public CompletableFuture<Resources<Resource<BankAccount>>> deleteBankAccountAndGetAll(@PathVariable Long bankAccountId) {
+    return reads.after(deleteBankAccount(bankAccountId), this::allAccounts);
+  }
+
+  @PutMapping("bank/accounts/{bankAccountId}/activate")
+  public CompletableFuture<ResponseEntity<ResourceSupport>> activate(@PathVariable Long bankAccountId) {
+    return writes.submit(WritePriority.HIGH, () -> ResponseEntity.ok(assembler.toResource(service.activateBankAccount(bankAccountId))));
   }
 
   @PutMapping("bank/accounts/{bankAccountId}/deposit/money")
-  public ResponseEntity<ResourceSupport> depositMoney(@PathVariable Long bankAccountId, @RequestBody DepositRequest request) {
-    BankAccount bankAccount = service.depositMoney(bankAccountId, new BigDecimal(request.getAmount()));
-    return ResponseEntity.ok(assembler.toResource(bankAccount));
+  public CompletableFuture<ResponseEntity<ResourceSupport>> depositMoney(@PathVariable Long bankAccountId,
+      @RequestBody DepositRequest request, @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+    BigDecimal amount = Money.parse(request.getAmount());
+    return writes.submit(WritePriority.HIGH, () -> {
+      BankAccount bankAccount = idempotencyKey == null
+          ? service.depositMoney(bankAccountId, amount)
+          : idempotency.depositMoney(idempotencyKey, bankAccountId, amount);
+      return ResponseEntity.ok(assembler.toResource(bankAccount));
+    });
   }
 
   @PutMapping("bank/accounts/{bankAccountId}/withdraw/money")
-  public ResponseEntity<ResourceSupport> withdrawMoney(@PathVariable Long bankAccountId, @RequestBody WithdrawRequest request) {
-    BankAccount bankAccount = service.withdrawMoney(bankAccountId, new BigDecimal(request.getAmount()));
-    return ResponseEntity.ok(assembler.toResource(bankAccount));
+  public CompletableFuture<ResponseEntity<ResourceSupport>> withdrawMoney(@PathVariable Long bankAccountId,
+      @RequestBody WithdrawRequest request, @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+    BigDecimal amount = Money.parse(request.getAmount());
+    return writes.submit(WritePriority.HIGH, () -> {
+      BankAccount bankAccount = idempotencyKey == null
+          ? service.withdrawMoney(bankAccountId, amount)
+          : idempotency.withdrawMoney(idempotencyKey, bankAccountId, amount);
+      return ResponseEntity.ok(assembler.toResource(bankAccount));
+    });
+  }
+
+  private Resources<Resource<BankAccount>> allAccounts() {
+    List<Resource<BankAccount>> accounts = assembler.toResources(queries.findAll());
+    return new Resources<>(accounts, linkTo(methodOn(BankAccountController.class).getAll(null)).withSelfRel());
   }
 
+  private static ResponseEntity<StreamingResponseBody> export(ExportFormat format, boolean gzip, StreamingResponseBody body) {
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+        .contentType(new MediaType(MediaType.parseMediaType(format.getContentType()), StandardCharsets.UTF_8))
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+    return response.body(body);
+  }
 
+  //gzip с q=0 - отказ; без явного gzip решает "*"
+  private static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    double gzip = -1;
+    double any = -1;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim().toLowerCase();
+      if (name.equals("gzip") || name.equals("x-gzip")) {
+        gzip = Math.max(gzip, quality(parts));
+      } else if (name.equals("*")) {
+        any = quality(parts);
+      }
+    }
+    return gzip >= 0 ? gzip > 0 : any > 0;
+  }
 
+  private static double quality(String[] parts) {
+    for (int i = 1; i < parts.length; i++) {
+      String parameter = parts[i].trim();
+      if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+        try {
+          return Double.parseDouble(parameter.substring(2).trim());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
 }
@@ -0,0 +1,67 @@
+package com.example.account.manager.project.entities;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import lombok.Data;
+
+/**
+ * Число счетов и их суммарный остаток владельца в одном статусе. Строки владельца ALL_USERS хранят итог
+ * по всем владельцам. Итоги владельцев и общий итог разбиты на несколько частей (stripe), чтобы параллельные
+ * операции не ждали одну строку; итог статуса - сумма его частей.
+ */
+@Data
+@Entity
+@IdClass(AccountSummary.Key.class)
+public class AccountSummary {
+
+  public static final long ALL_USERS = 0L;
+
+  @Id
+  private Long ownerId;
+
+  @Id
+  @Enumerated(EnumType.STRING)
+  @Column(length = 7)
+  private BankAccountStatus status;
+
+  @Id
+  private int stripe;
+
+  private long accountCount;
+
+  //в копейках
+  private long balance;
+
+  public AccountSummary() {
+  }
+
+  public AccountSummary(Long ownerId, BankAccountStatus status, int stripe, long accountCount, long balance) {
+    this.ownerId = ownerId;
+    this.status = status;
+    this.stripe = stripe;
+    this.accountCount = accountCount;
+    this.balance = balance;
+  }
+
+  @Data
+  public static class Key implements Serializable {
+
+    private Long ownerId;
+    private BankAccountStatus status;
+    private int stripe;
+
+    public Key() {
+    }
+
+    public Key(Long ownerId, BankAccountStatus status, int stripe) {
+      this.ownerId = ownerId;
+      this.status = status;
+      this.stripe = stripe;
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package com.example.account.manager.project.entities;
 
+import com.example.account.manager.project.money.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -8,21 +11,29 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import lombok.Data;
+import org.hibernate.annotations.Formula;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "IDX_BANK_ACCOUNT_USER_ID", columnList = "USER_ID"))
 public class BankAccount {
 
   @Id
   @GeneratedValue(strategy= GenerationType.SEQUENCE, generator="BANK_ACCOUNT_SEQ")
-  @SequenceGenerator(name="BANK_ACCOUNT_SEQ", sequenceName="BANK_ACCOUNT_SEQ", allocationSize=1)
+  @SequenceGenerator(name="BANK_ACCOUNT_SEQ", sequenceName="BANK_ACCOUNT_SEQ", allocationSize=50)
   private Long id;
 
-  private BigDecimal balance;
+  //остаток в копейках; для горячего счёта здесь только часть остатка, остальное лежит в BankAccountSlot
+  @JsonIgnore
+  @Column(name = "BALANCE", nullable = false)
+  private long balanceMinorUnits;
 
   @Enumerated(EnumType.STRING)
   @Column(length = 7)
@@ -32,19 +43,52 @@ public class BankAccount {
   @JoinColumn(name = "USER_ID")
   private User user;
 
+  //используется только в режиме bank.accounts.locking=optimistic
+  @JsonIgnore
+  @Version
+  private Long version;
+
+  @JsonIgnore
+  private boolean hot;
+
+  @JsonIgnore
+  @Formula("(case when hot then (select coalesce(sum(s.balance), 0) from bank_account_slot s where s.bank_account_id = id) else 0 end)")
+  private long slotBalanceMinorUnits;
+
   public BankAccount() {
   }
 
-  public BankAccount(Long id, BigDecimal balance, BankAccountStatus status, User user) {
+  public BankAccount(Long id, long balanceMinorUnits, BankAccountStatus status, User user) {
     this.id = id;
-    this.balance = balance;
+    this.balanceMinorUnits = balanceMinorUnits;
     this.status = status;
     this.user = user;
   }
 
+  public BankAccount(Long id, BigDecimal balance, BankAccountStatus status, User user) {
+    this(id, Money.toMinorUnits(balance), status, user);
+  }
+
   public BankAccount(BigDecimal balance, BankAccountStatus status, User user) {
-    this.balance = balance;
-    this.status = status;
-    this.user = user;
+    this(null, balance, status, user);
+  }
+
+  @JsonIgnore
+  public BigDecimal getBalance() {
+    return Money.toDecimal(balanceMinorUnits);
+  }
+
+  public void setBalance(BigDecimal balance) {
+    this.balanceMinorUnits = Money.toMinorUnits(balance);
+  }
+
+  @JsonIgnore
+  public long getTotalBalanceMinorUnits() {
+    return Money.add(balanceMinorUnits, slotBalanceMinorUnits);
+  }
+
+  @JsonProperty("balance")
+  public BigDecimal getTotalBalance() {
+    return Money.toDecimal(getTotalBalanceMinorUnits());
   }
 }
@@ -0,0 +1,44 @@
+package com.example.account.manager.project.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * Часть остатка горячего счёта. Зачисления распределяются по частям, чтобы не ждать блокировки строки счёта.
+ */
+@Data
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"BANK_ACCOUNT_ID", "SLOT"}))
+public class BankAccountSlot {
+
+  @Id
+  @GeneratedValue(strategy= GenerationType.SEQUENCE, generator="BANK_ACCOUNT_SLOT_SEQ")
+  @SequenceGenerator(name="BANK_ACCOUNT_SLOT_SEQ", sequenceName="BANK_ACCOUNT_SLOT_SEQ", allocationSize=50)
+  private Long id;
+
+  @Column(name = "BANK_ACCOUNT_ID", nullable = false)
+  private Long bankAccountId;
+
+  @Column(nullable = false)
+  private int slot;
+
+  //в копейках
+  @Column(nullable = false)
+  private long balance;
+
+  public BankAccountSlot() {
+  }
+
+  public BankAccountSlot(Long bankAccountId, int slot, long balance) {
+    this.bankAccountId = bankAccountId;
+    this.slot = slot;
+    this.balance = balance;
+  }
+}
@@ -0,0 +1,85 @@
+package com.example.account.manager.project.entities;
+
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.money.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import lombok.Data;
+
+/**
+ * Движение денег по счёту: пополнение, снятие или одна сторона перевода. Сумма со знаком:
+ * списание отрицательное, зачисление положительное; остаток - после операции.
+ */
+@Data
+@Entity
+@Table(indexes = @Index(name = "IDX_BANK_ACCOUNT_TRANSACTION_ACCOUNT_TIME", columnList = "BANK_ACCOUNT_ID, CREATED_AT, ID"))
+public class BankAccountTransaction {
+
+  @Id
+  @GeneratedValue(strategy= GenerationType.SEQUENCE, generator="BANK_ACCOUNT_TRANSACTION_SEQ")
+  @SequenceGenerator(name="BANK_ACCOUNT_TRANSACTION_SEQ", sequenceName="BANK_ACCOUNT_TRANSACTION_SEQ", allocationSize=50)
+  private Long id;
+
+  @Column(name = "BANK_ACCOUNT_ID", nullable = false)
+  private Long bankAccountId;
+
+  //второй счёт перевода
+  private Long counterpartyId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(length = 10, nullable = false)
+  private BankAccountOperation operation;
+
+  @JsonIgnore
+  @Column(name = "AMOUNT", nullable = false)
+  private long amountMinorUnits;
+
+  @JsonIgnore
+  @Column(name = "BALANCE", nullable = false)
+  private long balanceMinorUnits;
+
+  //время операции в миллисекундах
+  @JsonIgnore
+  @Column(name = "CREATED_AT", nullable = false)
+  private long createdAt;
+
+  public BankAccountTransaction() {
+  }
+
+  public BankAccountTransaction(Long bankAccountId, Long counterpartyId, BankAccountOperation operation, long amountMinorUnits,
+      long balanceMinorUnits, long createdAt) {
+    this.bankAccountId = bankAccountId;
+    this.counterpartyId = counterpartyId;
+    this.operation = operation;
+    this.amountMinorUnits = amountMinorUnits;
+    this.balanceMinorUnits = balanceMinorUnits;
+    this.createdAt = createdAt;
+  }
+
+  @JsonProperty("amount")
+  public BigDecimal getAmount() {
+    return Money.toDecimal(amountMinorUnits);
+  }
+
+  @JsonProperty("balance")
+  public BigDecimal getBalance() {
+    return Money.toDecimal(balanceMinorUnits);
+  }
+
+  @JsonProperty("time")
+  public Instant getTime() {
+    return Instant.ofEpochMilli(createdAt);
+  }
+}
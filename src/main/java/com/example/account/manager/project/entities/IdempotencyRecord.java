@@ -0,0 +1,86 @@
+package com.example.account.manager.project.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Transient;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Запрос с заголовком Idempotency-Key. Пока операция выполняется, запись не завершена (completed = false),
+ * а claimedAt - время, когда ключ занял выполняющий её запрос;
+ * после успешной операции в ней хранится результат: счёт (или оба счёта перевода), остатки в копейках и статус.
+ * Повтор запроса с тем же ключом получает этот результат без выполнения операции.
+ */
+@Data
+@Entity
+public class IdempotencyRecord implements Persistable<String> {
+
+  public static final int MAX_KEY_LENGTH = 255;
+
+  @Id
+  @Column(length = MAX_KEY_LENGTH)
+  private String idempotencyKey;
+
+  //операция и её параметры: повтор ключа с другим запросом отклоняется
+  @Column(nullable = false)
+  private String fingerprint;
+
+  private boolean completed;
+
+  private long createdAt;
+
+  private long claimedAt;
+
+  private Long bankAccountId;
+
+  private Long counterpartyId;
+
+  private Long ownerId;
+
+  private long amount;
+
+  private long balance;
+
+  private long counterpartyBalance;
+
+  @Enumerated(EnumType.STRING)
+  @Column(length = 7)
+  private BankAccountStatus status;
+
+  //новая запись вставляется через persist, поэтому занять уже существующий ключ нельзя
+  @Transient
+  private boolean newRecord;
+
+  public IdempotencyRecord() {
+  }
+
+  public IdempotencyRecord(String idempotencyKey, String fingerprint, long createdAt) {
+    this.idempotencyKey = idempotencyKey;
+    this.fingerprint = fingerprint;
+    this.createdAt = createdAt;
+    this.claimedAt = createdAt;
+    this.newRecord = true;
+  }
+
+  @Override
+  public String getId() {
+    return idempotencyKey;
+  }
+
+  @Override
+  public boolean isNew() {
+    return newRecord;
+  }
+
+  @PostLoad
+  @PostPersist
+  void loaded() {
+    newRecord = false;
+  }
+}
@@ -20,7 +20,7 @@ public class User {
 
   @Id
   @GeneratedValue(strategy= GenerationType.SEQUENCE, generator="USER_SEQ")
-  @SequenceGenerator(name="USER_SEQ", sequenceName="USER_SEQ", allocationSize=1)
+  @SequenceGenerator(name="USER_SEQ", sequenceName="USER_SEQ", allocationSize=50)
   private Long id;
 
   private String name;
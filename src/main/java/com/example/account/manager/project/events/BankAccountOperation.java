@@ -0,0 +1,36 @@
+package com.example.account.manager.project.events;
+
+/**
+ * Коды операций неизменны: они записываются в журнал.
+ */
+public enum BankAccountOperation {
+  CREATED(1),
+  DELETED(2),
+  DEPOSIT(3),
+  WITHDRAWAL(4),
+  TRANSFER(5),
+  BLOCKED(6),
+  ACTIVATED(7);
+
+  private static final BankAccountOperation[] BY_CODE = new BankAccountOperation[8];
+
+  static {
+    for (BankAccountOperation operation : values()) {
+      BY_CODE[operation.code] = operation;
+    }
+  }
+
+  private final int code;
+
+  BankAccountOperation(int code) {
+    this.code = code;
+  }
+
+  public int getCode() {
+    return code;
+  }
+
+  public static BankAccountOperation ofCode(int code) {
+    return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+  }
+}
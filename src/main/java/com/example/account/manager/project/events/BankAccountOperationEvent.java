@@ -0,0 +1,49 @@
+package com.example.account.manager.project.events;
+
+import java.math.BigDecimal;
+import lombok.Data;
+
+/**
+ * Публикуется сервисом после каждой операции со счётом. Слушатели получают событие после фиксации транзакции,
+ * в которой прошла операция; при откате событие не доставляется.
+ */
+@Data
+public class BankAccountOperationEvent {
+
+  private final BankAccountOperation operation;
+  private final Long bankAccountId;
+  //счёт получателя для перевода, для остальных операций null
+  private final Long counterpartyId;
+  //владелец созданного счёта, для остальных операций null
+  private final Long ownerId;
+  private final BigDecimal amount;
+  private final BigDecimal balance;
+  private final BigDecimal counterpartyBalance;
+  private final long timestamp;
+
+  public BankAccountOperationEvent(BankAccountOperation operation, Long bankAccountId, Long counterpartyId, Long ownerId,
+      BigDecimal amount, BigDecimal balance, BigDecimal counterpartyBalance) {
+    this.operation = operation;
+    this.bankAccountId = bankAccountId;
+    this.counterpartyId = counterpartyId;
+    this.ownerId = ownerId;
+    this.amount = amount;
+    this.balance = balance;
+    this.counterpartyBalance = counterpartyBalance;
+    this.timestamp = System.currentTimeMillis();
+  }
+
+  public static BankAccountOperationEvent of(BankAccountOperation operation, Long bankAccountId, BigDecimal amount, BigDecimal balance) {
+    return new BankAccountOperationEvent(operation, bankAccountId, null, null, amount, balance, null);
+  }
+
+  public static BankAccountOperationEvent created(Long bankAccountId, Long ownerId, BigDecimal balance) {
+    return new BankAccountOperationEvent(BankAccountOperation.CREATED, bankAccountId, null, ownerId, null, balance, null);
+  }
+
+  public static BankAccountOperationEvent transfer(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount,
+      BigDecimal balanceFrom, BigDecimal balanceTo) {
+    return new BankAccountOperationEvent(BankAccountOperation.TRANSFER, bankAccountIdFrom, bankAccountIdTo, null, amount, balanceFrom,
+        balanceTo);
+  }
+}
@@ -0,0 +1,8 @@
+package com.example.account.manager.project.exceptions;
+
+public class BankAccountAmountException extends IllegalArgumentException {
+
+  public BankAccountAmountException(String message) {
+    super(message);
+  }
+}
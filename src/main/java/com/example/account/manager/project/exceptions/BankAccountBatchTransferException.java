@@ -0,0 +1,8 @@
+package com.example.account.manager.project.exceptions;
+
+public class BankAccountBatchTransferException extends IllegalArgumentException {
+
+  public BankAccountBatchTransferException(String message) {
+    super(message);
+  }
+}
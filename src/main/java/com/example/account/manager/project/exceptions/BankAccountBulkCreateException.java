@@ -0,0 +1,8 @@
+package com.example.account.manager.project.exceptions;
+
+public class BankAccountBulkCreateException extends IllegalArgumentException {
+
+  public BankAccountBulkCreateException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,11 @@
+package com.example.account.manager.project.exceptions;
+
+import com.example.account.manager.project.entities.BankAccountStatus;
+
+public class BankAccountStatusException extends IllegalStateException {
+
+  public BankAccountStatusException(BankAccountStatus status, BankAccountStatus requested) {
+    super("You can't " + (requested == BankAccountStatus.BLOCKED ? "block" : "activate")
+        + " bank account that is in the " + status + " status");
+  }
+}
@@ -0,0 +1,8 @@
+package com.example.account.manager.project.exceptions;
+
+public class ChangeFeedLimitException extends RuntimeException {
+
+  public ChangeFeedLimitException(int maxSubscribers) {
+    super("Too many change feed subscribers, limit is " + maxSubscribers);
+  }
+}
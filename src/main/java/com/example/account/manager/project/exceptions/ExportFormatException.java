@@ -0,0 +1,8 @@
+package com.example.account.manager.project.exceptions;
+
+public class ExportFormatException extends IllegalArgumentException {
+
+  public ExportFormatException(String format) {
+    super("Unknown export format:" + format + "; supported: csv, ndjson");
+  }
+}
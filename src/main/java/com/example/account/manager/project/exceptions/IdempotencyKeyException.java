@@ -0,0 +1,8 @@
+package com.example.account.manager.project.exceptions;
+
+public class IdempotencyKeyException extends IllegalArgumentException {
+
+  public IdempotencyKeyException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,8 @@
+package com.example.account.manager.project.exceptions;
+
+public class IdempotencyKeyInUseException extends IllegalStateException {
+
+  public IdempotencyKeyInUseException(String idempotencyKey) {
+    super("Request with Idempotency-Key:" + idempotencyKey + " is still in progress");
+  }
+}
@@ -0,0 +1,8 @@
+package com.example.account.manager.project.exceptions;
+
+public class IdempotencyKeyReusedException extends IllegalArgumentException {
+
+  public IdempotencyKeyReusedException(String idempotencyKey) {
+    super("Idempotency-Key:" + idempotencyKey + " was already used for a different request");
+  }
+}
@@ -0,0 +1,8 @@
+package com.example.account.manager.project.exceptions;
+
+public class LedgerPersistenceException extends RuntimeException {
+
+  public LedgerPersistenceException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,15 @@
+package com.example.account.manager.project.exceptions;
+
+public class WriteRejectedException extends RuntimeException {
+
+  private final long retryAfterSeconds;
+
+  public WriteRejectedException(long retryAfterSeconds) {
+    super("Too many pending write requests, retry after " + retryAfterSeconds + " s");
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
@@ -1,10 +1,25 @@
 package com.example.account.manager.project.exceptions.handlers;
 
+import com.example.account.manager.project.exceptions.BankAccountAmountException;
+import com.example.account.manager.project.exceptions.BankAccountBatchTransferException;
+import com.example.account.manager.project.exceptions.BankAccountBulkCreateException;
 import com.example.account.manager.project.exceptions.BankAccountIllegalStateException;
 import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.exceptions.BankAccountStatusException;
 import com.example.account.manager.project.exceptions.BankAccountWithdrawOperationException;
+import com.example.account.manager.project.exceptions.ChangeFeedLimitException;
+import com.example.account.manager.project.exceptions.ExportFormatException;
+import com.example.account.manager.project.exceptions.IdempotencyKeyException;
+import com.example.account.manager.project.exceptions.IdempotencyKeyInUseException;
+import com.example.account.manager.project.exceptions.IdempotencyKeyReusedException;
+import com.example.account.manager.project.exceptions.LedgerPersistenceException;
 import com.example.account.manager.project.exceptions.UserNotFoundException;
+import com.example.account.manager.project.exceptions.WriteRejectedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.hateoas.VndErrors;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -43,4 +58,89 @@ public class ApplicationExceptionAdvice {
   String bankAccountIllegalStateHandler(BankAccountIllegalStateException e) {
     return e.getMessage();
   }
+
+  @ResponseBody
+  @ExceptionHandler(BankAccountStatusException.class)
+  @ResponseStatus(HttpStatus.METHOD_NOT_ALLOWED)
+  VndErrors.VndError bankAccountStatusHandler(BankAccountStatusException e) {
+    return new VndErrors.VndError("Method not allowed", e.getMessage());
+  }
+
+  @ResponseBody
+  @ExceptionHandler(BankAccountBulkCreateException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  String bankAccountBulkCreateHandler(BankAccountBulkCreateException e) {
+    return e.getMessage();
+  }
+
+  @ResponseBody
+  @ExceptionHandler(BankAccountBatchTransferException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  String bankAccountBatchTransferHandler(BankAccountBatchTransferException e) {
+    return e.getMessage();
+  }
+
+  @ResponseBody
+  @ExceptionHandler(BankAccountAmountException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  String bankAccountAmountHandler(BankAccountAmountException e) {
+    return e.getMessage();
+  }
+
+  @ResponseBody
+  @ExceptionHandler(IdempotencyKeyException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  String idempotencyKeyHandler(IdempotencyKeyException e) {
+    return e.getMessage();
+  }
+
+  @ResponseBody
+  @ExceptionHandler(ExportFormatException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  String exportFormatHandler(ExportFormatException e) {
+    return e.getMessage();
+  }
+
+  @ResponseBody
+  @ExceptionHandler(ChangeFeedLimitException.class)
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  String changeFeedLimitHandler(ChangeFeedLimitException e) {
+    return e.getMessage();
+  }
+
+  @ResponseBody
+  @ExceptionHandler(LedgerPersistenceException.class)
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  String ledgerPersistenceHandler(LedgerPersistenceException e) {
+    return e.getMessage();
+  }
+
+  @ResponseBody
+  @ExceptionHandler(IdempotencyKeyInUseException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  String idempotencyKeyInUseHandler(IdempotencyKeyInUseException e) {
+    return e.getMessage();
+  }
+
+  @ResponseBody
+  @ExceptionHandler(IdempotencyKeyReusedException.class)
+  @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+  String idempotencyKeyReusedHandler(IdempotencyKeyReusedException e) {
+    return e.getMessage();
+  }
+
+  @ResponseBody
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  String optimisticLockingFailureHandler(OptimisticLockingFailureException e) {
+    return "Bank account was modified concurrently, try again";
+  }
+
+  //очередь записи заполнена: клиент повторяет запрос не раньше Retry-After
+  @ExceptionHandler(WriteRejectedException.class)
+  ResponseEntity<String> writeRejectedHandler(WriteRejectedException e) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+        .body(e.getMessage());
+  }
 }
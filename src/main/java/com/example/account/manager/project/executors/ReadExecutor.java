@@ -0,0 +1,52 @@
+package com.example.account.manager.project.executors;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Чтения, которые нужно выполнить после операции записи (ответы view=full со списком всех счетов).
+ * Потоки write-N после записи сразу берут следующую задачу, а чтение выполняется в отдельных потоках read-N
+ * с атрибутами исходного запроса, чтобы в нём можно было строить ссылки.
+ */
+@Component
+public class ReadExecutor {
+
+  private final ExecutorService executor;
+
+  public ReadExecutor(@Value("${reads.executor.threads:2}") int threads) {
+    AtomicInteger number = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(Math.max(threads, 1), task -> {
+      Thread thread = new Thread(task, "read-" + number.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  //чтение начинается после успешной записи; ошибка записи передаётся в результат без чтения
+  public <T> CompletableFuture<T> after(CompletableFuture<?> write, Supplier<T> read) {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    return write.thenApplyAsync(written -> {
+      RequestContextHolder.setRequestAttributes(attributes);
+      try {
+        return read.get();
+      } finally {
+        RequestContextHolder.resetRequestAttributes();
+      }
+    }, executor);
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+}
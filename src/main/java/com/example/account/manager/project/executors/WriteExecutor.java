@@ -0,0 +1,143 @@
+package com.example.account.manager.project.executors;
+
+import com.example.account.manager.project.exceptions.WriteRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Выполнение операций записи вне потоков сервлет-контейнера: фиксированное число потоков write-N и
+ * ограниченная очередь на каждый приоритет. Если очередь приоритета заполнена, задача сразу отклоняется
+ * с WriteRejectedException (429 Too Many Requests), и потоки контейнера остаются свободными для чтения.
+ * Задача выполняется с атрибутами запроса, из которого пришла, чтобы в ней можно было строить ссылки.
+ */
+@Component
+@Slf4j
+public class WriteExecutor {
+
+  private static final long IDLE_POLL_MILLIS = 100;
+
+  private final BlockingQueue<Runnable>[] queues;
+  //число задач во всех очередях: поток берёт разрешение и после этого гарантированно находит задачу
+  private final Semaphore queued = new Semaphore(0);
+  private final Thread[] workers;
+  private final long retryAfterSeconds;
+  private final long shutdownTimeoutMillis;
+  private final Counter[] rejected;
+  private final Timer queueWait;
+
+  private volatile boolean running = true;
+
+  @SuppressWarnings("unchecked")
+  public WriteExecutor(@Value("${writes.executor.threads:10}") int threads,
+      @Value("${writes.executor.queue-capacity.high:1000}") int highCapacity,
+      @Value("${writes.executor.queue-capacity.low:50}") int lowCapacity,
+      @Value("${writes.executor.retry-after-seconds:1}") long retryAfterSeconds,
+      @Value("${writes.executor.shutdown-timeout-millis:10000}") long shutdownTimeoutMillis,
+      ObjectProvider<MeterRegistry> meterRegistry) {
+    this.queues = new BlockingQueue[WritePriority.values().length];
+    this.queues[WritePriority.HIGH.ordinal()] = new ArrayBlockingQueue<>(Math.max(highCapacity, 1));
+    this.queues[WritePriority.LOW.ordinal()] = new ArrayBlockingQueue<>(Math.max(lowCapacity, 1));
+    this.workers = new Thread[Math.max(threads, 1)];
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    this.rejected = new Counter[queues.length];
+    for (WritePriority priority : WritePriority.values()) {
+      String tag = priority.name().toLowerCase();
+      Gauge.builder("bank.accounts.writes.queued", queues[priority.ordinal()], BlockingQueue::size)
+          .tag("priority", tag).register(registry);
+      rejected[priority.ordinal()] = Counter.builder("bank.accounts.writes.rejected").tag("priority", tag).register(registry);
+    }
+    this.queueWait = Timer.builder("bank.accounts.writes.queue.wait").publishPercentiles(0.5, 0.99, 0.999).register(registry);
+  }
+
+  @PostConstruct
+  public void start() {
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new Thread(this::work, "write-" + i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  public <T> CompletableFuture<T> submit(WritePriority priority, Supplier<T> operation) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    long submitted = System.nanoTime();
+    Runnable task = () -> {
+      queueWait.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+      RequestContextHolder.setRequestAttributes(attributes);
+      try {
+        result.complete(operation.get());
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+      } finally {
+        RequestContextHolder.resetRequestAttributes();
+      }
+    };
+    if (!running || !queues[priority.ordinal()].offer(task)) {
+      rejected[priority.ordinal()].increment();
+      throw new WriteRejectedException(retryAfterSeconds);
+    }
+    queued.release();
+    return result;
+  }
+
+  public int size(WritePriority priority) {
+    return queues[priority.ordinal()].size();
+  }
+
+  private void work() {
+    while (running || queued.availablePermits() > 0) {
+      try {
+        if (queued.tryAcquire(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          next().run();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        log.error("Write task failed", e);
+      }
+    }
+  }
+
+  private Runnable next() {
+    for (BlockingQueue<Runnable> queue : queues) {
+      Runnable task = queue.poll();
+      if (task != null) {
+        return task;
+      }
+    }
+    throw new IllegalStateException("Write queue permit without a task");
+  }
+
+  //новые задачи отклоняются, уже принятые выполняются до истечения shutdown-timeout-millis
+  @PreDestroy
+  public void close() throws InterruptedException {
+    running = false;
+    long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+    for (Thread worker : workers) {
+      if (worker != null) {
+        worker.join(Math.max(deadline - System.currentTimeMillis(), 1));
+      }
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package com.example.account.manager.project.executors;
+
+/**
+ * Очереди WriteExecutor: задачи с высоким приоритетом выбираются первыми.
+ */
+public enum WritePriority {
+  //операции с одним или двумя счетами
+  HIGH,
+  //пакетные переводы и массовое создание счетов
+  LOW
+}
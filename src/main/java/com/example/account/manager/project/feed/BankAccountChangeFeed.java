@@ -0,0 +1,276 @@
+package com.example.account.manager.project.feed;
+
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.exceptions.ChangeFeedLimitException;
+import com.example.account.manager.project.responses.BankAccountChange;
+import com.example.account.manager.project.services.BankAccountQueryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Лента изменений счетов (server-sent events). После фиксации операции событие получает номер, сохраняется в кольце
+ * последних changes.replay-capacity событий и раскладывается по ограниченным буферам подписчиков; поток, зафиксировавший
+ * операцию, не пишет в сеть и не ждёт клиентов. Отправкой занимаются потоки account-changes-N, подписчик с переполненным
+ * буфером отключается. Клиент, переподключившийся с Last-Event-ID, получает пропущенные события из кольца, а если их там
+ * уже нет - событие reset, после которого он должен перечитать счета.
+ */
+@Component
+@Slf4j
+public class BankAccountChangeFeed {
+
+  static final String RESET_EVENT = "reset";
+
+  private final BankAccountQueryService queries;
+  private final BankAccountChange[] recent;
+  private final int bufferSize;
+  private final int maxSubscribers;
+  private final long timeoutMillis;
+  private final ExecutorService senders;
+  private final Counter evicted;
+
+  //кольцо, номер последнего события и список подписчиков меняются только под монитором ленты
+  private final List<Subscriber> subscribers = new ArrayList<>();
+  private long lastId;
+
+  public BankAccountChangeFeed(BankAccountQueryService queries,
+      @Value("${changes.replay-capacity:10000}") int replayCapacity,
+      @Value("${changes.subscriber-buffer:1000}") int bufferSize,
+      @Value("${changes.max-subscribers:1000}") int maxSubscribers,
+      @Value("${changes.timeout-millis:1800000}") long timeoutMillis,
+      @Value("${changes.sender-threads:4}") int senderThreads,
+      ObjectProvider<MeterRegistry> meterRegistry) {
+    this.queries = queries;
+    this.recent = new BankAccountChange[Math.max(replayCapacity, 1)];
+    this.bufferSize = Math.max(bufferSize, 1);
+    this.maxSubscribers = maxSubscribers;
+    this.timeoutMillis = timeoutMillis;
+    AtomicInteger threads = new AtomicInteger();
+    this.senders = Executors.newFixedThreadPool(Math.max(senderThreads, 1), task -> {
+      Thread sender = new Thread(task, "account-changes-" + threads.getAndIncrement());
+      sender.setDaemon(true);
+      return sender;
+    });
+    MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    Gauge.builder("bank.accounts.changes.subscribers", this, BankAccountChangeFeed::subscriberCount).register(registry);
+    this.evicted = Counter.builder("bank.accounts.changes.evicted").register(registry);
+  }
+
+  /**
+   * Подписка на изменения одного счёта, счетов владельца или (без фильтров) всех счетов. Без lastEventId лента
+   * начинается с текущего события.
+   */
+  public SseEmitter subscribe(Long bankAccountId, Long userId, Long lastEventId) {
+    //позиция берётся до чтения счетов владельца: счёт, созданный во время чтения, придёт из кольца событием CREATED
+    long position = lastEventId != null ? lastEventId : lastId();
+    if (bankAccountId != null && !queries.findById(bankAccountId).isPresent()) {
+      throw new BankAccountNotFoundException(bankAccountId);
+    }
+    Set<Long> accounts = new HashSet<>();
+    if (userId != null) {
+      queries.findByUser(userId).forEach(bankAccount -> accounts.add(bankAccount.getId()));
+    }
+    Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis), bankAccountId, userId, accounts, bufferSize);
+    subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+    subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+    subscriber.emitter.onError(e -> unsubscribe(subscriber));
+    register(subscriber, position);
+    schedule(subscriber);
+    return subscriber.emitter;
+  }
+
+  public synchronized long lastId() {
+    return lastId;
+  }
+
+  public synchronized int subscriberCount() {
+    return subscribers.size();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOperation(BankAccountOperationEvent event) {
+    List<Subscriber> ready = new ArrayList<>();
+    synchronized (this) {
+      BankAccountChange change = toChange(++lastId, event);
+      recent[index(lastId)] = change;
+      for (Iterator<Subscriber> iterator = subscribers.iterator(); iterator.hasNext(); ) {
+        Subscriber subscriber = iterator.next();
+        if (!subscriber.matches(change)) {
+          continue;
+        }
+        if (!subscriber.buffer.offer(change)) {
+          //подписчик не успевает читать: отключается потоком отправки, клиент может переподключиться с Last-Event-ID
+          iterator.remove();
+          subscriber.evicted = true;
+          evicted.increment();
+        }
+        ready.add(subscriber);
+      }
+    }
+    ready.forEach(this::schedule);
+  }
+
+  //пустой комментарий не даёт прокси закрыть простаивающее соединение и выявляет отключившихся клиентов
+  @Scheduled(fixedDelayString = "${changes.heartbeat-millis:15000}")
+  public void heartbeat() {
+    List<Subscriber> current;
+    synchronized (this) {
+      current = new ArrayList<>(subscribers);
+    }
+    for (Subscriber subscriber : current) {
+      subscriber.heartbeat = true;
+      schedule(subscriber);
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    synchronized (this) {
+      subscribers.forEach(subscriber -> subscriber.closed = true);
+      subscribers.clear();
+    }
+    senders.shutdownNow();
+  }
+
+  private synchronized void register(Subscriber subscriber, long position) {
+    if (subscribers.size() >= maxSubscribers) {
+      throw new ChangeFeedLimitException(maxSubscribers);
+    }
+    //номер из будущего бывает после перезапуска приложения, слишком старый - после долгого отключения
+    if (position > lastId || position < lastId - recent.length) {
+      subscriber.reset = lastId;
+    } else {
+      for (long id = position + 1; id <= lastId; id++) {
+        BankAccountChange change = recent[index(id)];
+        if (subscriber.matches(change) && !subscriber.buffer.offer(change)) {
+          subscriber.buffer.clear();
+          subscriber.reset = lastId;
+          break;
+        }
+      }
+    }
+    subscribers.add(subscriber);
+  }
+
+  private synchronized void unsubscribe(Subscriber subscriber) {
+    subscriber.closed = true;
+    subscribers.remove(subscriber);
+  }
+
+  //у подписчика не больше одной задачи отправки, поэтому события уходят клиенту по порядку
+  private void schedule(Subscriber subscriber) {
+    if (subscriber.scheduled.compareAndSet(false, true)) {
+      try {
+        senders.execute(() -> send(subscriber));
+      } catch (RejectedExecutionException e) {
+        subscriber.scheduled.set(false);
+      }
+    }
+  }
+
+  private void send(Subscriber subscriber) {
+    try {
+      do {
+        if (subscriber.closed) {
+          return;
+        }
+        if (subscriber.reset >= 0) {
+          subscriber.emitter.send(SseEmitter.event().id(Long.toString(subscriber.reset)).name(RESET_EVENT).data(subscriber.reset));
+          subscriber.reset = -1;
+        }
+        BankAccountChange change;
+        while ((change = subscriber.buffer.poll()) != null) {
+          subscriber.emitter.send(SseEmitter.event().id(Long.toString(change.getId())).data(change, MediaType.APPLICATION_JSON));
+        }
+        if (subscriber.heartbeat) {
+          subscriber.heartbeat = false;
+          subscriber.emitter.send(SseEmitter.event().comment(""));
+        }
+        if (subscriber.evicted) {
+          log.warn("Change feed subscriber evicted: " + bufferSize + " events are not sent yet");
+          subscriber.closed = true;
+          subscriber.emitter.complete();
+          return;
+        }
+        subscriber.scheduled.set(false);
+      } while (subscriber.hasPending() && subscriber.scheduled.compareAndSet(false, true));
+    } catch (IOException | IllegalStateException e) {
+      //клиент отключился или соединение уже завершено
+      unsubscribe(subscriber);
+    }
+  }
+
+  private int index(long id) {
+    return (int) (id % recent.length);
+  }
+
+  private static BankAccountChange toChange(long id, BankAccountOperationEvent event) {
+    return new BankAccountChange(id, event.getOperation(), event.getBankAccountId(), event.getCounterpartyId(), event.getOwnerId(),
+        event.getAmount(), event.getBalance(), event.getCounterpartyBalance(), Instant.ofEpochMilli(event.getTimestamp()));
+  }
+
+  private static final class Subscriber {
+
+    final SseEmitter emitter;
+    final Long bankAccountId;
+    final Long userId;
+    //счета владельца; пополняется событиями CREATED под монитором ленты
+    final Set<Long> accounts;
+    final BlockingQueue<BankAccountChange> buffer;
+    final AtomicBoolean scheduled = new AtomicBoolean();
+    volatile long reset = -1;
+    volatile boolean heartbeat;
+    volatile boolean evicted;
+    volatile boolean closed;
+
+    Subscriber(SseEmitter emitter, Long bankAccountId, Long userId, Set<Long> accounts, int bufferSize) {
+      this.emitter = emitter;
+      this.bankAccountId = bankAccountId;
+      this.userId = userId;
+      this.accounts = accounts;
+      this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    boolean matches(BankAccountChange change) {
+      if (bankAccountId != null) {
+        return bankAccountId.equals(change.getBankAccountId()) || bankAccountId.equals(change.getCounterpartyId());
+      }
+      if (userId == null) {
+        return true;
+      }
+      if (userId.equals(change.getUserId())) {
+        accounts.add(change.getBankAccountId());
+      }
+      return accounts.contains(change.getBankAccountId()) || accounts.contains(change.getCounterpartyId());
+    }
+
+    boolean hasPending() {
+      return !buffer.isEmpty() || heartbeat || evicted;
+    }
+  }
+}
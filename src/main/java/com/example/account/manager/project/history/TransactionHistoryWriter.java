@@ -0,0 +1,158 @@
+package com.example.account.manager.project.history;
+
+import com.example.account.manager.project.entities.BankAccountTransaction;
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import com.example.account.manager.project.money.Money;
+import com.example.account.manager.project.repositories.BankAccountTransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * История движения денег в таблице bank_account_transaction. Пополнения, снятия и переводы попадают в очередь
+ * после фиксации своей транзакции, фоновый поток transaction-history забирает всё накопленное (до history.batch-size
+ * записей) и вставляет одной транзакцией, поэтому операция со счётом не ждёт вставку истории. Если очередь заполнена,
+ * поток, зафиксировавший операцию, ждёт места в ней.
+ */
+@Component
+@ConditionalOnProperty(name = "history.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class TransactionHistoryWriter implements Runnable {
+
+  private static final long IDLE_POLL_MILLIS = 100;
+
+  private final BankAccountTransactionRepository transactions;
+  private final TransactionTemplate transaction;
+  private final BlockingQueue<BankAccountTransaction> queue;
+  private final int batchSize;
+  private final Timer batches;
+  //записи, поставленные в очередь, и записи, обработанные фоновым потоком
+  private final AtomicLong enqueued = new AtomicLong();
+  private final AtomicLong processed = new AtomicLong();
+
+  private volatile boolean running = true;
+  private Thread writer;
+
+  public TransactionHistoryWriter(BankAccountTransactionRepository transactions, PlatformTransactionManager transactionManager,
+      @Value("${history.queue-capacity:100000}") int capacity, @Value("${history.batch-size:500}") int batchSize,
+      ObjectProvider<MeterRegistry> meterRegistry) {
+    this.transactions = transactions;
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.queue = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+    this.batchSize = Math.max(batchSize, 1);
+    MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    Gauge.builder("bank.accounts.history.queued", queue, BlockingQueue::size).register(registry);
+    this.batches = Timer.builder("bank.accounts.history.batch").publishPercentiles(0.5, 0.99).register(registry);
+  }
+
+  @PostConstruct
+  public void start() {
+    writer = new Thread(this, "transaction-history");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOperation(BankAccountOperationEvent event) {
+    try {
+      switch (event.getOperation()) {
+        case DEPOSIT:
+          enqueue(new BankAccountTransaction(event.getBankAccountId(), null, BankAccountOperation.DEPOSIT,
+              Money.toMinorUnits(event.getAmount()), Money.toMinorUnits(event.getBalance()), event.getTimestamp()));
+          break;
+        case WITHDRAWAL:
+          enqueue(new BankAccountTransaction(event.getBankAccountId(), null, BankAccountOperation.WITHDRAWAL,
+              -Money.toMinorUnits(event.getAmount()), Money.toMinorUnits(event.getBalance()), event.getTimestamp()));
+          break;
+        case TRANSFER:
+          long amount = Money.toMinorUnits(event.getAmount());
+          enqueue(new BankAccountTransaction(event.getBankAccountId(), event.getCounterpartyId(), BankAccountOperation.TRANSFER,
+              -amount, Money.toMinorUnits(event.getBalance()), event.getTimestamp()));
+          enqueue(new BankAccountTransaction(event.getCounterpartyId(), event.getBankAccountId(), BankAccountOperation.TRANSFER,
+              amount, Money.toMinorUnits(event.getCounterpartyBalance()), event.getTimestamp()));
+          break;
+        default:
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.error("Interrupted while recording history of " + event);
+    }
+  }
+
+  /**
+   * Ждёт, пока все записи, поставленные в очередь до вызова, будут вставлены.
+   */
+  public void flush() throws InterruptedException {
+    long target = enqueued.get();
+    while (processed.get() < target) {
+      Thread.sleep(1);
+    }
+  }
+
+  @Override
+  public void run() {
+    List<BankAccountTransaction> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        BankAccountTransaction first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        write(batch);
+        processed.addAndGet(batch.size());
+        batch.clear();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    running = false;
+    if (writer != null) {
+      writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+  }
+
+  private void enqueue(BankAccountTransaction entry) throws InterruptedException {
+    if (!running) {
+      log.warn("History writer is stopped, " + entry + " is not recorded");
+      return;
+    }
+    queue.put(entry);
+    enqueued.incrementAndGet();
+  }
+
+  private void write(List<BankAccountTransaction> batch) {
+    long started = System.nanoTime();
+    try {
+      transaction.execute(status -> transactions.saveAll(batch));
+    } catch (RuntimeException e) {
+      //операции уже зафиксированы, поэтому ошибка истории только логируется
+      log.error("Could not record " + batch.size() + " history entries", e);
+    }
+    batches.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+  }
+}
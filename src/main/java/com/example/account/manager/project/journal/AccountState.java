@@ -0,0 +1,20 @@
+package com.example.account.manager.project.journal;
+
+import com.example.account.manager.project.entities.BankAccountStatus;
+import java.math.BigDecimal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Состояние одного счёта в снимке: владелец, остаток и статус.
+ */
+@Data
+@AllArgsConstructor
+public class AccountState {
+
+  private final long bankAccountId;
+  //0, если счёт создан до появления журнала и владелец неизвестен
+  private final long ownerId;
+  private BigDecimal balance;
+  private BankAccountStatus status;
+}
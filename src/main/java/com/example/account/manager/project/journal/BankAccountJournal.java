@@ -0,0 +1,166 @@
+package com.example.account.manager.project.journal;
+
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Журнал операций со счетами: файлы-сегменты фиксированного размера, отображённые в память.
+ * Запись - копирование 48 байт в отображённую память под коротким монитором, сброс на диск (fsync)
+ * выполняет отдельный поток раз в journal.sync-interval-millis сразу для всех записей, накопленных за интервал.
+ * Операции попадают в журнал после фиксации своей транзакции.
+ */
+@Component
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class BankAccountJournal implements Runnable {
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final long syncIntervalNanos;
+
+  private final ByteBuffer record = ByteBuffer.allocate(JournalRecord.SIZE);
+  private final CRC32 crc = new CRC32();
+  private FileChannel channel;
+  private volatile MappedByteBuffer segment;
+  private int position;
+  private long nextSequence;
+
+  private volatile long appendedSequence;
+  private volatile long syncedSequence;
+  private volatile boolean running = true;
+  private Thread syncThread;
+
+  @Autowired
+  public BankAccountJournal(@Value("${journal.directory:journal}") String directory,
+      @Value("${journal.segment-size-mb:64}") int segmentSizeMb,
+      @Value("${journal.sync-interval-millis:10}") long syncIntervalMillis) {
+    this(Paths.get(directory), segmentSizeMb * 1024 * 1024, TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis));
+  }
+
+  BankAccountJournal(Path directory, int segmentBytes, long syncIntervalNanos) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes / JournalRecord.SIZE * JournalRecord.SIZE;
+    this.syncIntervalNanos = syncIntervalNanos;
+  }
+
+  @PostConstruct
+  public synchronized void open() throws IOException {
+    Files.createDirectories(directory);
+    List<Path> segments = JournalReader.segments(directory);
+    if (segments.isEmpty()) {
+      openSegment(1);
+    } else {
+      //дописываем в последний сегмент после последней целой записи
+      Path last = segments.get(segments.size() - 1);
+      channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      segment = channel.map(MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentBytes));
+      nextSequence = JournalReader.firstSequence(last);
+      position = 0;
+      JournalRecord existing;
+      while (position + JournalRecord.SIZE <= segment.capacity()
+          && (existing = JournalReader.readAt(segment, position, record, crc)) != null && existing.getSequence() == nextSequence) {
+        nextSequence++;
+        position += JournalRecord.SIZE;
+      }
+    }
+    appendedSequence = nextSequence - 1;
+    syncedSequence = appendedSequence;
+    syncThread = new Thread(this, "journal-sync");
+    syncThread.setDaemon(true);
+    syncThread.start();
+    log.info("Journal opened in " + directory.toAbsolutePath() + "; next sequence:" + nextSequence);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOperation(BankAccountOperationEvent event) {
+    try {
+      append(event);
+    } catch (IOException | RuntimeException e) {
+      //операция уже зафиксирована, поэтому ошибка журнала только логируется
+      log.error("Could not journal " + event, e);
+    }
+  }
+
+  public synchronized long append(BankAccountOperationEvent event) throws IOException {
+    if (position + JournalRecord.SIZE > segment.capacity()) {
+      segment.force();
+      channel.close();
+      openSegment(nextSequence);
+    }
+    long sequence = nextSequence;
+    Long counterpartyId = event.getOperation() == BankAccountOperation.CREATED ? event.getOwnerId() : event.getCounterpartyId();
+    new JournalRecord(sequence, event.getTimestamp(), event.getOperation(), event.getBankAccountId(),
+        counterpartyId == null ? 0 : counterpartyId, event.getAmount()).writeTo(record, crc);
+    MappedByteBuffer target = segment;
+    target.position(position);
+    target.put(record.array(), 0, JournalRecord.SIZE);
+    position += JournalRecord.SIZE;
+    nextSequence++;
+    appendedSequence = sequence;
+    return sequence;
+  }
+
+  /**
+   * Номер последней записи, гарантированно сброшенной на диск.
+   */
+  public long syncedSequence() {
+    return syncedSequence;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      LockSupport.parkNanos(this, syncIntervalNanos);
+      sync();
+    }
+  }
+
+  @PreDestroy
+  public synchronized void close() throws IOException {
+    running = false;
+    LockSupport.unpark(syncThread);
+    sync();
+    channel.close();
+  }
+
+  private void sync() {
+    long appended = appendedSequence;
+    if (appended > syncedSequence) {
+      segment.force();
+      syncedSequence = appended;
+    }
+  }
+
+  private void openSegment(long firstSequence) throws IOException {
+    channel = FileChannel.open(directory.resolve(JournalReader.segmentName(firstSequence)),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    segment = channel.map(MapMode.READ_WRITE, 0, segmentBytes);
+    position = 0;
+    nextSequence = firstSequence;
+  }
+}
@@ -0,0 +1,89 @@
+package com.example.account.manager.project.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Последовательное чтение сегментов журнала. Сегмент называется по номеру своей первой записи,
+ * поэтому сортировка по имени совпадает с порядком записей.
+ */
+public final class JournalReader {
+
+  private static final String PREFIX = "journal-";
+  private static final String SUFFIX = ".dat";
+
+  private JournalReader() {
+  }
+
+  /**
+   * Передаёт consumer записи с номером больше afterSequence по порядку, до первой свободной или повреждённой записи.
+   * Возвращает номер последней прочитанной записи.
+   */
+  public static long read(Path directory, long afterSequence, Consumer<JournalRecord> consumer) throws IOException {
+    List<Path> segments = segments(directory);
+    ByteBuffer record = ByteBuffer.allocate(JournalRecord.SIZE);
+    CRC32 crc = new CRC32();
+    long expected = segments.isEmpty() ? afterSequence + 1 : firstSequence(segments.get(0));
+    for (int i = 0; i < segments.size(); i++) {
+      //сегмент целиком до afterSequence пропускается без чтения
+      if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= afterSequence + 1) {
+        expected = firstSequence(segments.get(i + 1));
+        continue;
+      }
+      try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+        MappedByteBuffer segment = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        for (int position = 0; position + JournalRecord.SIZE <= segment.capacity(); position += JournalRecord.SIZE) {
+          JournalRecord next = readAt(segment, position, record, crc);
+          if (next == null || next.getSequence() != expected) {
+            break;
+          }
+          if (next.getSequence() > afterSequence) {
+            consumer.accept(next);
+          }
+          expected++;
+        }
+      }
+    }
+    return expected - 1;
+  }
+
+  static JournalRecord readAt(ByteBuffer segment, int position, ByteBuffer record, CRC32 crc) {
+    ByteBuffer source = segment.duplicate();
+    source.position(position);
+    source.get(record.array(), 0, JournalRecord.SIZE);
+    return JournalRecord.readFrom(record, crc);
+  }
+
+  static List<Path> segments(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return Collections.emptyList();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+      }).sorted().collect(Collectors.toList());
+    }
+  }
+
+  static String segmentName(long firstSequence) {
+    return String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX);
+  }
+
+  static long firstSequence(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+  }
+}
@@ -0,0 +1,88 @@
+package com.example.account.manager.project.journal;
+
+import com.example.account.manager.project.events.BankAccountOperation;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import lombok.Data;
+
+/**
+ * Запись журнала фиксированной длины {@link #SIZE} байт:
+ * <pre>
+ *  0  long  номер записи (с 1, 0 - свободное место)
+ *  8  long  время операции, мс
+ * 16  byte  код операции ({@link BankAccountOperation#getCode()})
+ * 17  byte  масштаб суммы
+ * 20  int   CRC32 записи с нулями на месте этого поля
+ * 24  long  счёт
+ * 32  long  счёт получателя при переводе, владелец при создании счёта, иначе 0
+ * 40  long  сумма в минимальных единицах (копейках при масштабе 2)
+ * </pre>
+ */
+@Data
+public class JournalRecord {
+
+  public static final int SIZE = 48;
+  //суммы с меньшим числом знаков хранятся в копейках
+  private static final int MIN_SCALE = 2;
+
+  private static final int SEQUENCE = 0;
+  private static final int TIMESTAMP = 8;
+  private static final int OPERATION = 16;
+  private static final int SCALE = 17;
+  private static final int CHECKSUM = 20;
+  private static final int ACCOUNT = 24;
+  private static final int COUNTERPARTY = 32;
+  private static final int AMOUNT = 40;
+
+  private final long sequence;
+  private final long timestamp;
+  private final BankAccountOperation operation;
+  private final long bankAccountId;
+  private final long counterpartyId;
+  private final BigDecimal amount;
+
+  /**
+   * Кодирует запись в буфер длиной {@link #SIZE} начиная с нулевой позиции.
+   */
+  void writeTo(ByteBuffer record, CRC32 crc) {
+    BigDecimal minorUnits = amount == null ? BigDecimal.ZERO.setScale(MIN_SCALE)
+        : amount.scale() < MIN_SCALE ? amount.setScale(MIN_SCALE) : amount;
+    record.putLong(SEQUENCE, sequence);
+    record.putLong(TIMESTAMP, timestamp);
+    record.put(OPERATION, (byte) operation.getCode());
+    record.put(SCALE, (byte) minorUnits.scale());
+    record.putShort(SCALE + 1, (short) 0);
+    record.putInt(CHECKSUM, 0);
+    record.putLong(ACCOUNT, bankAccountId);
+    record.putLong(COUNTERPARTY, counterpartyId);
+    record.putLong(AMOUNT, minorUnits.unscaledValue().longValueExact());
+    record.putInt(CHECKSUM, checksum(record, crc));
+  }
+
+  /**
+   * Читает запись из буфера длиной {@link #SIZE}. Возвращает null для свободного места и повреждённой записи.
+   */
+  static JournalRecord readFrom(ByteBuffer record, CRC32 crc) {
+    long sequence = record.getLong(SEQUENCE);
+    if (sequence == 0) {
+      return null;
+    }
+    int checksum = record.getInt(CHECKSUM);
+    record.putInt(CHECKSUM, 0);
+    boolean valid = checksum == checksum(record, crc);
+    record.putInt(CHECKSUM, checksum);
+    BankAccountOperation operation = BankAccountOperation.ofCode(record.get(OPERATION));
+    if (!valid || operation == null) {
+      return null;
+    }
+    return new JournalRecord(sequence, record.getLong(TIMESTAMP), operation, record.getLong(ACCOUNT), record.getLong(COUNTERPARTY),
+        BigDecimal.valueOf(record.getLong(AMOUNT), record.get(SCALE)));
+  }
+
+  private static int checksum(ByteBuffer record, CRC32 crc) {
+    crc.reset();
+    crc.update(record.array(), record.arrayOffset(), SIZE);
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,45 @@
+package com.example.account.manager.project.journal;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Восстанавливает остатки счетов по последнему снимку и журналу после него и печатает их:
+ * java -cp account-manager-project-0.0.1.jar com.example.account.manager.project.journal.JournalReplay [каталог журнала] [--full]
+ * С --full снимки не используются и журнал проигрывается с начала.
+ */
+public final class JournalReplay {
+
+  private JournalReplay() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path directory = Paths.get(args.length > 0 && !args[0].startsWith("--") ? args[0] : "journal");
+    boolean full = args.length > 0 && "--full".equals(args[args.length - 1]);
+    JournalState state = new JournalState();
+    if (full) {
+      state.catchUp(directory);
+    } else {
+      state = JournalState.restore(directory);
+    }
+    Map<Long, BigDecimal> balances = new TreeMap<>();
+    state.getAccounts().forEach((bankAccountId, account) -> balances.put(bankAccountId, account.getBalance()));
+    balances.forEach((bankAccountId, balance) -> System.out.println(bankAccountId + " " + balance.toPlainString()));
+    System.out.println("Replayed up to record " + state.getSequence() + ", " + balances.size() + " bank accounts");
+  }
+
+  /**
+   * Применяет к balances все записи журнала. Создание счёта обнуляет его остаток,
+   * поэтому журнал можно проигрывать и после перезапуска со свежей базой.
+   */
+  public static long replay(Path directory, Map<Long, BigDecimal> balances) throws IOException {
+    JournalState state = new JournalState();
+    long last = state.catchUp(directory);
+    state.getAccounts().forEach((bankAccountId, account) -> balances.put(bankAccountId, account.getBalance()));
+    return last;
+  }
+}
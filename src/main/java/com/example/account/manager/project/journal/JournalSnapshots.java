@@ -0,0 +1,96 @@
+package com.example.account.manager.project.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодические снимки остатков и статусов всех счетов. Состояние строится из самого журнала,
+ * поэтому снимок с номером N всегда равен проигрыванию записей 1..N и не требует остановки операций.
+ * В снимок попадают только записи, уже сброшенные на диск.
+ */
+@Component
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class JournalSnapshots {
+
+  private final BankAccountJournal journal;
+  private final Path directory;
+  private final int retained;
+
+  private JournalState state;
+  private long writtenSequence;
+
+  public JournalSnapshots(BankAccountJournal journal, @Value("${journal.snapshot.retained:2}") int retained) {
+    this.journal = journal;
+    this.directory = journal.getDirectory();
+    this.retained = Math.max(retained, 1);
+  }
+
+  @PostConstruct
+  public synchronized void load() throws IOException {
+    long started = System.nanoTime();
+    state = JournalState.latestSnapshot(directory);
+    writtenSequence = state.getSequence();
+    if (writtenSequence > 0) {
+      log.info("Loaded snapshot of " + state.getAccounts().size() + " bank accounts at record " + writtenSequence
+          + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${journal.snapshot.interval-millis:60000}",
+      initialDelayString = "${journal.snapshot.interval-millis:60000}")
+  public void scheduledSnapshot() {
+    try {
+      snapshot();
+    } catch (IOException | RuntimeException e) {
+      log.error("Could not write journal snapshot", e);
+    }
+  }
+
+  /**
+   * Дописывает в состояние новые записи журнала и сохраняет снимок, если с прошлого снимка что-то изменилось.
+   * Возвращает файл снимка или null.
+   */
+  public synchronized Path snapshot() throws IOException {
+    state.catchUp(directory, journal.syncedSequence());
+    if (state.getSequence() == writtenSequence) {
+      return null;
+    }
+    long started = System.nanoTime();
+    Path snapshot = state.write(directory);
+    long elapsedNanos = Math.max(System.nanoTime() - started, 1);
+    writtenSequence = state.getSequence();
+    int accounts = state.getAccounts().size();
+    log.info("Snapshot of " + accounts + " bank accounts at record " + writtenSequence + " written in "
+        + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms (" + accounts * TimeUnit.SECONDS.toNanos(1) / elapsedNanos
+        + " accounts/s)");
+    removeOldSnapshots();
+    return snapshot;
+  }
+
+  /**
+   * Дописывает в состояние сброшенные на диск записи журнала и передаёт его reader.
+   * Пока reader работает, снимок не пишется.
+   */
+  public synchronized <T> T withState(Function<JournalState, T> reader) throws IOException {
+    state.catchUp(directory, journal.syncedSequence());
+    return reader.apply(state);
+  }
+
+  private void removeOldSnapshots() throws IOException {
+    List<Path> snapshots = JournalState.snapshots(directory);
+    for (int i = 0; i < snapshots.size() - retained; i++) {
+      Files.deleteIfExists(snapshots.get(i));
+    }
+  }
+}
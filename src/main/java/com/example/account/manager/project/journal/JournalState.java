@@ -0,0 +1,245 @@
+package com.example.account.manager.project.journal;
+
+import com.example.account.manager.project.entities.BankAccountStatus;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Остатки и статусы всех счетов, полученные проигрыванием журнала до записи {@link #getSequence()}.
+ * Сохраняется в снимок snapshot-&lt;номер записи&gt;.bin в каталоге журнала:
+ * <pre>
+ * int   MAGIC, int версия формата, long номер записи, int число счетов
+ * на каждый счёт 26 байт: long счёт, long владелец, byte статус, byte масштаб, long остаток в минимальных единицах
+ * int   CRC32 всего предыдущего содержимого
+ * </pre>
+ * Восстановление - последний целый снимок плюс записи журнала после него.
+ */
+@Slf4j
+public class JournalState {
+
+  private static final int MAGIC = 0x534E4150;
+  private static final int FORMAT_VERSION = 1;
+  private static final String PREFIX = "snapshot-";
+  private static final String SUFFIX = ".bin";
+  private static final int HEADER_SIZE = 20;
+  private static final int ENTRY_SIZE = 26;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Map<Long, AccountState> accounts;
+  private long sequence;
+
+  public JournalState() {
+    this(new HashMap<>(), 0);
+  }
+
+  private JournalState(Map<Long, AccountState> accounts, long sequence) {
+    this.accounts = accounts;
+    this.sequence = sequence;
+  }
+
+  /**
+   * Последний целый снимок из каталога журнала, дополненный записями журнала после него.
+   */
+  public static JournalState restore(Path directory) throws IOException {
+    JournalState state = latestSnapshot(directory);
+    state.catchUp(directory);
+    return state;
+  }
+
+  /**
+   * Последний целый снимок; повреждённые снимки пропускаются. Без снимков - пустое состояние.
+   */
+  public static JournalState latestSnapshot(Path directory) throws IOException {
+    List<Path> snapshots = snapshots(directory);
+    for (int i = snapshots.size() - 1; i >= 0; i--) {
+      try {
+        return read(snapshots.get(i));
+      } catch (IOException e) {
+        log.warn("Skipping unreadable snapshot " + snapshots.get(i) + ": " + e.getMessage());
+      }
+    }
+    return new JournalState();
+  }
+
+  /**
+   * Применяет записи журнала после {@link #getSequence()} и возвращает новый номер последней записи.
+   */
+  public long catchUp(Path directory) throws IOException {
+    return catchUp(directory, Long.MAX_VALUE);
+  }
+
+  /**
+   * То же, но не дальше записи upToSequence.
+   */
+  public long catchUp(Path directory, long upToSequence) throws IOException {
+    JournalReader.read(directory, sequence, record -> {
+      if (record.getSequence() <= upToSequence) {
+        apply(record);
+      }
+    });
+    return sequence;
+  }
+
+  public void apply(JournalRecord record) {
+    long bankAccountId = record.getBankAccountId();
+    BigDecimal amount = record.getAmount();
+    switch (record.getOperation()) {
+      case CREATED:
+        //при создании счёта в поле получателя пишется владелец
+        accounts.put(bankAccountId, new AccountState(bankAccountId, record.getCounterpartyId(), new BigDecimal("0.00"),
+            BankAccountStatus.ACTIVE));
+        break;
+      case DELETED:
+        accounts.remove(bankAccountId);
+        break;
+      case DEPOSIT:
+        add(bankAccountId, amount);
+        break;
+      case WITHDRAWAL:
+        add(bankAccountId, amount.negate());
+        break;
+      case TRANSFER:
+        add(bankAccountId, amount.negate());
+        add(record.getCounterpartyId(), amount);
+        break;
+      case BLOCKED:
+        account(bankAccountId).setStatus(BankAccountStatus.BLOCKED);
+        break;
+      case ACTIVATED:
+        account(bankAccountId).setStatus(BankAccountStatus.ACTIVE);
+        break;
+      default:
+        break;
+    }
+    sequence = record.getSequence();
+  }
+
+  /**
+   * Записывает снимок во временный файл и атомарно переименовывает его, так что читатель
+   * никогда не видит недописанный снимок.
+   */
+  public Path write(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    Path target = directory.resolve(snapshotName(sequence));
+    Path temporary = directory.resolve(target.getFileName() + ".tmp");
+    CRC32 crc = new CRC32();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE)) {
+      buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(sequence).putInt(accounts.size());
+      for (AccountState account : accounts.values()) {
+        if (buffer.remaining() < ENTRY_SIZE) {
+          flush(buffer, channel, crc);
+        }
+        buffer.putLong(account.getBankAccountId());
+        buffer.putLong(account.getOwnerId());
+        buffer.put((byte) (account.getStatus() == BankAccountStatus.BLOCKED ? 1 : 0));
+        buffer.put((byte) account.getBalance().scale());
+        buffer.putLong(account.getBalance().unscaledValue().longValueExact());
+      }
+      flush(buffer, channel, crc);
+      buffer.putInt((int) crc.getValue());
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return target;
+  }
+
+  public static JournalState read(Path snapshot) throws IOException {
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE + 4) {
+        throw new IOException("Snapshot is truncated");
+      }
+      MappedByteBuffer file = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      if (file.getInt() != MAGIC || file.getInt() != FORMAT_VERSION) {
+        throw new IOException("Unknown snapshot format");
+      }
+      long sequence = file.getLong();
+      int count = file.getInt();
+      if (count < 0 || channel.size() != HEADER_SIZE + (long) count * ENTRY_SIZE + 4) {
+        throw new IOException("Snapshot is truncated");
+      }
+      CRC32 crc = new CRC32();
+      ByteBuffer content = file.duplicate();
+      content.position(0).limit((int) channel.size() - 4);
+      crc.update(content);
+      if (file.getInt((int) channel.size() - 4) != (int) crc.getValue()) {
+        throw new IOException("Snapshot checksum mismatch");
+      }
+      Map<Long, AccountState> accounts = new HashMap<>(count * 4 / 3 + 1);
+      for (int i = 0; i < count; i++) {
+        long bankAccountId = file.getLong();
+        long ownerId = file.getLong();
+        BankAccountStatus status = file.get() == 1 ? BankAccountStatus.BLOCKED : BankAccountStatus.ACTIVE;
+        int scale = file.get();
+        BigDecimal balance = BigDecimal.valueOf(file.getLong(), scale);
+        accounts.put(bankAccountId, new AccountState(bankAccountId, ownerId, balance, status));
+      }
+      return new JournalState(accounts, sequence);
+    }
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public Map<Long, AccountState> getAccounts() {
+    return Collections.unmodifiableMap(accounts);
+  }
+
+  static List<Path> snapshots(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return Collections.emptyList();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+      }).sorted().collect(Collectors.toList());
+    }
+  }
+
+  static String snapshotName(long sequence) {
+    return String.format("%s%020d%s", PREFIX, sequence, SUFFIX);
+  }
+
+  private static void flush(ByteBuffer buffer, FileChannel channel, CRC32 crc) throws IOException {
+    buffer.flip();
+    crc.update(buffer.duplicate());
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private void add(long bankAccountId, BigDecimal amount) {
+    AccountState account = account(bankAccountId);
+    account.setBalance(account.getBalance().add(amount));
+  }
+
+  //счёт мог появиться до журнала: тогда его начальный остаток и владелец неизвестны
+  private AccountState account(long bankAccountId) {
+    return accounts.computeIfAbsent(bankAccountId,
+        id -> new AccountState(id, 0, new BigDecimal("0.00"), BankAccountStatus.ACTIVE));
+  }
+}
@@ -0,0 +1,355 @@
+package com.example.account.manager.project.ledger;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.exceptions.BankAccountAmountException;
+import com.example.account.manager.project.exceptions.BankAccountIllegalStateException;
+import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.exceptions.BankAccountWithdrawOperationException;
+import com.example.account.manager.project.exceptions.LedgerPersistenceException;
+import com.example.account.manager.project.money.Money;
+import com.example.account.manager.project.oplog.OperationLog;
+import com.example.account.manager.project.requests.BatchTransferMode;
+import com.example.account.manager.project.requests.TransferRequest;
+import com.example.account.manager.project.responses.BatchTransferResponse;
+import com.example.account.manager.project.responses.TransferReceipt;
+import com.example.account.manager.project.responses.TransferResult;
+import com.example.account.manager.project.responses.TransferStatus;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.TransactionTimedOutException;
+
+/**
+ * Реестр счетов в памяти, разбитый на однопоточные сегменты.
+ * Операции над счетами одного сегмента выполняются его потоком целиком, перевод между сегментами
+ * выполняется в три шага: проверка счёта получателя, списание, зачисление (с возвратом при неудаче).
+ * Списание и зачисление, попавшие в очередь сегмента, дожидаются без ограничения по времени, пока сегмент
+ * работает: иначе клиент получил бы ошибку, а деньги остались бы ни на одном из счетов.
+ * Пакетные переводы выполняются монопольно: все сегменты приостанавливаются на время пакета.
+ * После отказа сохранения (см. {@link LedgerPersister}) остатки и статусы больше не меняются.
+ */
+@Slf4j
+public class Ledger {
+
+  public static final int SCALE = Money.SCALE;
+
+  private final LedgerShard[] shards;
+  private final LedgerPersister persister;
+  private final boolean awaitDurable;
+  private final long timeoutNanos;
+  private final ReentrantLock exclusiveLock = new ReentrantLock();
+
+  public Ledger(int shardCount, int queueCapacity, LedgerPersister persister, OperationLog operationLog, boolean awaitDurable,
+      long timeout, TimeUnit unit) {
+    this.shards = new LedgerShard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new LedgerShard(i, queueCapacity, persister, operationLog);
+    }
+    this.persister = persister;
+    this.awaitDurable = awaitDurable;
+    this.timeoutNanos = unit.toNanos(timeout);
+  }
+
+  /**
+   * Загрузка счёта до запуска потоков сегментов.
+   */
+  public void load(BankAccount bankAccount) {
+    shardOf(bankAccount.getId()).register(bankAccount);
+  }
+
+  public void start() {
+    persister.start();
+    for (LedgerShard shard : shards) {
+      shard.start();
+    }
+  }
+
+  public void stop() {
+    for (LedgerShard shard : shards) {
+      shard.stop();
+    }
+    persister.stop();
+  }
+
+  public boolean isPersistenceFailed() {
+    return persister.isFailed();
+  }
+
+  public BankAccount register(BankAccount bankAccount) {
+    return execute(LedgerCommand.register(bankAccount), false);
+  }
+
+  public BankAccount remove(Long bankAccountId) {
+    return execute(LedgerCommand.of(LedgerCommand.Type.REMOVE, bankAccountId), false);
+  }
+
+  public BankAccount deposit(Long bankAccountId, BigDecimal amount) {
+    return execute(LedgerCommand.money(LedgerCommand.Type.DEPOSIT, bankAccountId, null, Money.toMinorUnits(amount), amount), true);
+  }
+
+  public BankAccount withdraw(Long bankAccountId, BigDecimal amount) {
+    return execute(LedgerCommand.money(LedgerCommand.Type.WITHDRAW, bankAccountId, null, Money.toMinorUnits(amount), amount), true);
+  }
+
+  public BankAccount block(Long bankAccountId) {
+    return execute(LedgerCommand.of(LedgerCommand.Type.BLOCK, bankAccountId), true);
+  }
+
+  public BankAccount activate(Long bankAccountId) {
+    return execute(LedgerCommand.of(LedgerCommand.Type.ACTIVATE, bankAccountId), true);
+  }
+
+  public TransferReceipt transfer(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount) {
+    checkPersistence();
+    long minorAmount = Money.toMinorUnits(amount);
+    LedgerShard shardFrom = shardOf(bankAccountIdFrom);
+    LedgerShard shardTo = shardOf(bankAccountIdTo);
+    if (shardFrom == shardTo) {
+      LedgerCommand command = LedgerCommand.money(LedgerCommand.Type.TRANSFER, bankAccountIdFrom, bankAccountIdTo, minorAmount, amount);
+      BankAccount bankAccountFrom = execute(command, true);
+      return new TransferReceipt(bankAccountIdFrom, bankAccountIdTo, amount, bankAccountFrom.getBalance(),
+          BigDecimal.valueOf(command.counterpartyBalance, SCALE));
+    }
+
+    execute(LedgerCommand.of(LedgerCommand.Type.CHECK_ACTIVE, bankAccountIdTo), false);
+    LedgerCommand debit = LedgerCommand.money(LedgerCommand.Type.DEBIT, bankAccountIdFrom, bankAccountIdTo, minorAmount, amount);
+    submit(shardFrom, debit, System.nanoTime() + timeoutNanos);
+    BankAccount bankAccountFrom = awaitSettled(shardFrom, debit);
+    LedgerCommand credit = LedgerCommand.money(LedgerCommand.Type.CREDIT, bankAccountIdTo, bankAccountIdFrom, minorAmount, amount);
+    BankAccount bankAccountTo;
+    boolean queued = false;
+    try {
+      submit(shardTo, credit, System.nanoTime() + timeoutNanos);
+      queued = true;
+      bankAccountTo = awaitSettled(shardTo, credit);
+    } catch (RuntimeException e) {
+      if (queued && !credit.result.isDone()) {
+        //сегмент получателя остановлен, не выполнив зачисление: исход неизвестен, возвращать нельзя
+        log.error("Transfer from bank account with id:" + bankAccountIdFrom + " to bank account with id:" + bankAccountIdTo
+            + " is not settled; amount:" + amount);
+        throw e;
+      }
+      //зачисление не попало в очередь или отклонено (счёт получателя удалили, заблокировали, переполнение остатка)
+      refund(LedgerCommand.money(LedgerCommand.Type.REFUND, bankAccountIdFrom, bankAccountIdTo, minorAmount, amount), e);
+      throw e;
+    }
+    if (awaitDurable) {
+      await(debit.durable);
+      await(credit.durable);
+    }
+    return new TransferReceipt(bankAccountIdFrom, bankAccountIdTo, amount, bankAccountFrom.getBalance(), bankAccountTo.getBalance());
+  }
+
+  public BatchTransferResponse transfer(List<TransferRequest> transfers, BatchTransferMode mode) {
+    List<TransferResult> results = new ArrayList<>(transfers.size());
+    Map<Long, CompletableFuture<Void>> touched = new LinkedHashMap<>();
+    boolean aborted = false;
+    checkPersistence();
+    exclusiveLock.lock();
+    try {
+      CountDownLatch resume = pauseAll();
+      try {
+        List<long[]> undo = new ArrayList<>();
+        for (TransferRequest request : transfers) {
+          Long bankAccountIdFrom = request.getBankAccountIdFrom();
+          Long bankAccountIdTo = request.getBankAccountIdTo();
+          BigDecimal amount;
+          try {
+            amount = Money.parse(request.getAmount());
+          } catch (BankAccountAmountException e) {
+            results.add(aborted ? TransferResult.aborted(bankAccountIdFrom, bankAccountIdTo, null)
+                : TransferResult.failed(bankAccountIdFrom, bankAccountIdTo, null, e.getMessage()));
+            aborted = aborted || mode == BatchTransferMode.ALL_OR_NOTHING;
+            continue;
+          }
+          if (aborted) {
+            results.add(TransferResult.aborted(bankAccountIdFrom, bankAccountIdTo, amount));
+            continue;
+          }
+          try {
+            results.add(TransferResult.applied(applyExclusive(bankAccountIdFrom, bankAccountIdTo, amount, undo)));
+            touched.put(bankAccountIdFrom, null);
+            touched.put(bankAccountIdTo, null);
+          } catch (BankAccountAmountException | BankAccountNotFoundException | BankAccountIllegalStateException
+              | BankAccountWithdrawOperationException e) {
+            results.add(TransferResult.failed(bankAccountIdFrom, bankAccountIdTo, amount, e.getMessage()));
+            aborted = mode == BatchTransferMode.ALL_OR_NOTHING;
+          }
+        }
+        if (aborted) {
+          for (int i = undo.size() - 1; i >= 0; i--) {
+            long[] entry = undo.get(i);
+            LedgerShard shard = shardOf(entry[0]);
+            shard.setBalance(shard.slotOf(entry[0]), entry[1]);
+          }
+          touched.clear();
+          results.replaceAll(result -> result.getStatus() == TransferStatus.APPLIED
+              ? TransferResult.aborted(result.getBankAccountIdFrom(), result.getBankAccountIdTo(), result.getAmount())
+              : result);
+        }
+        touched.replaceAll((bankAccountId, ignored) -> {
+          CompletableFuture<Void> durable = new CompletableFuture<>();
+          LedgerShard shard = shardOf(bankAccountId);
+          shard.persist(shard.slotOf(bankAccountId), durable);
+          return durable;
+        });
+      } finally {
+        resume.countDown();
+      }
+    } finally {
+      exclusiveLock.unlock();
+    }
+    if (awaitDurable) {
+      touched.values().forEach(this::await);
+    }
+    return new BatchTransferResponse(mode, !aborted, results);
+  }
+
+  private TransferReceipt applyExclusive(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount, List<long[]> undo) {
+    long minorAmount = Money.toMinorUnits(amount);
+    LedgerShard shardFrom = shardOf(bankAccountIdFrom);
+    LedgerShard shardTo = shardOf(bankAccountIdTo);
+    int from = shardFrom.slotOf(bankAccountIdFrom);
+    int to = shardTo.slotOf(bankAccountIdTo);
+    shardFrom.checkActive(from);
+    shardTo.checkActive(to);
+    shardFrom.checkFunds(from, bankAccountIdTo, minorAmount, amount);
+    long balanceFrom = shardFrom.balance(from);
+    long balanceTo = shardTo.balance(to);
+    if (shardFrom != shardTo || from != to) {
+      long creditedBalance = Money.add(balanceTo, minorAmount);
+      undo.add(new long[] {bankAccountIdFrom, balanceFrom});
+      undo.add(new long[] {bankAccountIdTo, balanceTo});
+      shardFrom.setBalance(from, balanceFrom - minorAmount);
+      shardTo.setBalance(to, creditedBalance);
+    }
+    return new TransferReceipt(bankAccountIdFrom, bankAccountIdTo, amount,
+        Money.toDecimal(shardFrom.balance(from)), Money.toDecimal(shardTo.balance(to)));
+  }
+
+  private CountDownLatch pauseAll() {
+    CountDownLatch paused = new CountDownLatch(shards.length);
+    CountDownLatch resume = new CountDownLatch(1);
+    long deadline = System.nanoTime() + timeoutNanos;
+    for (LedgerShard shard : shards) {
+      if (!shard.submit(LedgerCommand.pause(paused, resume), deadline)) {
+        resume.countDown();
+        throw new TransactionTimedOutException("Ledger shard queue is full");
+      }
+    }
+    try {
+      if (!paused.await(timeoutNanos, TimeUnit.NANOSECONDS)) {
+        resume.countDown();
+        throw new TransactionTimedOutException("Ledger shards were not paused in time");
+      }
+    } catch (InterruptedException e) {
+      resume.countDown();
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+    return resume;
+  }
+
+  private void refund(LedgerCommand refund, RuntimeException cause) {
+    LedgerShard shard = shardOf(refund.accountId);
+    try {
+      //возврат ждёт места в очереди столько, сколько нужно
+      submit(shard, refund, Long.MAX_VALUE);
+      awaitSettled(shard, refund);
+      if (awaitDurable) {
+        await(refund.durable);
+      }
+    } catch (RuntimeException e) {
+      log.error("Could not refund " + refund.decimalAmount + " to bank account with id:" + refund.accountId, e);
+      cause.addSuppressed(e);
+    }
+  }
+
+  private void submit(LedgerShard shard, LedgerCommand command, long deadlineNanos) {
+    if (!shard.submit(command, deadlineNanos)) {
+      throw new TransactionTimedOutException("Ledger shard queue is full");
+    }
+  }
+
+  //результат команды, уже стоящей в очереди сегмента: без ограничения по времени, пока сегмент работает
+  private BankAccount awaitSettled(LedgerShard shard, LedgerCommand command) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return command.result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+          if (!shard.isRunning()) {
+            throw new TransactionTimedOutException("Ledger is stopped");
+          }
+          log.warn("Ledger " + command.type + " for bank account with id:" + command.accountId + " is still queued");
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  //изменения, которые нельзя сохранить, не применяются и в памяти
+  private void checkPersistence() {
+    if (persister.isFailed()) {
+      throw new LedgerPersistenceException("Ledger persistence failed, bank accounts could not be changed");
+    }
+  }
+
+  private BankAccount execute(LedgerCommand command, boolean durable) {
+    if (durable) {
+      checkPersistence();
+    }
+    long deadline = System.nanoTime() + timeoutNanos;
+    if (!shardOf(command.accountId).submit(command, deadline)) {
+      throw new TransactionTimedOutException("Ledger shard queue is full");
+    }
+    BankAccount bankAccount = await(command.result);
+    if (durable && awaitDurable) {
+      await(command.durable);
+    }
+    return bankAccount;
+  }
+
+  private <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (TimeoutException e) {
+      throw new TransactionTimedOutException("Ledger operation timed out");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  LedgerShard shardOf(Long bankAccountId) {
+    if (bankAccountId == null) {
+      throw new BankAccountNotFoundException(null);
+    }
+    return shards[(int) Math.floorMod(bankAccountId, (long) shards.length)];
+  }
+}
@@ -0,0 +1,67 @@
+package com.example.account.manager.project.ledger;
+
+import com.example.account.manager.project.entities.BankAccount;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+final class LedgerCommand {
+
+  enum Type {
+    REGISTER,
+    REMOVE,
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER,
+    CHECK_ACTIVE,
+    DEBIT,
+    CREDIT,
+    REFUND,
+    BLOCK,
+    ACTIVATE,
+    PAUSE
+  }
+
+  final Type type;
+  final Long accountId;
+  final Long counterpartyId;
+  final long amount;
+  //исходная сумма нужна для сообщений об ошибках в том же виде, в каком её передал клиент
+  final BigDecimal decimalAmount;
+  final BankAccount account;
+  final CountDownLatch paused;
+  final CountDownLatch resume;
+
+  final CompletableFuture<BankAccount> result = new CompletableFuture<>();
+  final CompletableFuture<Void> durable = new CompletableFuture<>();
+  //остаток второго счёта при переводе внутри одного сегмента
+  long counterpartyBalance;
+
+  private LedgerCommand(Type type, Long accountId, Long counterpartyId, long amount, BigDecimal decimalAmount,
+      BankAccount account, CountDownLatch paused, CountDownLatch resume) {
+    this.type = type;
+    this.accountId = accountId;
+    this.counterpartyId = counterpartyId;
+    this.amount = amount;
+    this.decimalAmount = decimalAmount;
+    this.account = account;
+    this.paused = paused;
+    this.resume = resume;
+  }
+
+  static LedgerCommand register(BankAccount account) {
+    return new LedgerCommand(Type.REGISTER, account.getId(), null, 0, null, account, null, null);
+  }
+
+  static LedgerCommand of(Type type, Long accountId) {
+    return new LedgerCommand(type, accountId, null, 0, null, null, null, null);
+  }
+
+  static LedgerCommand money(Type type, Long accountId, Long counterpartyId, long amount, BigDecimal decimalAmount) {
+    return new LedgerCommand(type, accountId, counterpartyId, amount, decimalAmount, null, null, null);
+  }
+
+  static LedgerCommand pause(CountDownLatch paused, CountDownLatch resume) {
+    return new LedgerCommand(Type.PAUSE, null, null, 0, null, null, paused, resume);
+  }
+}
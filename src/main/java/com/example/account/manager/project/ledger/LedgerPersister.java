@@ -0,0 +1,150 @@
+package com.example.account.manager.project.ledger;
+
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.exceptions.LedgerPersistenceException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Асинхронно сохраняет состояние счетов, изменённых сегментами реестра.
+ * Изменения собираются в пачки, несколько изменений одного счёта сворачиваются в последнее,
+ * пачка пишется одним JDBC batch в одной транзакции.
+ * Неудачная запись повторяется не больше maxRetries раз. После этого изменения пачки уже применены в памяти,
+ * но не в базе, поэтому сохранение считается отказавшим: ожидающие получают LedgerPersistenceException,
+ * а реестр перестаёт принимать изменения до перезапуска.
+ */
+@Slf4j
+public class LedgerPersister implements Runnable {
+
+  private static final String UPDATE_ACCOUNT = "update bank_account set balance = ?, status = ? where id = ?";
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+  private static final long RETRY_PAUSE_MILLIS = 100;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final MpscRingBuffer<AccountState> queue;
+  private final int maxBatchSize;
+  private final int maxRetries;
+
+  private volatile boolean running = true;
+  private volatile boolean sleeping;
+  private volatile boolean failed;
+  private Thread thread;
+
+  public LedgerPersister(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, int queueCapacity, int maxBatchSize,
+      int maxRetries) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.queue = new MpscRingBuffer<>(queueCapacity);
+    this.maxBatchSize = maxBatchSize;
+    this.maxRetries = Math.max(maxRetries, 0);
+  }
+
+  void enqueue(Long accountId, long balance, BankAccountStatus status, CompletableFuture<Void> durable) {
+    AccountState state = new AccountState(accountId, balance, status, durable);
+    while (!queue.offer(state)) {
+      Thread.yield();
+    }
+    if (sleeping) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  public boolean isFailed() {
+    return failed;
+  }
+
+  public void start() {
+    thread = new Thread(this, "ledger-persister");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public void stop() {
+    running = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void run() {
+    List<AccountState> batch = new ArrayList<>(maxBatchSize);
+    int retries = 0;
+    while (running || !queue.isEmpty()) {
+      AccountState state;
+      while (batch.size() < maxBatchSize && (state = queue.poll()) != null) {
+        batch.add(state);
+      }
+      if (batch.isEmpty()) {
+        sleeping = true;
+        if (queue.isEmpty() && running) {
+          LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        sleeping = false;
+        continue;
+      }
+      if (write(batch)) {
+        batch.forEach(written -> written.durable.complete(null));
+        batch.clear();
+        retries = 0;
+      } else if (running && retries < maxRetries) {
+        retries++;
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(RETRY_PAUSE_MILLIS));
+      } else if (running) {
+        //следующие пачки ещё пишутся, но база уже расходится с реестром
+        failed = true;
+        log.error("Ledger persistence failed: " + batch.size() + " bank account changes were not written after "
+            + (retries + 1) + " attempts");
+        batch.forEach(lost -> lost.durable.completeExceptionally(
+            new LedgerPersistenceException("Ledger could not persist bank account with id:" + lost.accountId)));
+        batch.clear();
+        retries = 0;
+      } else {
+        batch.forEach(failed -> failed.durable.completeExceptionally(new IllegalStateException("Ledger persister stopped")));
+        batch.clear();
+      }
+    }
+  }
+
+  private boolean write(List<AccountState> batch) {
+    Map<Long, AccountState> latest = new LinkedHashMap<>(batch.size() * 2);
+    batch.forEach(state -> latest.put(state.accountId, state));
+    List<Object[]> arguments = new ArrayList<>(latest.size());
+    latest.values().forEach(state -> arguments.add(new Object[] {
+        state.balance, state.status.name(), state.accountId}));
+    try {
+      transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(UPDATE_ACCOUNT, arguments));
+      return true;
+    } catch (RuntimeException e) {
+      log.error("Could not persist " + arguments.size() + " bank accounts", e);
+      return false;
+    }
+  }
+
+  private static final class AccountState {
+
+    final Long accountId;
+    final long balance;
+    final BankAccountStatus status;
+    final CompletableFuture<Void> durable;
+
+    AccountState(Long accountId, long balance, BankAccountStatus status, CompletableFuture<Void> durable) {
+      this.accountId = accountId;
+      this.balance = balance;
+      this.status = status;
+      this.durable = durable;
+    }
+  }
+}
@@ -0,0 +1,342 @@
+package com.example.account.manager.project.ledger;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.exceptions.BankAccountIllegalStateException;
+import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.exceptions.BankAccountStatusException;
+import com.example.account.manager.project.exceptions.BankAccountWithdrawOperationException;
+import com.example.account.manager.project.money.Money;
+import com.example.account.manager.project.oplog.OperationLog;
+import com.example.account.manager.project.oplog.OperationLogType;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Сегмент реестра: счета с id % shards == index. Состояние сегмента меняет только его поток,
+ * команды приходят через кольцевую очередь. Остатки хранятся в копейках в массиве long.
+ */
+final class LedgerShard implements Runnable {
+
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final int index;
+  private final MpscRingBuffer<LedgerCommand> commands;
+  private final LedgerPersister persister;
+  private final OperationLog operationLog;
+
+  private final Map<Long, Integer> slots = new HashMap<>();
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private long[] balances = new long[INITIAL_CAPACITY];
+  private BankAccountStatus[] statuses = new BankAccountStatus[INITIAL_CAPACITY];
+  private User[] owners = new User[INITIAL_CAPACITY];
+  private int size;
+  private int[] freeSlots = new int[16];
+  private int freeCount;
+
+  private volatile boolean running = true;
+  private volatile boolean sleeping;
+  private Thread thread;
+
+  LedgerShard(int index, int queueCapacity, LedgerPersister persister, OperationLog operationLog) {
+    this.index = index;
+    this.commands = new MpscRingBuffer<>(queueCapacity);
+    this.persister = persister;
+    this.operationLog = operationLog;
+  }
+
+  void start() {
+    thread = new Thread(this, "ledger-shard-" + index);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  void stop() {
+    running = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    //команды, оставшиеся в очереди, не будут выполнены: ожидающие их потоки получают ошибку
+    if (!thread.isAlive()) {
+      LedgerCommand command;
+      while ((command = commands.poll()) != null) {
+        command.result.completeExceptionally(new IllegalStateException("Ledger is stopped"));
+        command.durable.complete(null);
+      }
+    }
+  }
+
+  boolean isRunning() {
+    return running;
+  }
+
+  boolean hasPending() {
+    return !commands.isEmpty();
+  }
+
+  boolean submit(LedgerCommand command, long deadlineNanos) {
+    if (!running) {
+      return false;
+    }
+    while (!commands.offer(command)) {
+      if (!running || System.nanoTime() > deadlineNanos) {
+        return false;
+      }
+      Thread.yield();
+    }
+    if (sleeping) {
+      LockSupport.unpark(thread);
+    }
+    return true;
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      LedgerCommand command = commands.poll();
+      if (command == null) {
+        sleeping = true;
+        if (commands.isEmpty() && running) {
+          LockSupport.parkNanos(this, PARK_NANOS);
+        }
+        sleeping = false;
+        continue;
+      }
+      execute(command);
+    }
+  }
+
+  private void execute(LedgerCommand command) {
+    try {
+      switch (command.type) {
+        case REGISTER:
+          command.result.complete(snapshot(register(command.account)));
+          break;
+        case REMOVE:
+          command.result.complete(remove(slotOf(command.accountId)));
+          break;
+        case DEPOSIT: {
+          int slot = slotOf(command.accountId);
+          checkActive(slot);
+          credit(slot, command.amount, command.durable);
+          command.result.complete(snapshot(slot));
+          break;
+        }
+        case WITHDRAW: {
+          int slot = slotOf(command.accountId);
+          checkActive(slot);
+          checkFunds(slot, null, command.amount, command.decimalAmount);
+          debit(slot, command.amount, command.durable);
+          command.result.complete(snapshot(slot));
+          break;
+        }
+        case TRANSFER:
+          transfer(command);
+          break;
+        case CHECK_ACTIVE:
+          checkActive(slotOf(command.accountId));
+          command.durable.complete(null);
+          command.result.complete(null);
+          break;
+        case DEBIT: {
+          int slot = slotOf(command.accountId);
+          checkActive(slot);
+          checkFunds(slot, command.counterpartyId, command.amount, command.decimalAmount);
+          debit(slot, command.amount, command.durable);
+          command.result.complete(snapshot(slot));
+          break;
+        }
+        case CREDIT: {
+          int slot = slotOf(command.accountId);
+          checkActive(slot);
+          credit(slot, command.amount, command.durable);
+          command.result.complete(snapshot(slot));
+          break;
+        }
+        case REFUND: {
+          //возврат списанной суммы не зависит от статуса счёта
+          int slot = slotOf(command.accountId);
+          credit(slot, command.amount, command.durable);
+          command.result.complete(snapshot(slot));
+          break;
+        }
+        case BLOCK:
+          command.result.complete(snapshot(changeStatus(slotOf(command.accountId), BankAccountStatus.BLOCKED, command.durable)));
+          break;
+        case ACTIVATE:
+          command.result.complete(snapshot(changeStatus(slotOf(command.accountId), BankAccountStatus.ACTIVE, command.durable)));
+          break;
+        case PAUSE:
+          command.paused.countDown();
+          command.resume.await();
+          command.result.complete(null);
+          break;
+        default:
+          throw new IllegalStateException("Unknown ledger command " + command.type);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      command.result.completeExceptionally(e);
+    } catch (RuntimeException e) {
+      command.result.completeExceptionally(e);
+    } finally {
+      //для команд, не изменивших состояние, ждать сохранения нечего
+      if (command.result.isCompletedExceptionally()) {
+        command.durable.complete(null);
+      }
+    }
+  }
+
+  //упорядочивание счетов по идентификатору, как в BankAccountServiceImpl.transferMoney
+  private void transfer(LedgerCommand command) {
+    int from;
+    int to;
+    if (command.counterpartyId.compareTo(command.accountId) > 0) {
+      from = slotOf(command.accountId);
+      to = slotOf(command.counterpartyId);
+    } else {
+      to = slotOf(command.counterpartyId);
+      from = slotOf(command.accountId);
+    }
+    checkActive(from);
+    checkActive(to);
+    checkFunds(from, command.counterpartyId, command.amount, command.decimalAmount);
+    if (from == to) {
+      persist(from, command.durable);
+    } else {
+      long creditedBalance = Money.add(balances[to], command.amount);
+      balances[from] -= command.amount;
+      balances[to] = creditedBalance;
+      CompletableFuture<Void> debited = new CompletableFuture<>();
+      CompletableFuture<Void> credited = new CompletableFuture<>();
+      persist(from, debited);
+      persist(to, credited);
+      CompletableFuture.allOf(debited, credited).whenComplete((written, e) -> {
+        if (e == null) {
+          command.durable.complete(null);
+        } else {
+          command.durable.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+        }
+      });
+    }
+    command.counterpartyBalance = balances[to];
+    command.result.complete(snapshot(from));
+  }
+
+  //методы ниже вызываются потоком сегмента либо координатором, пока сегмент приостановлен командой PAUSE
+
+  int slotOf(Long accountId) {
+    Integer slot = slots.get(accountId);
+    if (slot == null) {
+      throw new BankAccountNotFoundException(accountId);
+    }
+    return slot;
+  }
+
+  void checkActive(int slot) {
+    if (statuses[slot] == BankAccountStatus.BLOCKED) {
+      operationLog.record(OperationLogType.REJECTED_BLOCKED, ids[slot]);
+      throw new BankAccountIllegalStateException(ids[slot]);
+    }
+  }
+
+  //counterpartyId - счёт получателя для перевода, null для снятия
+  void checkFunds(int slot, Long counterpartyId, long amount, BigDecimal decimalAmount) {
+    //Счёт не может быть отрицательным
+    if (balances[slot] < amount) {
+      if (counterpartyId == null) {
+        operationLog.record(OperationLogType.WITHDRAWAL_REJECTED, ids[slot], decimalAmount);
+      } else {
+        operationLog.record(OperationLogType.TRANSFER_REJECTED, ids[slot], counterpartyId, decimalAmount);
+      }
+      throw new BankAccountWithdrawOperationException(ids[slot], decimalAmount);
+    }
+  }
+
+  long balance(int slot) {
+    return balances[slot];
+  }
+
+  void setBalance(int slot, long balance) {
+    balances[slot] = balance;
+  }
+
+  Long accountId(int slot) {
+    return ids[slot];
+  }
+
+  void persist(int slot, CompletableFuture<Void> durable) {
+    persister.enqueue(ids[slot], balances[slot], statuses[slot], durable);
+  }
+
+  BankAccount snapshot(int slot) {
+    return new BankAccount(ids[slot], balances[slot], statuses[slot], owners[slot]);
+  }
+
+  private void credit(int slot, long amount, CompletableFuture<Void> durable) {
+    balances[slot] = Money.add(balances[slot], amount);
+    persist(slot, durable);
+  }
+
+  private void debit(int slot, long amount, CompletableFuture<Void> durable) {
+    balances[slot] -= amount;
+    persist(slot, durable);
+  }
+
+  private int changeStatus(int slot, BankAccountStatus status, CompletableFuture<Void> durable) {
+    if (statuses[slot] == status) {
+      throw new BankAccountStatusException(status, status);
+    }
+    statuses[slot] = status;
+    persist(slot, durable);
+    return slot;
+  }
+
+  int register(BankAccount account) {
+    Integer existing = slots.get(account.getId());
+    int slot = existing != null ? existing : allocateSlot();
+    ids[slot] = account.getId();
+    balances[slot] = account.getBalanceMinorUnits();
+    statuses[slot] = account.getStatus();
+    owners[slot] = account.getUser();
+    slots.put(account.getId(), slot);
+    return slot;
+  }
+
+  private BankAccount remove(int slot) {
+    BankAccount removed = snapshot(slot);
+    slots.remove(ids[slot]);
+    owners[slot] = null;
+    statuses[slot] = null;
+    if (freeCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+    }
+    freeSlots[freeCount++] = slot;
+    return removed;
+  }
+
+  private int allocateSlot() {
+    if (freeCount > 0) {
+      return freeSlots[--freeCount];
+    }
+    if (size == ids.length) {
+      int capacity = size * 2;
+      ids = Arrays.copyOf(ids, capacity);
+      balances = Arrays.copyOf(balances, capacity);
+      statuses = Arrays.copyOf(statuses, capacity);
+      owners = Arrays.copyOf(owners, capacity);
+    }
+    return size++;
+  }
+}
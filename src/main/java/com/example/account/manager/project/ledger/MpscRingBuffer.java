@@ -0,0 +1,67 @@
+package com.example.account.manager.project.ledger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченная кольцевая очередь без блокировок для нескольких производителей и одного потребителя.
+ * Каждая ячейка хранит номер последовательности: производитель занимает ячейку CAS-ом по хвосту,
+ * потребитель читает её только после того, как производитель опубликовал номер.
+ */
+public class MpscRingBuffer<E> {
+
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  //читается и пишется только потоком-потребителем
+  private long head;
+
+  public MpscRingBuffer(int capacity) {
+    int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+    this.mask = size - 1;
+    this.elements = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  public boolean offer(E element) {
+    while (true) {
+      long position = tail.get();
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.lazySet(index, element);
+          sequences.set(index, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        return false;
+      }
+    }
+  }
+
+  public E poll() {
+    int index = (int) head & mask;
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+    E element = elements.get(index);
+    elements.lazySet(index, null);
+    sequences.set(index, head + mask + 1);
+    head++;
+    return element;
+  }
+
+  public boolean isEmpty() {
+    return sequences.get((int) head & mask) != head + 1;
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+}
@@ -0,0 +1,99 @@
+package com.example.account.manager.project.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Время каждой операции BankAccountService с тегами operation и outcome (гистограмма и перцентили),
+ * число выполняющихся операций и число таймаутов. Аспект стоит снаружи транзакции, поэтому время
+ * включает и её фиксацию. Таймеры создаются один раз на метод, запись не выделяет памяти.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class BankAccountOperationMetrics {
+
+  static final String OPERATION_TIMER = "bank.accounts.operation";
+
+  private final MeterRegistry registry;
+  private final Map<Method, Timer[]> timers = new ConcurrentHashMap<>();
+  private final AtomicInteger active = new AtomicInteger();
+  private final Counter timeouts;
+  //вложенный вызов (RetryingBankAccountService -> BankAccountServiceImpl) уже учтён внешним
+  private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+  public BankAccountOperationMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+    this.registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    registry.gauge("bank.accounts.transactions.active", active);
+    this.timeouts = Counter.builder("bank.accounts.transactions.timeouts").register(registry);
+  }
+
+  @Around("execution(public * com.example.account.manager.project.services.BankAccountService.*(..))")
+  public Object time(ProceedingJoinPoint call) throws Throwable {
+    int[] nesting = depth.get();
+    if (nesting[0] > 0) {
+      return call.proceed();
+    }
+    nesting[0]++;
+    active.incrementAndGet();
+    OperationOutcome outcome = OperationOutcome.SUCCESS;
+    long started = System.nanoTime();
+    try {
+      return call.proceed();
+    } catch (Throwable e) {
+      outcome = OperationOutcome.of(e);
+      if (outcome == OperationOutcome.TIMEOUT) {
+        timeouts.increment();
+      }
+      throw e;
+    } finally {
+      timers(((MethodSignature) call.getSignature()).getMethod())[outcome.ordinal()]
+          .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      active.decrementAndGet();
+      nesting[0]--;
+    }
+  }
+
+  private Timer[] timers(Method method) {
+    Timer[] methodTimers = timers.get(method);
+    if (methodTimers == null) {
+      methodTimers = timers.computeIfAbsent(method, this::register);
+    }
+    return methodTimers;
+  }
+
+  private Timer[] register(Method method) {
+    String operation = operation(method);
+    OperationOutcome[] outcomes = OperationOutcome.values();
+    Timer[] methodTimers = new Timer[outcomes.length];
+    for (OperationOutcome outcome : outcomes) {
+      methodTimers[outcome.ordinal()] = Timer.builder(OPERATION_TIMER)
+          .tag("operation", operation)
+          .tag("outcome", outcome.getTag())
+          .publishPercentiles(0.5, 0.99, 0.999)
+          .publishPercentileHistogram()
+          .register(registry);
+    }
+    return methodTimers;
+  }
+
+  //у transferMoney два варианта: одиночный перевод и пакет
+  private static String operation(Method method) {
+    return "transferMoney".equals(method.getName()) && method.getParameterCount() == 2 ? "transferMoneyBatch" : method.getName();
+  }
+}
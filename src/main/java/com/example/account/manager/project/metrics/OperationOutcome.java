@@ -0,0 +1,53 @@
+package com.example.account.manager.project.metrics;
+
+import com.example.account.manager.project.exceptions.BankAccountAmountException;
+import com.example.account.manager.project.exceptions.BankAccountBulkCreateException;
+import com.example.account.manager.project.exceptions.BankAccountIllegalStateException;
+import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.exceptions.BankAccountStatusException;
+import com.example.account.manager.project.exceptions.BankAccountWithdrawOperationException;
+import com.example.account.manager.project.exceptions.UserNotFoundException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.TransactionTimedOutException;
+
+/**
+ * Исход операции со счётом, значение тега outcome.
+ */
+public enum OperationOutcome {
+  SUCCESS("success"),
+  //отказ по правилам: нет счёта или владельца, не хватает денег, счёт заблокирован или уже в нужном статусе, неверная сумма
+  REJECTED("rejected"),
+  CONFLICT("conflict"),
+  //таймаут транзакции, запроса или ожидания блокировки строки
+  TIMEOUT("timeout"),
+  ERROR("error");
+
+  private final String tag;
+
+  OperationOutcome(String tag) {
+    this.tag = tag;
+  }
+
+  public String getTag() {
+    return tag;
+  }
+
+  public static OperationOutcome of(Throwable e) {
+    if (e instanceof BankAccountNotFoundException || e instanceof UserNotFoundException
+        || e instanceof BankAccountWithdrawOperationException || e instanceof BankAccountIllegalStateException
+        || e instanceof BankAccountStatusException || e instanceof BankAccountBulkCreateException
+        || e instanceof BankAccountAmountException) {
+      return REJECTED;
+    }
+    if (e instanceof OptimisticLockingFailureException) {
+      return CONFLICT;
+    }
+    if (e instanceof TransactionTimedOutException || e instanceof QueryTimeoutException
+        || e instanceof PessimisticLockingFailureException) {
+      return TIMEOUT;
+    }
+    return ERROR;
+  }
+}
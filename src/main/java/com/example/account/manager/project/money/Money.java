@@ -0,0 +1,107 @@
+package com.example.account.manager.project.money;
+
+import com.example.account.manager.project.exceptions.BankAccountAmountException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Суммы внутри сервиса хранятся в long в минимальных единицах (копейках), с проверкой переполнения.
+ * BigDecimal остаётся только на границе API: разбор суммы из запроса и остаток в ответе.
+ */
+public final class Money {
+
+  public static final int SCALE = 2;
+
+  private Money() {
+  }
+
+  /**
+   * Точный перевод в копейки; сумма с большим числом знаков после запятой или вне диапазона long отклоняется.
+   */
+  public static long toMinorUnits(BigDecimal amount) {
+    try {
+      BigDecimal scaled = amount.scale() == SCALE ? amount : amount.setScale(SCALE, RoundingMode.UNNECESSARY);
+      return scaled.movePointRight(SCALE).longValueExact();
+    } catch (ArithmeticException e) {
+      throw new BankAccountAmountException("Amount must have at most " + SCALE + " decimal places and fit in range: " + amount);
+    }
+  }
+
+  public static BigDecimal toDecimal(long minorUnits) {
+    return BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  /**
+   * Разбирает сумму из запроса ("10", "10.5", "-0.01") прямо в копейки, без промежуточного BigDecimal.
+   */
+  public static long parseMinorUnits(String amount) {
+    if (amount == null || amount.isEmpty()) {
+      throw invalid(amount);
+    }
+    int length = amount.length();
+    boolean negative = amount.charAt(0) == '-';
+    int i = negative || amount.charAt(0) == '+' ? 1 : 0;
+    long units = 0;
+    int integerDigits = 0;
+    for (; i < length && amount.charAt(i) != '.'; i++, integerDigits++) {
+      units = appendDigit(units, amount, i);
+    }
+    int fractionDigits = 0;
+    if (i < length) {
+      for (i++; i < length; i++, fractionDigits++) {
+        if (fractionDigits == SCALE) {
+          throw invalid(amount);
+        }
+        units = appendDigit(units, amount, i);
+      }
+    }
+    if (integerDigits + fractionDigits == 0) {
+      throw invalid(amount);
+    }
+    for (; fractionDigits < SCALE; fractionDigits++) {
+      units = shift(units, 0, amount);
+    }
+    return negative ? -units : units;
+  }
+
+  public static BigDecimal parse(String amount) {
+    return toDecimal(parseMinorUnits(amount));
+  }
+
+  public static long add(long balance, long amount) {
+    try {
+      return Math.addExact(balance, amount);
+    } catch (ArithmeticException e) {
+      throw new BankAccountAmountException("Balance overflow");
+    }
+  }
+
+  public static long subtract(long balance, long amount) {
+    try {
+      return Math.subtractExact(balance, amount);
+    } catch (ArithmeticException e) {
+      throw new BankAccountAmountException("Balance overflow");
+    }
+  }
+
+  private static long appendDigit(long units, String amount, int index) {
+    char digit = amount.charAt(index);
+    if (digit < '0' || digit > '9') {
+      throw invalid(amount);
+    }
+    return shift(units, digit - '0', amount);
+  }
+
+  //units * 10 + digit без переполнения
+  private static long shift(long units, int digit, String amount) {
+    if (units > (Long.MAX_VALUE - digit) / 10) {
+      throw invalid(amount);
+    }
+    return units * 10 + digit;
+  }
+
+  private static BankAccountAmountException invalid(String amount) {
+    return new BankAccountAmountException("Invalid amount: " + amount + "; expected a number with at most " + SCALE
+        + " decimal places");
+  }
+}
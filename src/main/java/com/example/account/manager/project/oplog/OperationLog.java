@@ -0,0 +1,214 @@
+package com.example.account.manager.project.oplog;
+
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Журнал операций со счетами в логгер bank.operations. Сервис только кладёт поля записи в заранее
+ * выделенные ячейки кольцевой очереди без блокировок, строки формирует и пишет пачками фоновый поток
+ * operation-log, поэтому запись лога не удлиняет удержание блокировок строк и не создаёт объектов
+ * в потоке запроса. Если очередь заполнена, запись отбрасывается и учитывается в метрике
+ * bank.accounts.oplog.dropped. Выполненные операции записываются из события BankAccountOperationEvent
+ * после фиксации транзакции, отказы - сразу в сервисе.
+ */
+@Component
+@Slf4j(topic = "bank.operations")
+public class OperationLog implements Runnable {
+
+  private final boolean enabled;
+  private final int batchSize;
+  private final long flushIntervalNanos;
+  private final int mask;
+  //ячейка i свободна для записи с номером s, если sequences[i] == s, и опубликована, если sequences[i] == s + 1
+  private final AtomicLongArray sequences;
+  private final OperationLogType[] types;
+  private final long[] subjectIds;
+  private final long[] counterpartyIds;
+  private final Object[] values;
+  private final long[] timestamps;
+  private final AtomicLong tail = new AtomicLong();
+  private final LongAdder dropped = new LongAdder();
+  //читается и пишется только фоновым потоком
+  private long head;
+  private final StringBuilder line = new StringBuilder(128);
+
+  private volatile boolean running = true;
+  private Thread writer;
+
+  public OperationLog(@Value("${oplog.enabled:true}") boolean enabled, @Value("${oplog.capacity:65536}") int capacity,
+      @Value("${oplog.batch-size:512}") int batchSize, @Value("${oplog.flush-interval-millis:10}") long flushIntervalMillis,
+      ObjectProvider<MeterRegistry> meterRegistry) {
+    this.enabled = enabled;
+    this.batchSize = Math.max(batchSize, 1);
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(flushIntervalMillis, 1));
+    int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+    this.mask = size - 1;
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    this.types = new OperationLogType[size];
+    this.subjectIds = new long[size];
+    this.counterpartyIds = new long[size];
+    this.values = new Object[size];
+    this.timestamps = new long[size];
+    FunctionCounter.builder("bank.accounts.oplog.dropped", dropped, LongAdder::sum)
+        .register(meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+  }
+
+  @PostConstruct
+  public void start() {
+    if (enabled) {
+      writer = new Thread(this, "operation-log");
+      writer.setDaemon(true);
+      writer.start();
+    }
+  }
+
+  public void record(OperationLogType type, long subjectId) {
+    record(type, subjectId, 0, null);
+  }
+
+  public void record(OperationLogType type, long subjectId, Object value) {
+    record(type, subjectId, 0, value);
+  }
+
+  /**
+   * Кладёт запись в очередь и сразу возвращается. value хранится по ссылке и форматируется
+   * фоновым потоком, поэтому должен быть неизменяемым.
+   */
+  public void record(OperationLogType type, long subjectId, long counterpartyId, Object value) {
+    if (!enabled) {
+      return;
+    }
+    long position;
+    int index;
+    while (true) {
+      position = tail.get();
+      index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+      } else if (difference < 0) {
+        dropped.increment();
+        return;
+      }
+    }
+    types[index] = type;
+    subjectIds[index] = subjectId;
+    counterpartyIds[index] = counterpartyId;
+    values[index] = value;
+    timestamps[index] = System.currentTimeMillis();
+    sequences.set(index, position + 1);
+  }
+
+  //запись о пакетной операции, у которой нет своего события, откладывается до фиксации транзакции
+  public void recordAfterCommit(OperationLogType type, long subjectId, long counterpartyId, Object value) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      record(type, subjectId, counterpartyId, value);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+      @Override
+      public void afterCommit() {
+        record(type, subjectId, counterpartyId, value);
+      }
+    });
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOperation(BankAccountOperationEvent event) {
+    long bankAccountId = event.getBankAccountId();
+    switch (event.getOperation()) {
+      case CREATED:
+        record(OperationLogType.CREATED, bankAccountId, event.getOwnerId(), null);
+        break;
+      case DELETED:
+        record(OperationLogType.DELETED, bankAccountId);
+        break;
+      case DEPOSIT:
+        record(OperationLogType.DEPOSIT, bankAccountId, event.getAmount());
+        break;
+      case WITHDRAWAL:
+        record(OperationLogType.WITHDRAWAL, bankAccountId, event.getAmount());
+        break;
+      case TRANSFER:
+        record(OperationLogType.TRANSFER, bankAccountId, event.getCounterpartyId(), event.getAmount());
+        break;
+      case ACTIVATED:
+        record(OperationLogType.ACTIVATED, bankAccountId);
+        break;
+      case BLOCKED:
+        record(OperationLogType.BLOCKED, bankAccountId);
+        break;
+      default:
+    }
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      if (drain() < batchSize) {
+        LockSupport.parkNanos(this, flushIntervalNanos);
+      }
+    }
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException {
+    running = false;
+    if (writer != null) {
+      LockSupport.unpark(writer);
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+      //остаток очереди дописывается после остановки фонового потока
+      int written;
+      do {
+        written = drain();
+      } while (written > 0);
+    }
+  }
+
+  //записывает не больше batchSize опубликованных записей и возвращает их число
+  private int drain() {
+    int written = 0;
+    while (written < batchSize) {
+      int index = (int) head & mask;
+      if (sequences.get(index) != head + 1) {
+        break;
+      }
+      if (log.isInfoEnabled()) {
+        line.setLength(0);
+        types[index].format(line, subjectIds[index], counterpartyIds[index], values[index]);
+        line.append(" time=").append(timestamps[index]);
+        log.info(line.toString());
+      }
+      values[index] = null;
+      sequences.set(index, head + mask + 1);
+      head++;
+      written++;
+    }
+    return written;
+  }
+}
@@ -0,0 +1,42 @@
+package com.example.account.manager.project.oplog;
+
+/**
+ * Вид записи журнала операций и имена её полей: счёт, второй участник и значение.
+ * null - поле в записи не выводится.
+ */
+public enum OperationLogType {
+  CREATED("account", "owner", null),
+  BULK_CREATED("accounts", "owners", null),
+  DELETED("account", null, null),
+  DEPOSIT("account", null, "amount"),
+  WITHDRAWAL("account", null, "amount"),
+  WITHDRAWAL_REJECTED("account", null, "amount"),
+  TRANSFER("from", "to", "amount"),
+  TRANSFER_REJECTED("from", "to", "amount"),
+  BATCH_COMMITTED("transfers", null, "mode"),
+  BATCH_ROLLED_BACK("transfers", null, "mode"),
+  ACTIVATED("account", null, null),
+  BLOCKED("account", null, null),
+  //операция отклонена, потому что счёт заблокирован
+  REJECTED_BLOCKED("account", null, null);
+
+  private final String subject;
+  private final String counterparty;
+  private final String value;
+
+  OperationLogType(String subject, String counterparty, String value) {
+    this.subject = subject;
+    this.counterparty = counterparty;
+    this.value = value;
+  }
+
+  void format(StringBuilder line, long subjectId, long counterpartyId, Object valueObject) {
+    line.append(name()).append(' ').append(subject).append('=').append(subjectId);
+    if (counterparty != null) {
+      line.append(' ').append(counterparty).append('=').append(counterpartyId);
+    }
+    if (value != null) {
+      line.append(' ').append(value).append('=').append(valueObject);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.example.account.manager.project.repositories;
+
+import com.example.account.manager.project.entities.AccountSummary;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AccountSummaryRepository extends JpaRepository<AccountSummary, AccountSummary.Key> {
+
+  //изменения счетов сбрасываются в базу до счётчиков, поэтому строки счетов всегда блокируются раньше строк итогов
+  @Modifying(flushAutomatically = true)
+  @Query("update AccountSummary s set s.accountCount = s.accountCount + :count, s.balance = s.balance + :balance "
+      + "where s.ownerId = :ownerId and s.status = :status and s.stripe = :stripe")
+  int add(@Param("ownerId") Long ownerId, @Param("status") BankAccountStatus status, @Param("stripe") int stripe,
+      @Param("count") long count, @Param("balance") long balance);
+
+  boolean existsByOwnerId(Long ownerId);
+
+  //[статус, число счетов, остаток]
+  @Query("select s.status, sum(s.accountCount), sum(s.balance) from AccountSummary s where s.ownerId = :ownerId group by s.status")
+  List<Object[]> sumByStatus(@Param("ownerId") Long ownerId);
+
+  //[владелец, статус, число счетов, остаток]
+  @Query("select s.ownerId, s.status, sum(s.accountCount), sum(s.balance) from AccountSummary s group by s.ownerId, s.status")
+  List<Object[]> sumByOwnerAndStatus();
+
+  //полный пересчёт по счетам: [владелец, статус, число счетов, остаток с частями горячих счетов]
+  @Query(value = "select a.user_id, a.status, count(*), coalesce(sum(a.balance + case when a.hot then "
+      + "(select coalesce(sum(s.balance), 0) from bank_account_slot s where s.bank_account_id = a.id) else 0 end), 0) "
+      + "from bank_account a group by a.user_id, a.status", nativeQuery = true)
+  List<Object[]> recount();
+}
@@ -1,14 +1,83 @@
 package com.example.account.manager.project.repositories;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 public interface BankAccountRepository extends JpaRepository<BankAccount, Long> {
 
+  int STREAM_FETCH_SIZE = 500;
+
   @Override
   @Lock(LockModeType.PESSIMISTIC_WRITE)
   Optional<BankAccount> findById(Long aLong);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select a from BankAccount a where a.id in :ids order by a.id")
+  List<BankAccount> findAllForUpdateByIdIn(@Param("ids") Collection<Long> ids);
+
+  //чтение без блокировки: для ответов контроллера и для режима optimistic, где конфликт ловит @Version
+  @Query("select a from BankAccount a where a.id = :id")
+  Optional<BankAccount> readById(@Param("id") Long id);
+
+  //статус из базы, а не из контекста: зачисление в часть горячего счёта проверяет его уже после блокировки части
+  @Query("select a.status from BankAccount a where a.id = :id")
+  Optional<BankAccountStatus> findStatusById(@Param("id") Long id);
+
+  @Query("select a from BankAccount a where a.id in :ids order by a.id")
+  List<BankAccount> findAllByIdIn(@Param("ids") Collection<Long> ids);
+
+  //условные изменения одним запросом: число изменённых строк 0, если условие не выполнено или счёта нет;
+  //версия увеличивается, чтобы параллельная операция в режиме optimistic обнаружила конфликт
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("update BankAccount a set a.status = :status, a.version = a.version + 1 where a.id = :id and a.status = :expected")
+  int updateStatus(@Param("id") Long id, @Param("expected") BankAccountStatus expected, @Param("status") BankAccountStatus status);
+
+  //горячие счета сюда не попадают: их остаток лежит и в частях
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("update BankAccount a set a.balanceMinorUnits = a.balanceMinorUnits - :amount, a.version = a.version + 1 "
+      + "where a.id = :id and a.status = com.example.account.manager.project.entities.BankAccountStatus.ACTIVE "
+      + "and a.hot = false and a.balanceMinorUnits >= :amount")
+  int debitIfActive(@Param("id") Long id, @Param("amount") long amount);
+
+  //части горячих счетов возвращаются в строку счёта, после этого части можно удалить
+  @Modifying
+  @Query(value = "update bank_account set balance = balance + (select coalesce(sum(s.balance), 0) from bank_account_slot s "
+      + "where s.bank_account_id = bank_account.id), hot = false where hot = true", nativeQuery = true)
+  int mergeHotAccountSlots();
+
+  @Query("select max(a.id) from BankAccount a")
+  Long findMaxId();
+
+  //владелец читается тем же запросом, иначе для каждого владельца уходит отдельный select
+  @Query("select a from BankAccount a join fetch a.user order by a.id")
+  List<BankAccount> findAllWithUser();
+
+  @Query("select a from BankAccount a join fetch a.user u where u.id = :userId order by a.id")
+  List<BankAccount> findAllByUserId(@Param("userId") Long userId);
+
+  @Query("select a from BankAccount a join fetch a.user where a.id > :after order by a.id")
+  List<BankAccount> findPageAfter(@Param("after") Long after, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("select a from BankAccount a join fetch a.user order by a.id")
+  Stream<BankAccount> streamAll();
 }
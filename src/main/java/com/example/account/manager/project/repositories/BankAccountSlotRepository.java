@@ -0,0 +1,42 @@
+package com.example.account.manager.project.repositories;
+
+import com.example.account.manager.project.entities.BankAccountSlot;
+import java.util.List;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface BankAccountSlotRepository extends JpaRepository<BankAccountSlot, Long> {
+
+  @Modifying
+  @Query("update BankAccountSlot s set s.balance = s.balance + :amount where s.bankAccountId = :bankAccountId and s.slot = :slot")
+  int credit(@Param("bankAccountId") Long bankAccountId, @Param("slot") int slot, @Param("amount") long amount);
+
+  //списание проходит, только если в части достаточно денег
+  @Modifying
+  @Query("update BankAccountSlot s set s.balance = s.balance - :amount "
+      + "where s.bankAccountId = :bankAccountId and s.slot = :slot and s.balance >= :amount")
+  int debit(@Param("bankAccountId") Long bankAccountId, @Param("slot") int slot, @Param("amount") long amount);
+
+  @Query("select coalesce(sum(s.balance), 0) from BankAccountSlot s where s.bankAccountId = :bankAccountId")
+  long sumBalance(@Param("bankAccountId") Long bankAccountId);
+
+  //номера и остатки частей без загрузки сущностей в контекст, чтобы не видеть устаревшие значения после update
+  @Query("select s.slot, s.balance from BankAccountSlot s where s.bankAccountId = :bankAccountId order by s.slot")
+  List<Object[]> findSlotBalances(@Param("bankAccountId") Long bankAccountId);
+
+  //смена статуса и удаление горячего счёта ждут зачисления, уже начатые в его части
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select s from BankAccountSlot s where s.bankAccountId = :bankAccountId order by s.slot")
+  List<BankAccountSlot> findAllForUpdateByBankAccountId(@Param("bankAccountId") Long bankAccountId);
+
+  @Query("select s.bankAccountId, count(s) from BankAccountSlot s group by s.bankAccountId")
+  List<Object[]> countByBankAccount();
+
+  @Modifying
+  @Query("delete from BankAccountSlot s where s.bankAccountId = :bankAccountId")
+  int deleteByBankAccountId(@Param("bankAccountId") Long bankAccountId);
+}
@@ -0,0 +1,19 @@
+package com.example.account.manager.project.repositories;
+
+import com.example.account.manager.project.entities.BankAccountTransaction;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface BankAccountTransactionRepository extends JpaRepository<BankAccountTransaction, Long> {
+
+  //выборка по ключу (время, идентификатор): в момент from пропускаются записи с идентификатором не больше after,
+  //поэтому следующая страница начинается с from = время и after = идентификатор последней записи
+  @Query("select t from BankAccountTransaction t where t.bankAccountId = :bankAccountId "
+      + "and t.createdAt >= :from and t.createdAt < :to and (t.createdAt > :from or t.id > :after) "
+      + "order by t.createdAt, t.id")
+  List<BankAccountTransaction> findPage(@Param("bankAccountId") Long bankAccountId, @Param("from") long from,
+      @Param("to") long to, @Param("after") long after, Pageable pageable);
+}
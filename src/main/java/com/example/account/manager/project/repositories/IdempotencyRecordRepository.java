@@ -0,0 +1,31 @@
+package com.example.account.manager.project.repositories;
+
+import com.example.account.manager.project.entities.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+  @Modifying
+  @Query("delete from IdempotencyRecord r where r.createdAt < :createdBefore")
+  int deleteCreatedBefore(@Param("createdBefore") long createdBefore);
+
+  //ключ, занятый в claimedAt, переходит к новому запросу, если его так никто и не завершил
+  @Modifying
+  @Query("update IdempotencyRecord r set r.claimedAt = :claimedAt where r.idempotencyKey = :idempotencyKey"
+      + " and r.completed = false and r.claimedAt = :previousClaimedAt")
+  int reclaim(@Param("idempotencyKey") String idempotencyKey, @Param("previousClaimedAt") long previousClaimedAt,
+      @Param("claimedAt") long claimedAt);
+
+  @Modifying
+  @Query("update IdempotencyRecord r set r.completed = true where r.idempotencyKey = :idempotencyKey"
+      + " and r.completed = false and r.claimedAt = :claimedAt")
+  int markCompleted(@Param("idempotencyKey") String idempotencyKey, @Param("claimedAt") long claimedAt);
+
+  @Modifying
+  @Query("delete from IdempotencyRecord r where r.idempotencyKey = :idempotencyKey"
+      + " and r.completed = false and r.claimedAt = :claimedAt")
+  int deleteClaim(@Param("idempotencyKey") String idempotencyKey, @Param("claimedAt") long claimedAt);
+}
@@ -0,0 +1,6 @@
+package com.example.account.manager.project.requests;
+
+public enum BatchTransferMode {
+  ALL_OR_NOTHING,
+  BEST_EFFORT;
+}
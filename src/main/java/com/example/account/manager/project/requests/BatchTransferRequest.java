@@ -0,0 +1,20 @@
+package com.example.account.manager.project.requests;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class BatchTransferRequest {
+
+  BatchTransferMode mode = BatchTransferMode.ALL_OR_NOTHING;
+  List<TransferRequest> transfers = new ArrayList<>();
+
+  public BatchTransferRequest() {
+  }
+
+  public BatchTransferRequest(BatchTransferMode mode, List<TransferRequest> transfers) {
+    this.mode = mode;
+    this.transfers = transfers;
+  }
+}
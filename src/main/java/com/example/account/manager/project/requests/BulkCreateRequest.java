@@ -0,0 +1,18 @@
+package com.example.account.manager.project.requests;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class BulkCreateRequest {
+
+  List<OwnerAccounts> owners = new ArrayList<>();
+
+  public BulkCreateRequest() {
+  }
+
+  public BulkCreateRequest(List<OwnerAccounts> owners) {
+    this.owners = owners;
+  }
+}
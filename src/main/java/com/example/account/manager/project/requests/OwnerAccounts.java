@@ -0,0 +1,21 @@
+package com.example.account.manager.project.requests;
+
+import lombok.Data;
+
+/**
+ * Сколько счетов открыть одному владельцу при массовом создании.
+ */
+@Data
+public class OwnerAccounts {
+
+  Long ownerId;
+  int count = 1;
+
+  public OwnerAccounts() {
+  }
+
+  public OwnerAccounts(Long ownerId, int count) {
+    this.ownerId = ownerId;
+    this.count = count;
+  }
+}
@@ -0,0 +1,26 @@
+package com.example.account.manager.project.responses;
+
+import com.example.account.manager.project.entities.BankAccountStatus;
+import java.math.BigDecimal;
+import java.util.Map;
+import lombok.Data;
+
+//итог по владельцу; для итога по всем владельцам userId = null
+@Data
+public class BalanceSummary {
+
+  Long userId;
+  long accounts;
+  BigDecimal balance;
+  Map<BankAccountStatus, StatusSummary> statuses;
+
+  public BalanceSummary() {
+  }
+
+  public BalanceSummary(Long userId, long accounts, BigDecimal balance, Map<BankAccountStatus, StatusSummary> statuses) {
+    this.userId = userId;
+    this.accounts = accounts;
+    this.balance = balance;
+    this.statuses = statuses;
+  }
+}
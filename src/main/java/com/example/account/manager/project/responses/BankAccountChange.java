@@ -0,0 +1,37 @@
+package com.example.account.manager.project.responses;
+
+import com.example.account.manager.project.events.BankAccountOperation;
+import java.math.BigDecimal;
+import java.time.Instant;
+import lombok.Data;
+
+//событие ленты изменений; userId заполнен для созданного счёта, counterpartyId - для перевода
+@Data
+public class BankAccountChange {
+
+  private long id;
+  private BankAccountOperation operation;
+  private Long bankAccountId;
+  private Long counterpartyId;
+  private Long userId;
+  private BigDecimal amount;
+  private BigDecimal balance;
+  private BigDecimal counterpartyBalance;
+  private Instant time;
+
+  public BankAccountChange() {
+  }
+
+  public BankAccountChange(long id, BankAccountOperation operation, Long bankAccountId, Long counterpartyId, Long userId,
+      BigDecimal amount, BigDecimal balance, BigDecimal counterpartyBalance, Instant time) {
+    this.id = id;
+    this.operation = operation;
+    this.bankAccountId = bankAccountId;
+    this.counterpartyId = counterpartyId;
+    this.userId = userId;
+    this.amount = amount;
+    this.balance = balance;
+    this.counterpartyBalance = counterpartyBalance;
+    this.time = time;
+  }
+}
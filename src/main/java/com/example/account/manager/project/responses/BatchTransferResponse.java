@@ -0,0 +1,22 @@
+package com.example.account.manager.project.responses;
+
+import com.example.account.manager.project.requests.BatchTransferMode;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class BatchTransferResponse {
+
+  BatchTransferMode mode;
+  boolean committed;
+  List<TransferResult> results;
+
+  public BatchTransferResponse() {
+  }
+
+  public BatchTransferResponse(BatchTransferMode mode, boolean committed, List<TransferResult> results) {
+    this.mode = mode;
+    this.committed = committed;
+    this.results = results;
+  }
+}
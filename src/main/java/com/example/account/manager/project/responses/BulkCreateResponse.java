@@ -0,0 +1,19 @@
+package com.example.account.manager.project.responses;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class BulkCreateResponse {
+
+  int created;
+  List<Long> bankAccountIds;
+
+  public BulkCreateResponse() {
+  }
+
+  public BulkCreateResponse(List<Long> bankAccountIds) {
+    this.created = bankAccountIds.size();
+    this.bankAccountIds = bankAccountIds;
+  }
+}
@@ -0,0 +1,19 @@
+package com.example.account.manager.project.responses;
+
+import java.math.BigDecimal;
+import lombok.Data;
+
+@Data
+public class StatusSummary {
+
+  long accounts;
+  BigDecimal balance;
+
+  public StatusSummary() {
+  }
+
+  public StatusSummary(long accounts, BigDecimal balance) {
+    this.accounts = accounts;
+    this.balance = balance;
+  }
+}
@@ -0,0 +1,25 @@
+package com.example.account.manager.project.responses;
+
+import java.math.BigDecimal;
+import lombok.Data;
+
+@Data
+public class TransferReceipt {
+
+  Long bankAccountIdFrom;
+  Long bankAccountIdTo;
+  BigDecimal amount;
+  BigDecimal balanceFrom;
+  BigDecimal balanceTo;
+
+  public TransferReceipt() {
+  }
+
+  public TransferReceipt(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount, BigDecimal balanceFrom, BigDecimal balanceTo) {
+    this.bankAccountIdFrom = bankAccountIdFrom;
+    this.bankAccountIdTo = bankAccountIdTo;
+    this.amount = amount;
+    this.balanceFrom = balanceFrom;
+    this.balanceTo = balanceTo;
+  }
+}
@@ -0,0 +1,43 @@
+package com.example.account.manager.project.responses;
+
+import java.math.BigDecimal;
+import lombok.Data;
+
+@Data
+public class TransferResult {
+
+  Long bankAccountIdFrom;
+  Long bankAccountIdTo;
+  BigDecimal amount;
+  TransferStatus status;
+  BigDecimal balanceFrom;
+  BigDecimal balanceTo;
+  String message;
+
+  public TransferResult() {
+  }
+
+  public TransferResult(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount, TransferStatus status,
+      BigDecimal balanceFrom, BigDecimal balanceTo, String message) {
+    this.bankAccountIdFrom = bankAccountIdFrom;
+    this.bankAccountIdTo = bankAccountIdTo;
+    this.amount = amount;
+    this.status = status;
+    this.balanceFrom = balanceFrom;
+    this.balanceTo = balanceTo;
+    this.message = message;
+  }
+
+  public static TransferResult applied(TransferReceipt receipt) {
+    return new TransferResult(receipt.getBankAccountIdFrom(), receipt.getBankAccountIdTo(), receipt.getAmount(),
+        TransferStatus.APPLIED, receipt.getBalanceFrom(), receipt.getBalanceTo(), null);
+  }
+
+  public static TransferResult failed(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount, String message) {
+    return new TransferResult(bankAccountIdFrom, bankAccountIdTo, amount, TransferStatus.FAILED, null, null, message);
+  }
+
+  public static TransferResult aborted(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount) {
+    return new TransferResult(bankAccountIdFrom, bankAccountIdTo, amount, TransferStatus.ABORTED, null, null, null);
+  }
+}
@@ -0,0 +1,7 @@
+package com.example.account.manager.project.responses;
+
+public enum TransferStatus {
+  APPLIED,
+  FAILED,
+  ABORTED;
+}
@@ -0,0 +1,318 @@
+package com.example.account.manager.project.services;
+
+import com.example.account.manager.project.entities.AccountSummary;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.exceptions.UserNotFoundException;
+import com.example.account.manager.project.money.Money;
+import com.example.account.manager.project.repositories.AccountSummaryRepository;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.responses.BalanceSummary;
+import com.example.account.manager.project.responses.StatusSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Итоги по владельцам и статусам в таблице account_summary. Операции со счетами копят изменения числа счетов
+ * и остатков в своей транзакции, перед фиксацией они одним update на строку добавляются к итогам владельцев
+ * и к общему итогу, поэтому чтение итога не перебирает счета. Фоновая проверка сравнивает итоги с полным
+ * пересчётом по счетам. В профиле ledger счета меняются в памяти, и итог каждый раз пересчитывается по таблице счетов.
+ */
+@Service
+@Slf4j
+public class AccountSummaryService {
+
+  private final AccountSummaryRepository summaries;
+  private final UserRepository users;
+  private final TransactionTemplate transaction;
+  private final TransactionTemplate readTransaction;
+  private final boolean maintained;
+  private final int stripes;
+  private final int ownerStripes;
+  //владельцы, строки итогов которых уже зафиксированы
+  private final Set<Long> knownOwners = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger mismatches = new AtomicInteger();
+
+  public AccountSummaryService(AccountSummaryRepository summaries, UserRepository users, PlatformTransactionManager transactionManager,
+      Environment environment, ObjectProvider<MeterRegistry> meterRegistry,
+      @Value("${bank.accounts.summary.stripes:16}") int stripes,
+      @Value("${bank.accounts.summary.owner-stripes:4}") int ownerStripes) {
+    this.summaries = summaries;
+    this.users = users;
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.readTransaction = new TransactionTemplate(transactionManager);
+    this.readTransaction.setReadOnly(true);
+    this.maintained = !environment.acceptsProfiles(Profiles.of("ledger"));
+    this.stripes = Math.max(stripes, 1);
+    //часть владельца выбирается по части общего итога, поэтому их не больше, чем частей общего итога
+    this.ownerStripes = Math.max(Math.min(ownerStripes, this.stripes), 1);
+    MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    Gauge.builder("bank.accounts.summary.mismatches", mismatches, AtomicInteger::get).register(registry);
+  }
+
+  //итоги строятся заново по счетам, которые уже есть в базе
+  @PostConstruct
+  public void rebuild() {
+    if (!maintained) {
+      return;
+    }
+    Map<AccountSummary.Key, long[]> totals = readTransaction.execute(status -> recount());
+    transaction.execute(status -> {
+      summaries.deleteAllInBatch();
+      List<AccountSummary> rows = new ArrayList<>();
+      Set<Long> owners = new HashSet<>();
+      totals.keySet().forEach(key -> owners.add(key.getOwnerId()));
+      owners.remove(AccountSummary.ALL_USERS);
+      for (BankAccountStatus accountStatus : BankAccountStatus.values()) {
+        long[] total = totals.getOrDefault(new AccountSummary.Key(AccountSummary.ALL_USERS, accountStatus, 0), new long[2]);
+        rows.add(new AccountSummary(AccountSummary.ALL_USERS, accountStatus, 0, total[0], total[1]));
+        for (int stripe = 1; stripe < stripes; stripe++) {
+          rows.add(new AccountSummary(AccountSummary.ALL_USERS, accountStatus, stripe, 0, 0));
+        }
+        for (Long owner : owners) {
+          long[] ownerTotal = totals.getOrDefault(new AccountSummary.Key(owner, accountStatus, 0), new long[2]);
+          rows.add(new AccountSummary(owner, accountStatus, 0, ownerTotal[0], ownerTotal[1]));
+          for (int stripe = 1; stripe < ownerStripes; stripe++) {
+            rows.add(new AccountSummary(owner, accountStatus, stripe, 0, 0));
+          }
+        }
+      }
+      summaries.saveAll(rows);
+      knownOwners.clear();
+      knownOwners.addAll(owners);
+      return null;
+    });
+  }
+
+  /**
+   * Создаёт нулевые строки итогов владельца, если их ещё нет. Вызывается в транзакции создания счёта;
+   * параллельные создатели счетов одного владельца ждут блокировку его строки в таблице пользователей.
+   */
+  public void ensureOwner(Long ownerId) {
+    if (!maintained || knownOwners.contains(ownerId)) {
+      return;
+    }
+    if (!summaries.existsByOwnerId(ownerId)) {
+      users.lockById(ownerId);
+      if (!summaries.existsByOwnerId(ownerId)) {
+        List<AccountSummary> rows = new ArrayList<>();
+        for (BankAccountStatus status : BankAccountStatus.values()) {
+          for (int stripe = 0; stripe < ownerStripes; stripe++) {
+            rows.add(new AccountSummary(ownerId, status, stripe, 0, 0));
+          }
+        }
+        summaries.saveAll(rows);
+      }
+    }
+    //строки этой же транзакции могут откатиться вместе с ней
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          knownOwners.add(ownerId);
+        }
+      });
+    } else {
+      knownOwners.add(ownerId);
+    }
+  }
+
+  /**
+   * Добавляет изменение числа счетов и остатка (в копейках) к итогу владельца в статусе. Изменения копятся
+   * до фиксации транзакции: перевод между счетами одного владельца не меняет его итог и не трогает строки итогов.
+   */
+  public void record(Long ownerId, BankAccountStatus status, long count, long balance) {
+    if (!maintained || (count == 0 && balance == 0)) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      Deltas deltas = new Deltas();
+      deltas.add(ownerId, status, count, balance);
+      transaction.execute(transactionStatus -> {
+        deltas.apply();
+        return null;
+      });
+      return;
+    }
+    Deltas deltas = (Deltas) TransactionSynchronizationManager.getResource(this);
+    if (deltas == null) {
+      deltas = new Deltas();
+      TransactionSynchronizationManager.bindResource(this, deltas);
+      TransactionSynchronizationManager.registerSynchronization(deltas);
+    }
+    deltas.add(ownerId, status, count, balance);
+  }
+
+  @Transactional(readOnly = true)
+  public BalanceSummary userSummary(Long userId) {
+    Map<BankAccountStatus, long[]> totals = maintained ? sumByStatus(userId) : recountByStatus(userId);
+    if (totals.isEmpty() && !users.existsById(userId)) {
+      throw new UserNotFoundException(userId);
+    }
+    return toSummary(userId, totals);
+  }
+
+  @Transactional(readOnly = true)
+  public BalanceSummary totalSummary() {
+    return toSummary(null, maintained ? sumByStatus(AccountSummary.ALL_USERS) : recountByStatus(AccountSummary.ALL_USERS));
+  }
+
+  @Scheduled(fixedDelayString = "${bank.accounts.summary.verify-interval-millis:300000}",
+      initialDelayString = "${bank.accounts.summary.verify-interval-millis:300000}")
+  public int verify() {
+    if (!maintained) {
+      return 0;
+    }
+    //операции, зафиксированные между пересчётом и чтением итогов, дают разницу, которая не повторится;
+    //расхождением считается только разница, одинаковая в двух сравнениях подряд
+    Map<AccountSummary.Key, long[]> first = readTransaction.execute(status -> differences());
+    int found = 0;
+    if (!first.isEmpty()) {
+      Map<AccountSummary.Key, long[]> second = readTransaction.execute(status -> differences());
+      for (Map.Entry<AccountSummary.Key, long[]> difference : first.entrySet()) {
+        if (Arrays.equals(difference.getValue(), second.get(difference.getKey()))) {
+          found++;
+          log.warn("Account summary of owner " + difference.getKey().getOwnerId() + " in status " + difference.getKey().getStatus()
+              + " differs from recount by " + difference.getValue()[0] + " accounts and " + difference.getValue()[1] + " minor units");
+        }
+      }
+    }
+    mismatches.set(found);
+    return found;
+  }
+
+  //пересчёт минус итоги; нулевые разницы не попадают в результат
+  private Map<AccountSummary.Key, long[]> differences() {
+    Map<AccountSummary.Key, long[]> differences = recount();
+    for (Object[] row : summaries.sumByOwnerAndStatus()) {
+      add(differences, new AccountSummary.Key((Long) row[0], (BankAccountStatus) row[1], 0),
+          -((Number) row[2]).longValue(), -((Number) row[3]).longValue());
+    }
+    differences.values().removeIf(difference -> difference[0] == 0 && difference[1] == 0);
+    return differences;
+  }
+
+  //[число счетов, остаток] по владельцу и статусу, общий итог под ALL_USERS
+  private Map<AccountSummary.Key, long[]> recount() {
+    Map<AccountSummary.Key, long[]> totals = new HashMap<>();
+    for (Object[] row : summaries.recount()) {
+      if (row[0] == null || row[1] == null) {
+        continue;
+      }
+      BankAccountStatus status = BankAccountStatus.valueOf((String) row[1]);
+      long count = ((Number) row[2]).longValue();
+      long balance = ((Number) row[3]).longValue();
+      add(totals, new AccountSummary.Key(((Number) row[0]).longValue(), status, 0), count, balance);
+      add(totals, new AccountSummary.Key(AccountSummary.ALL_USERS, status, 0), count, balance);
+    }
+    return totals;
+  }
+
+  private Map<BankAccountStatus, long[]> recountByStatus(Long ownerId) {
+    Map<BankAccountStatus, long[]> totals = new EnumMap<>(BankAccountStatus.class);
+    recount().forEach((key, total) -> {
+      if (key.getOwnerId().equals(ownerId)) {
+        totals.put(key.getStatus(), total);
+      }
+    });
+    return totals;
+  }
+
+  private Map<BankAccountStatus, long[]> sumByStatus(Long ownerId) {
+    Map<BankAccountStatus, long[]> totals = new EnumMap<>(BankAccountStatus.class);
+    for (Object[] row : summaries.sumByStatus(ownerId)) {
+      totals.put((BankAccountStatus) row[0], new long[] {((Number) row[1]).longValue(), ((Number) row[2]).longValue()});
+    }
+    return totals;
+  }
+
+  private static BalanceSummary toSummary(Long userId, Map<BankAccountStatus, long[]> totals) {
+    Map<BankAccountStatus, StatusSummary> statuses = new EnumMap<>(BankAccountStatus.class);
+    long accounts = 0;
+    long balance = 0;
+    for (BankAccountStatus status : BankAccountStatus.values()) {
+      long[] total = totals.getOrDefault(status, new long[2]);
+      statuses.put(status, new StatusSummary(total[0], Money.toDecimal(total[1])));
+      accounts += total[0];
+      balance = Money.add(balance, total[1]);
+    }
+    return new BalanceSummary(userId, accounts, Money.toDecimal(balance), statuses);
+  }
+
+  private static void add(Map<AccountSummary.Key, long[]> totals, AccountSummary.Key key, long count, long balance) {
+    long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+    total[0] += count;
+    total[1] += balance;
+  }
+
+  /**
+   * Изменения итогов одной транзакции. Строки итогов изменяются перед фиксацией в порядке владельца и статуса,
+   * каждая в одной случайной части, поэтому транзакции не ждут друг друга по кругу, а зачисления на счета
+   * одного владельца не выстраиваются в очередь к одной строке.
+   */
+  private class Deltas extends TransactionSynchronizationAdapter {
+
+    //владелец -> [статус][число счетов, остаток]
+    private final Map<Long, long[][]> owners = new TreeMap<>();
+
+    void add(Long ownerId, BankAccountStatus status, long count, long balance) {
+      for (Long owner : new Long[] {ownerId, AccountSummary.ALL_USERS}) {
+        long[] delta = owners.computeIfAbsent(owner, id -> new long[BankAccountStatus.values().length][2])[status.ordinal()];
+        delta[0] += count;
+        delta[1] = Money.add(delta[1], balance);
+      }
+    }
+
+    void apply() {
+      int stripe = ThreadLocalRandom.current().nextInt(stripes);
+      for (Map.Entry<Long, long[][]> owner : owners.entrySet()) {
+        for (BankAccountStatus status : BankAccountStatus.values()) {
+          long[] delta = owner.getValue()[status.ordinal()];
+          if (delta[0] == 0 && delta[1] == 0) {
+            continue;
+          }
+          int ownerStripe = owner.getKey() == AccountSummary.ALL_USERS ? stripe : stripe % ownerStripes;
+          if (summaries.add(owner.getKey(), status, ownerStripe, delta[0], delta[1]) == 0) {
+            //операция со счетом важнее итога: расхождение покажет проверка
+            log.error("No account summary row for owner " + owner.getKey() + " in status " + status);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+      apply();
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+      TransactionSynchronizationManager.unbindResourceIfPossible(AccountSummaryService.this);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.example.account.manager.project.services;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountTransaction;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.exceptions.UserNotFoundException;
+import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.example.account.manager.project.repositories.BankAccountTransactionRepository;
+import com.example.account.manager.project.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Чтение счетов для GET-запросов: обычные запросы без блокировок строк в транзакциях только для чтения,
+ * поэтому чтение не ждёт переводов и не задерживает их. При bank.accounts.read-cache.ttl-millis больше нуля
+ * отдельный счёт берётся из кэша; запись о счёте сбрасывается после фиксации любой операции с ним.
+ */
+@Service
+@Transactional(readOnly = true)
+public class BankAccountQueryService {
+
+  private final BankAccountRepository repository;
+  private final UserRepository users;
+  private final BankAccountTransactionRepository transactions;
+  private final BankAccountReadCache cache;
+  private final Counter cacheHits;
+  private final Counter cacheMisses;
+
+  public BankAccountQueryService(BankAccountRepository repository, UserRepository users,
+      BankAccountTransactionRepository transactions, ObjectProvider<MeterRegistry> meterRegistry,
+      @Value("${bank.accounts.read-cache.ttl-millis:0}") long ttlMillis,
+      @Value("${bank.accounts.read-cache.capacity:10000}") int capacity) {
+    this.repository = repository;
+    this.users = users;
+    this.transactions = transactions;
+    this.cache = ttlMillis > 0 ? new BankAccountReadCache(capacity, ttlMillis, TimeUnit.MILLISECONDS) : null;
+    MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    this.cacheHits = Counter.builder("bank.accounts.read.cache").tag("result", "hit").register(registry);
+    this.cacheMisses = Counter.builder("bank.accounts.read.cache").tag("result", "miss").register(registry);
+  }
+
+  //может вернуть счёт из кэша, возраст которого не больше ttl
+  public Optional<BankAccount> findById(Long bankAccountId) {
+    if (cache == null) {
+      return repository.readById(bankAccountId);
+    }
+    BankAccount cached = cache.get(bankAccountId);
+    if (cached != null) {
+      cacheHits.increment();
+      return Optional.of(cached);
+    }
+    cacheMisses.increment();
+    long stamp = cache.stamp(bankAccountId);
+    Optional<BankAccount> bankAccount = repository.readById(bankAccountId);
+    bankAccount.ifPresent(account -> cache.put(bankAccountId, account, stamp));
+    return bankAccount;
+  }
+
+  public List<BankAccount> findAll() {
+    return repository.findAllWithUser();
+  }
+
+  //владелец проверяется отдельным запросом, только если счетов не нашлось
+  public List<BankAccount> findByUser(Long userId) {
+    List<BankAccount> bankAccounts = repository.findAllByUserId(userId);
+    if (bankAccounts.isEmpty() && !users.existsById(userId)) {
+      throw new UserNotFoundException(userId);
+    }
+    return bankAccounts;
+  }
+
+  public void requireUser(Long userId) {
+    if (!users.existsById(userId)) {
+      throw new UserNotFoundException(userId);
+    }
+  }
+
+  public List<BankAccount> findPageAfter(Long after, int limit) {
+    return repository.findPageAfter(after, PageRequest.of(0, limit));
+  }
+
+  //история удалённого счёта остаётся доступной; счёт проверяется, только если записей не нашлось
+  public List<BankAccountTransaction> findTransactions(Long bankAccountId, long from, long to, long after, int limit) {
+    List<BankAccountTransaction> page = transactions.findPage(bankAccountId, from, to, after, PageRequest.of(0, limit));
+    if (page.isEmpty() && !repository.existsById(bankAccountId)) {
+      throw new BankAccountNotFoundException(bankAccountId);
+    }
+    return page;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOperation(BankAccountOperationEvent event) {
+    if (cache == null) {
+      return;
+    }
+    cache.invalidate(event.getBankAccountId());
+    if (event.getCounterpartyId() != null) {
+      cache.invalidate(event.getCounterpartyId());
+    }
+  }
+}
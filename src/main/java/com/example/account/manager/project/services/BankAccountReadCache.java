@@ -0,0 +1,90 @@
+package com.example.account.manager.project.services;
+
+import com.example.account.manager.project.entities.BankAccount;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кэш прочитанных счетов с коротким ttl. Запись о счёте удаляется после каждой зафиксированной операции с ним.
+ * Чтение, начатое до такой операции, не кладёт свой результат в кэш: для этого у каждой полосы идентификаторов
+ * есть счётчик сбросов, который читатель запоминает до запроса и сверяет перед записью.
+ */
+class BankAccountReadCache {
+
+  private static final int STRIPES = 64;
+
+  private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+  //порядок добавления для вытеснения; идентификатор может остаться здесь уже после удаления из entries
+  private final Queue<Long> order = new ConcurrentLinkedQueue<>();
+  private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+  private final int capacity;
+  private final long ttlNanos;
+
+  BankAccountReadCache(int capacity, long ttl, TimeUnit unit) {
+    this.capacity = Math.max(capacity, 1);
+    this.ttlNanos = unit.toNanos(ttl);
+  }
+
+  BankAccount get(Long bankAccountId) {
+    Entry entry = entries.get(bankAccountId);
+    if (entry == null) {
+      return null;
+    }
+    if (System.nanoTime() - entry.createdNanos > ttlNanos) {
+      entries.remove(bankAccountId, entry);
+      return null;
+    }
+    return entry.bankAccount;
+  }
+
+  //значение берётся до чтения из базы и передаётся в put
+  long stamp(Long bankAccountId) {
+    return invalidations.get(stripe(bankAccountId));
+  }
+
+  void put(Long bankAccountId, BankAccount bankAccount, long stamp) {
+    Entry entry = new Entry(bankAccount, System.nanoTime());
+    if (entries.put(bankAccountId, entry) == null) {
+      order.add(bankAccountId);
+    }
+    //сброс мог пройти между чтением из базы и записью в кэш
+    if (invalidations.get(stripe(bankAccountId)) != stamp) {
+      entries.remove(bankAccountId, entry);
+    }
+    while (entries.size() > capacity) {
+      Long oldest = order.poll();
+      if (oldest == null) {
+        break;
+      }
+      entries.remove(oldest);
+    }
+  }
+
+  void invalidate(Long bankAccountId) {
+    invalidations.incrementAndGet(stripe(bankAccountId));
+    entries.remove(bankAccountId);
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private static int stripe(Long bankAccountId) {
+    return Long.hashCode(bankAccountId) & (STRIPES - 1);
+  }
+
+  private static final class Entry {
+
+    final BankAccount bankAccount;
+    final long createdNanos;
+
+    Entry(BankAccount bankAccount, long createdNanos) {
+      this.bankAccount = bankAccount;
+      this.createdNanos = createdNanos;
+    }
+  }
+}
@@ -1,14 +1,22 @@
 package com.example.account.manager.project.services;
 
 import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.requests.BatchTransferMode;
+import com.example.account.manager.project.requests.OwnerAccounts;
+import com.example.account.manager.project.requests.TransferRequest;
+import com.example.account.manager.project.responses.BatchTransferResponse;
+import com.example.account.manager.project.responses.TransferReceipt;
 import java.math.BigDecimal;
+import java.util.List;
 
 public interface BankAccountService {
   BankAccount createBankAccount(Long ownerID);
+  List<BankAccount> createBankAccounts(List<OwnerAccounts> owners);
   void deleteBankAccount(Long bankAccountId);
   BankAccount depositMoney(Long bankAccountId, BigDecimal amount);
   BankAccount withdrawMoney(Long bankAccountId, BigDecimal amount);
-  void transferMoney(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount);
+  TransferReceipt transferMoney(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount);
+  BatchTransferResponse transferMoney(List<TransferRequest> transfers, BatchTransferMode mode);
   BankAccount activateBankAccount(Long bankAccountId);
   BankAccount blockBankAccount(Long bankAccountId);
 }
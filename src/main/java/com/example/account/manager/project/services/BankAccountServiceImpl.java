@@ -3,28 +3,82 @@ package com.example.account.manager.project.services;
 import com.example.account.manager.project.entities.BankAccount;
 import com.example.account.manager.project.entities.BankAccountStatus;
 import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import com.example.account.manager.project.exceptions.BankAccountAmountException;
 import com.example.account.manager.project.exceptions.BankAccountIllegalStateException;
 import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.exceptions.BankAccountStatusException;
 import com.example.account.manager.project.exceptions.BankAccountWithdrawOperationException;
 import com.example.account.manager.project.exceptions.UserNotFoundException;
+import com.example.account.manager.project.money.Money;
+import com.example.account.manager.project.oplog.OperationLog;
+import com.example.account.manager.project.oplog.OperationLogType;
 import com.example.account.manager.project.repositories.BankAccountRepository;
 import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.requests.BatchTransferMode;
+import com.example.account.manager.project.requests.OwnerAccounts;
+import com.example.account.manager.project.requests.TransferRequest;
+import com.example.account.manager.project.responses.BatchTransferResponse;
+import com.example.account.manager.project.responses.TransferReceipt;
+import com.example.account.manager.project.responses.TransferResult;
+import com.example.account.manager.project.responses.TransferStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
-import lombok.extern.slf4j.Slf4j;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 @Service
-@Slf4j
+@Profile("!ledger")
 @Transactional
 public class BankAccountServiceImpl implements BankAccountService{
 
+  private static final int LOCK_CHUNK_SIZE = 1000;
+  static final String OPTIMISTIC_LOCKING = "optimistic";
+
   private final UserRepository users;
   private final BankAccountRepository bankAccounts;
+  private final HotAccountService hotAccounts;
+  private final AccountSummaryService summaries;
+  private final ApplicationEventPublisher events;
+  private final OperationLog operationLog;
+  private final boolean optimistic;
+  //ожидание блокировки строк (PESSIMISTIC_WRITE и условные update) отдельно от обычных чтений счетов
+  private final Timer lockWait;
+  private final Timer batchLockWait;
+  private final Timer reads;
 
-  public BankAccountServiceImpl(UserRepository users, BankAccountRepository bankAccounts) {
+  public BankAccountServiceImpl(UserRepository users, BankAccountRepository bankAccounts, HotAccountService hotAccounts,
+      AccountSummaryService summaries, ApplicationEventPublisher events, OperationLog operationLog, @Value("${bank.accounts.locking:pessimistic}") String locking,
+      ObjectProvider<MeterRegistry> meterRegistry) {
     this.users = users;
     this.bankAccounts = bankAccounts;
+    this.hotAccounts = hotAccounts;
+    this.summaries = summaries;
+    this.events = events;
+    this.operationLog = operationLog;
+    this.optimistic = OPTIMISTIC_LOCKING.equals(locking);
+    MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    this.lockWait = lockTimer(registry, "account");
+    this.batchLockWait = lockTimer(registry, "batch");
+    this.reads = Timer.builder("bank.accounts.read").publishPercentiles(0.5, 0.99, 0.999).register(registry);
   }
 
   @Override
@@ -33,84 +87,317 @@ public class BankAccountServiceImpl implements BankAccountService{
     BankAccount bankAccount = new BankAccount(new BigDecimal("0.00"), BankAccountStatus.ACTIVE, user);
     user.getBankAccounts().add(bankAccount);
     bankAccount = bankAccounts.save(bankAccount);
-    log.info("Create bank account: " + bankAccount);
+    summaries.ensureOwner(ownerID);
+    summaries.record(ownerID, BankAccountStatus.ACTIVE, 1, 0);
+    events.publishEvent(BankAccountOperationEvent.created(bankAccount.getId(), ownerID, bankAccount.getBalance()));
     return bankAccount;
   }
 
+  @Override
+  public List<BankAccount> createBankAccounts(List<OwnerAccounts> owners) {
+    Map<Long, User> ownersById = findOwners(owners);
+    List<BankAccount> created = new ArrayList<>();
+    for (OwnerAccounts ownerAccounts : owners) {
+      User user = ownersById.get(ownerAccounts.getOwnerId());
+      for (int i = 0; i < ownerAccounts.getCount(); i++) {
+        created.add(new BankAccount(new BigDecimal("0.00"), BankAccountStatus.ACTIVE, user));
+      }
+      summaries.ensureOwner(user.getId());
+      summaries.record(user.getId(), BankAccountStatus.ACTIVE, ownerAccounts.getCount(), 0);
+    }
+    //идентификаторы выдаются из пула последовательности, вставки уходят в базу пачками при фиксации
+    bankAccounts.saveAll(created);
+    for (BankAccount bankAccount : created) {
+      events.publishEvent(BankAccountOperationEvent.created(bankAccount.getId(), bankAccount.getUser().getId(), bankAccount.getBalance()));
+    }
+    operationLog.recordAfterCommit(OperationLogType.BULK_CREATED, created.size(), ownersById.size(), null);
+    return created;
+  }
+
   @Override
   public void deleteBankAccount(Long bankAccountId) {
-    BankAccount bankAccount = bankAccounts.findById(bankAccountId).orElseThrow(() -> new BankAccountNotFoundException(bankAccountId));
+    BankAccount bankAccount = account(bankAccountId);
+    hotAccounts.lockSlots(bankAccount);
+    summaries.record(bankAccount.getUser().getId(), bankAccount.getStatus(), -1, -bankAccount.getTotalBalanceMinorUnits());
+    hotAccounts.delete(bankAccount);
     bankAccounts.delete(bankAccount);
-    log.info("Delete bank account: " + bankAccount);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.DELETED, bankAccountId, null, null));
   }
 
   @Override
   public BankAccount depositMoney(Long bankAccountId, BigDecimal amount) {
-    BankAccount bankAccount = bankAccounts.findById(bankAccountId).orElseThrow(() -> new BankAccountNotFoundException(bankAccountId));
+    long minorAmount = Money.toMinorUnits(amount);
+    BankAccount bankAccount = creditedAccount(bankAccountId);
     checkAccountStatus(bankAccount);
-    bankAccount.setBalance(bankAccount.getBalance().add(amount));
-    log.info("Deposit money to bank account with id:" + bankAccountId + "; amount:" + amount);
+    credit(bankAccount, minorAmount);
+    summaries.record(bankAccount.getUser().getId(), BankAccountStatus.ACTIVE, 0, minorAmount);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.DEPOSIT, bankAccountId, amount, bankAccount.getTotalBalance()));
     return bankAccount;
   }
 
   @Override
   public BankAccount withdrawMoney(Long bankAccountId, BigDecimal amount) {
-    BankAccount bankAccount = bankAccounts.findById(bankAccountId).orElseThrow(() -> new BankAccountNotFoundException(bankAccountId));
+    long minorAmount = Money.toMinorUnits(amount);
+    //статус и остаток проверяются в самом update; если строка не изменилась, причина выясняется обычным путём
+    if (!hotAccounts.isHot(bankAccountId) && update(bankAccountId, () -> bankAccounts.debitIfActive(bankAccountId, minorAmount)) == 1) {
+      BankAccount bankAccount = read(bankAccountId);
+      summaries.record(bankAccount.getUser().getId(), BankAccountStatus.ACTIVE, 0, -minorAmount);
+      events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.WITHDRAWAL, bankAccountId, amount, bankAccount.getTotalBalance()));
+      return bankAccount;
+    }
+    BankAccount bankAccount = account(bankAccountId);
     checkAccountStatus(bankAccount);
     //Счёт не может быть отрицательным
-    if (bankAccount.getBalance().compareTo(amount) < 0) {
-      log.info("Could not withdraw money from bank account with id:" + bankAccountId + "; amount:" + amount);
+    if (bankAccount.getTotalBalanceMinorUnits() < minorAmount) {
+      operationLog.record(OperationLogType.WITHDRAWAL_REJECTED, bankAccountId, amount);
       throw new BankAccountWithdrawOperationException(bankAccountId, amount);
     }
-    bankAccount.setBalance(bankAccount.getBalance().subtract(amount));
-    log.info("Withdraw money from bank account with id:" + bankAccountId + "; amount:" + amount);
+    debit(bankAccount, minorAmount);
+    summaries.record(bankAccount.getUser().getId(), BankAccountStatus.ACTIVE, 0, -minorAmount);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.WITHDRAWAL, bankAccountId, amount, bankAccount.getTotalBalance()));
     return bankAccount;
   }
 
   @Transactional(timeout = 10)
   @Override
-  public void transferMoney(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount) {
+  public TransferReceipt transferMoney(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount) {
+    long minorAmount = Money.toMinorUnits(amount);
     //упорядочивание счетов по идентификатору для предотвращения взаимной блокировки
     BankAccount bankAccountFrom;
     BankAccount bankAccountTo;
-    if(bankAccountIdTo.compareTo(bankAccountIdFrom) > 0) {
-      bankAccountFrom = bankAccounts.findById(bankAccountIdFrom).orElseThrow(() -> new BankAccountNotFoundException(bankAccountIdFrom));
-      bankAccountTo = bankAccounts.findById(bankAccountIdTo).orElseThrow(() -> new BankAccountNotFoundException(bankAccountIdTo));
+    if (hotAccounts.isHot(bankAccountIdTo)) {
+      //строка горячего счёта получателя не блокируется, зачисление попадёт в одну из его частей
+      bankAccountFrom = account(bankAccountIdFrom);
+      bankAccountTo = creditedAccount(bankAccountIdTo);
+    } else if(bankAccountIdTo.compareTo(bankAccountIdFrom) > 0) {
+      bankAccountFrom = account(bankAccountIdFrom);
+      bankAccountTo = account(bankAccountIdTo);
     } else {
-      bankAccountTo = bankAccounts.findById(bankAccountIdTo).orElseThrow(() -> new BankAccountNotFoundException(bankAccountIdTo));
-      bankAccountFrom = bankAccounts.findById(bankAccountIdFrom).orElseThrow(() -> new BankAccountNotFoundException(bankAccountIdFrom));
+      bankAccountTo = account(bankAccountIdTo);
+      bankAccountFrom = account(bankAccountIdFrom);
     }
-    checkAccountStatus(bankAccountFrom);
-    checkAccountStatus(bankAccountTo);
-    //Счёт не может быть отрицательным
-    if (bankAccountFrom.getBalance().compareTo(amount) < 0) {
-      log.info("Could not transfer money from bank account with id:" + bankAccountIdFrom + "; amount:" + amount);
-      throw new BankAccountWithdrawOperationException(bankAccountIdFrom, amount);
+    return transfer(bankAccountFrom, bankAccountTo, amount, minorAmount);
+  }
+
+  @Transactional(timeout = 60)
+  @Override
+  public BatchTransferResponse transferMoney(List<TransferRequest> transfers, BatchTransferMode mode) {
+    Map<Long, BankAccount> lockedAccounts = lockInIdOrder(transfers);
+    List<TransferResult> results = new ArrayList<>(transfers.size());
+    boolean aborted = false;
+    for (TransferRequest request : transfers) {
+      Long bankAccountIdFrom = request.getBankAccountIdFrom();
+      Long bankAccountIdTo = request.getBankAccountIdTo();
+      long minorAmount;
+      BigDecimal amount;
+      try {
+        minorAmount = Money.parseMinorUnits(request.getAmount());
+        amount = Money.toDecimal(minorAmount);
+      } catch (BankAccountAmountException e) {
+        results.add(aborted ? TransferResult.aborted(bankAccountIdFrom, bankAccountIdTo, null)
+            : TransferResult.failed(bankAccountIdFrom, bankAccountIdTo, null, e.getMessage()));
+        aborted = aborted || mode == BatchTransferMode.ALL_OR_NOTHING;
+        continue;
+      }
+      if (aborted) {
+        results.add(TransferResult.aborted(bankAccountIdFrom, bankAccountIdTo, amount));
+        continue;
+      }
+      try {
+        BankAccount bankAccountFrom = lockedAccount(lockedAccounts, bankAccountIdFrom);
+        BankAccount bankAccountTo = lockedAccount(lockedAccounts, bankAccountIdTo);
+        results.add(TransferResult.applied(transfer(bankAccountFrom, bankAccountTo, amount, minorAmount)));
+      } catch (BankAccountAmountException | BankAccountNotFoundException | BankAccountIllegalStateException | BankAccountWithdrawOperationException e) {
+        results.add(TransferResult.failed(bankAccountIdFrom, bankAccountIdTo, amount, e.getMessage()));
+        aborted = mode == BatchTransferMode.ALL_OR_NOTHING;
+      }
+    }
+    if (aborted) {
+      //изменения уже применённых переводов откатываются вместе с транзакцией
+      TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+      results.replaceAll(result -> result.getStatus() == TransferStatus.APPLIED
+          ? TransferResult.aborted(result.getBankAccountIdFrom(), result.getBankAccountIdTo(), result.getAmount())
+          : result);
     }
-    bankAccountFrom.setBalance(bankAccountFrom.getBalance().subtract(amount));
-    bankAccountTo.setBalance(bankAccountTo.getBalance().add(amount));
-    log.info("Money was transferred from bank account id:" + bankAccountIdFrom + " to bank account id:" + bankAccountIdTo + " amount:" + amount);
+    if (aborted) {
+      operationLog.record(OperationLogType.BATCH_ROLLED_BACK, transfers.size(), mode);
+    } else {
+      operationLog.recordAfterCommit(OperationLogType.BATCH_COMMITTED, transfers.size(), 0, mode);
+    }
+    return new BatchTransferResponse(mode, !aborted, results);
   }
 
   @Override
   public BankAccount activateBankAccount(Long bankAccountId) {
-    BankAccount bankAccount = bankAccounts.findById(bankAccountId).orElseThrow(() -> new BankAccountNotFoundException(bankAccountId));
-    bankAccount.setStatus(BankAccountStatus.ACTIVE);
-    log.info("Bank account was activated");
+    BankAccount bankAccount = changeStatus(bankAccountId, BankAccountStatus.BLOCKED, BankAccountStatus.ACTIVE);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.ACTIVATED, bankAccountId, null, bankAccount.getTotalBalance()));
     return bankAccount;
   }
 
   @Override
   public BankAccount blockBankAccount(Long bankAccountId) {
+    BankAccount bankAccount = changeStatus(bankAccountId, BankAccountStatus.ACTIVE, BankAccountStatus.BLOCKED);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.BLOCKED, bankAccountId, null, bankAccount.getTotalBalance()));
+    return bankAccount;
+  }
+
+  private TransferReceipt transfer(BankAccount bankAccountFrom, BankAccount bankAccountTo, BigDecimal amount, long minorAmount) {
+    checkAccountStatus(bankAccountFrom);
+    checkAccountStatus(bankAccountTo);
+    //Счёт не может быть отрицательным
+    if (bankAccountFrom.getTotalBalanceMinorUnits() < minorAmount) {
+      operationLog.record(OperationLogType.TRANSFER_REJECTED, bankAccountFrom.getId(), bankAccountTo.getId(), amount);
+      throw new BankAccountWithdrawOperationException(bankAccountFrom.getId(), amount);
+    }
+    debit(bankAccountFrom, minorAmount);
+    credit(bankAccountTo, minorAmount);
+    summaries.record(bankAccountFrom.getUser().getId(), BankAccountStatus.ACTIVE, 0, -minorAmount);
+    summaries.record(bankAccountTo.getUser().getId(), BankAccountStatus.ACTIVE, 0, minorAmount);
+    events.publishEvent(BankAccountOperationEvent.transfer(bankAccountFrom.getId(), bankAccountTo.getId(), amount,
+        bankAccountFrom.getTotalBalance(), bankAccountTo.getTotalBalance()));
+    return new TransferReceipt(bankAccountFrom.getId(), bankAccountTo.getId(), amount, bankAccountFrom.getTotalBalance(),
+        bankAccountTo.getTotalBalance());
+  }
+
+  private Map<Long, User> findOwners(List<OwnerAccounts> owners) {
+    Set<Long> ownerIds = new HashSet<>();
+    owners.forEach(ownerAccounts -> ownerIds.add(ownerAccounts.getOwnerId()));
+    Map<Long, User> ownersById = new HashMap<>(ownerIds.size() * 2);
+    users.findAllById(ownerIds).forEach(user -> ownersById.put(user.getId(), user));
+    for (Long ownerId : ownerIds) {
+      if (!ownersById.containsKey(ownerId)) {
+        throw new UserNotFoundException(ownerId);
+      }
+    }
+    return ownersById;
+  }
+
+  //все счета пакета блокируются один раз, порциями в порядке возрастания идентификаторов
+  private Map<Long, BankAccount> lockInIdOrder(List<TransferRequest> transfers) {
+    SortedSet<Long> ids = new TreeSet<>();
+    for (TransferRequest transfer : transfers) {
+      if (transfer.getBankAccountIdFrom() != null) {
+        ids.add(transfer.getBankAccountIdFrom());
+      }
+      if (transfer.getBankAccountIdTo() != null) {
+        ids.add(transfer.getBankAccountIdTo());
+      }
+    }
+    Map<Long, BankAccount> lockedAccounts = new HashMap<>(ids.size() * 2);
+    List<Long> chunk = new ArrayList<>(LOCK_CHUNK_SIZE);
+    for (Long id : ids) {
+      chunk.add(id);
+      if (chunk.size() == LOCK_CHUNK_SIZE) {
+        accounts(chunk).forEach(account -> lockedAccounts.put(account.getId(), account));
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      accounts(chunk).forEach(account -> lockedAccounts.put(account.getId(), account));
+    }
+    return lockedAccounts;
+  }
+
+  //в режиме optimistic счёт читается без блокировки, параллельное изменение обнаружится по версии при фиксации
+  private BankAccount account(Long bankAccountId) {
+    if (optimistic) {
+      return read(bankAccountId);
+    }
+    long started = System.nanoTime();
     BankAccount bankAccount = bankAccounts.findById(bankAccountId).orElseThrow(() -> new BankAccountNotFoundException(bankAccountId));
-    bankAccount.setStatus(BankAccountStatus.BLOCKED);
-    log.info("Bank account was blocked");
+    long waited = System.nanoTime() - started;
+    lockWait.record(waited, TimeUnit.NANOSECONDS);
+    hotAccounts.lockAcquired(bankAccountId, waited);
+    return bankAccount;
+  }
+
+  //для зачисления на горячий счёт его строка не блокируется
+  private BankAccount creditedAccount(Long bankAccountId) {
+    if (hotAccounts.isHot(bankAccountId)) {
+      return read(bankAccountId);
+    }
+    return account(bankAccountId);
+  }
+
+  private BankAccount read(Long bankAccountId) {
+    long started = System.nanoTime();
+    BankAccount bankAccount = bankAccounts.readById(bankAccountId).orElseThrow(() -> new BankAccountNotFoundException(bankAccountId));
+    reads.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    return bankAccount;
+  }
+
+  private BankAccount changeStatus(Long bankAccountId, BankAccountStatus expected, BankAccountStatus status) {
+    int updated = update(bankAccountId, () -> bankAccounts.updateStatus(bankAccountId, expected, status));
+    BankAccount bankAccount = read(bankAccountId);
+    if (updated == 0) {
+      throw new BankAccountStatusException(bankAccount.getStatus(), status);
+    }
+    hotAccounts.lockSlots(bankAccount);
+    //счёт вместе с остатком переходит в итог нового статуса
+    long balance = bankAccount.getTotalBalanceMinorUnits();
+    summaries.record(bankAccount.getUser().getId(), expected, -1, -balance);
+    summaries.record(bankAccount.getUser().getId(), status, 1, balance);
+    return bankAccount;
+  }
+
+  //условный update ждёт блокировку строки так же, как select ... for update
+  private int update(Long bankAccountId, IntSupplier statement) {
+    long started = System.nanoTime();
+    int updated = statement.getAsInt();
+    long waited = System.nanoTime() - started;
+    lockWait.record(waited, TimeUnit.NANOSECONDS);
+    hotAccounts.lockAcquired(bankAccountId, waited);
+    return updated;
+  }
+
+  private void credit(BankAccount bankAccount, long amount) {
+    if (!bankAccount.isHot()) {
+      bankAccount.setBalanceMinorUnits(Money.add(bankAccount.getBalanceMinorUnits(), amount));
+    } else if (!hotAccounts.credit(bankAccount, amount)) {
+      operationLog.record(OperationLogType.REJECTED_BLOCKED, bankAccount.getId());
+      throw new BankAccountIllegalStateException(bankAccount.getId());
+    }
+  }
+
+  private void debit(BankAccount bankAccount, long amount) {
+    if (bankAccount.isHot()) {
+      hotAccounts.debit(bankAccount, amount);
+    } else {
+      bankAccount.setBalanceMinorUnits(Money.subtract(bankAccount.getBalanceMinorUnits(), amount));
+    }
+  }
+
+  private List<BankAccount> accounts(List<Long> bankAccountIds) {
+    long started = System.nanoTime();
+    if (optimistic) {
+      List<BankAccount> read = bankAccounts.findAllByIdIn(bankAccountIds);
+      reads.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      return read;
+    }
+    List<BankAccount> locked = bankAccounts.findAllForUpdateByIdIn(bankAccountIds);
+    batchLockWait.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    return locked;
+  }
+
+  private static Timer lockTimer(MeterRegistry registry, String scope) {
+    return Timer.builder("bank.accounts.lock.wait")
+        .tag("scope", scope)
+        .publishPercentiles(0.5, 0.99, 0.999)
+        .publishPercentileHistogram()
+        .register(registry);
+  }
+
+  private BankAccount lockedAccount(Map<Long, BankAccount> lockedAccounts, Long bankAccountId) {
+    BankAccount bankAccount = lockedAccounts.get(bankAccountId);
+    if (bankAccount == null) {
+      throw new BankAccountNotFoundException(bankAccountId);
+    }
     return bankAccount;
   }
 
   private void checkAccountStatus(BankAccount bankAccount) {
     if (bankAccount.getStatus().equals(BankAccountStatus.BLOCKED)) {
-      log.info("Bank account with id:" + bankAccount.getId() +" blocked");
+      operationLog.record(OperationLogType.REJECTED_BLOCKED, bankAccount.getId());
       throw new BankAccountIllegalStateException(bankAccount.getId());
     }
   }
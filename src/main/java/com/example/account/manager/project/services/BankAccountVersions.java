@@ -0,0 +1,66 @@
+package com.example.account.manager.project.services;
+
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Версии для ETag: общий счётчик изменений и номер последнего изменения каждого счёта. Счётчик
+ * увеличивается после фиксации любой операции, поэтому проверка If-None-Match не обращается к базе.
+ * В ETag входит время запуска: после перезапуска версии начинаются заново и старые ETag не совпадут.
+ * Версии видят только операции этого экземпляра приложения.
+ * Версии хранятся только для существующих счетов: счёт попадает в таблицу при создании, изменении или чтении
+ * из базы и удаляется из неё вместе со счётом. Для счёта вне таблицы ETag неизвестен, пока его наличие не
+ * проверено в базе, иначе If-None-Match с версией 0 получил бы 304 для несуществующего счёта.
+ */
+@Service
+public class BankAccountVersions {
+
+  private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+  private final AtomicLong changes = new AtomicLong();
+  private final AtomicLong deletions = new AtomicLong();
+  //счета, которые не менялись с запуска, имеют версию 0
+  private final Map<Long, Long> accounts = new ConcurrentHashMap<>();
+
+  //для списков счетов и страниц: меняется при любой операции с любым счётом
+  public String listETag() {
+    return epoch + "-" + changes.get();
+  }
+
+  //null, если наличие счёта нужно проверить в базе
+  public String accountETag(Long bankAccountId) {
+    Long version = accounts.get(bankAccountId);
+    return version == null ? null : epoch + "-" + version;
+  }
+
+  //берётся до чтения счёта из базы и передаётся в existingAccountETag
+  public long stamp() {
+    return deletions.get();
+  }
+
+  //счёт прочитан из базы; если после stamp удалялись счета, он не запоминается, но ETag всё равно возвращается
+  public String existingAccountETag(Long bankAccountId, long stamp) {
+    Long version = accounts.compute(bankAccountId,
+        (id, current) -> current != null || deletions.get() != stamp ? current : 0L);
+    return epoch + "-" + (version == null ? 0L : version);
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onOperation(BankAccountOperationEvent event) {
+    long version = changes.incrementAndGet();
+    if (event.getOperation() == BankAccountOperation.DELETED) {
+      //счётчик увеличивается до удаления, чтобы параллельное чтение не вернуло счёт в таблицу
+      deletions.incrementAndGet();
+      accounts.remove(event.getBankAccountId());
+      return;
+    }
+    accounts.merge(event.getBankAccountId(), version, Math::max);
+    if (event.getCounterpartyId() != null) {
+      accounts.merge(event.getCounterpartyId(), version, Math::max);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package com.example.account.manager.project.services;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountSlot;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.example.account.manager.project.repositories.BankAccountSlotRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Горячие счета: остаток делится на строку счёта и несколько частей (BankAccountSlot).
+ * Зачисление попадает в случайную часть и блокирует только её, списание блокирует строку счёта
+ * и забирает деньги сначала из строки, потом из частей. Счёт становится горячим автоматически,
+ * если блокировку его строки слишком часто приходится ждать.
+ */
+@Service
+@Profile("!ledger")
+@Slf4j
+public class HotAccountService {
+
+  private final BankAccountRepository bankAccounts;
+  private final BankAccountSlotRepository slots;
+  private final TransactionTemplate promotionTransaction;
+  private final int slotCount;
+  private final long lockWaitThresholdNanos;
+  private final int promoteAfter;
+  private final long windowNanos;
+
+  //идентификатор горячего счёта -> число частей
+  private final Map<Long, Integer> hotAccounts = new ConcurrentHashMap<>();
+  private final Map<Long, Contention> contention = new ConcurrentHashMap<>();
+
+  public HotAccountService(BankAccountRepository bankAccounts, BankAccountSlotRepository slots,
+      PlatformTransactionManager transactionManager,
+      @Value("${bank.accounts.hot.slots:8}") int slotCount,
+      @Value("${bank.accounts.hot.lock-wait-millis:20}") long lockWaitMillis,
+      @Value("${bank.accounts.hot.promote-after:10}") int promoteAfter,
+      @Value("${bank.accounts.hot.window-seconds:60}") long windowSeconds) {
+    this.bankAccounts = bankAccounts;
+    this.slots = slots;
+    this.promotionTransaction = new TransactionTemplate(transactionManager);
+    this.promotionTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.slotCount = slotCount;
+    this.lockWaitThresholdNanos = TimeUnit.MILLISECONDS.toNanos(lockWaitMillis);
+    this.promoteAfter = promoteAfter;
+    this.windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+  }
+
+  @PostConstruct
+  public void loadHotAccounts() {
+    for (Object[] row : slots.countByBankAccount()) {
+      hotAccounts.put((Long) row[0], ((Long) row[1]).intValue());
+    }
+  }
+
+  public boolean isHot(Long bankAccountId) {
+    return hotAccounts.containsKey(bankAccountId);
+  }
+
+  /**
+   * Учитывает время ожидания блокировки строки счёта. Когда за окно набирается promote-after долгих ожиданий,
+   * счёт переводится в горячий режим после завершения текущей транзакции.
+   */
+  public void lockAcquired(Long bankAccountId, long waitedNanos) {
+    if (waitedNanos < lockWaitThresholdNanos || promoteAfter <= 0 || hotAccounts.containsKey(bankAccountId)) {
+      return;
+    }
+    Contention accountContention = contention.computeIfAbsent(bankAccountId, id -> new Contention());
+    if (!accountContention.record(System.nanoTime(), windowNanos, promoteAfter)) {
+      return;
+    }
+    //в транзакции, которая ждала блокировку, строку счёта менять нельзя: она и так заблокирована ей же
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCompletion(int status) {
+          promote(bankAccountId);
+        }
+      });
+    } else {
+      promote(bankAccountId);
+    }
+  }
+
+  public void promote(Long bankAccountId) {
+    Integer promotedSlots = promotionTransaction.execute(status -> {
+      BankAccount bankAccount = bankAccounts.findById(bankAccountId).orElse(null);
+      if (bankAccount == null || bankAccount.isHot()) {
+        return null;
+      }
+      bankAccount.setHot(true);
+      for (int slot = 0; slot < slotCount; slot++) {
+        slots.save(new BankAccountSlot(bankAccountId, slot, 0));
+      }
+      return slotCount;
+    });
+    contention.remove(bankAccountId);
+    if (promotedSlots != null) {
+      hotAccounts.put(bankAccountId, promotedSlots);
+      log.info("Bank account with id:" + bankAccountId + " became hot; slots:" + promotedSlots);
+    }
+  }
+
+  /**
+   * Зачисление в случайную часть, строка счёта при этом не блокируется. Смена статуса и удаление сначала блокируют
+   * все части (см. lockSlots), поэтому статус, прочитанный после блокировки части, уже не изменится до фиксации.
+   * Возвращает false, если счёт успели заблокировать: зачисление в часть откатится вместе с транзакцией.
+   */
+  public boolean credit(BankAccount bankAccount, long amount) {
+    Long bankAccountId = bankAccount.getId();
+    int slot = ThreadLocalRandom.current().nextInt(hotAccounts.getOrDefault(bankAccountId, 1));
+    if (slots.credit(bankAccountId, slot, amount) == 0) {
+      //части удалены вместе со счётом, пока он читался без блокировки
+      throw new BankAccountNotFoundException(bankAccountId);
+    }
+    BankAccountStatus status = bankAccounts.findStatusById(bankAccountId).orElseThrow(() -> new BankAccountNotFoundException(bankAccountId));
+    if (status != BankAccountStatus.ACTIVE) {
+      return false;
+    }
+    bankAccount.setSlotBalanceMinorUnits(slots.sumBalance(bankAccountId));
+    return true;
+  }
+
+  /**
+   * Списание с горячего счёта, строка которого уже заблокирована (или защищена версией в режиме optimistic).
+   * Пока строка заблокирована, части могут только расти, поэтому условное списание из части не промахивается.
+   */
+  public void debit(BankAccount bankAccount, long amount) {
+    Long bankAccountId = bankAccount.getId();
+    long fromRow = Math.max(Math.min(bankAccount.getBalanceMinorUnits(), amount), 0);
+    bankAccount.setBalanceMinorUnits(bankAccount.getBalanceMinorUnits() - fromRow);
+    long remaining = amount - fromRow;
+    if (remaining > 0) {
+      List<Object[]> slotBalances = slots.findSlotBalances(bankAccountId);
+      int start = ThreadLocalRandom.current().nextInt(Math.max(slotBalances.size(), 1));
+      for (int i = 0; i < slotBalances.size() && remaining > 0; i++) {
+        Object[] slotBalance = slotBalances.get((start + i) % slotBalances.size());
+        long taken = Math.min((Long) slotBalance[1], remaining);
+        if (taken > 0 && slots.debit(bankAccountId, (Integer) slotBalance[0], taken) == 1) {
+          remaining -= taken;
+        }
+      }
+      if (remaining > 0) {
+        //части успел списать параллельный вызов без блокировки строки (только в режиме optimistic)
+        throw new ObjectOptimisticLockingFailureException(BankAccount.class, bankAccountId);
+      }
+    }
+    bankAccount.setSlotBalanceMinorUnits(slots.sumBalance(bankAccountId));
+  }
+
+  /**
+   * Блокирует части горячего счёта, строка которого уже заблокирована сменой статуса или удалением, и перечитывает их остаток.
+   * Начатые зачисления в части успевают зафиксироваться раньше, следующие увидят новый статус или удалённые части.
+   */
+  public void lockSlots(BankAccount bankAccount) {
+    if (bankAccount.isHot()) {
+      slots.findAllForUpdateByBankAccountId(bankAccount.getId());
+      bankAccount.setSlotBalanceMinorUnits(slots.sumBalance(bankAccount.getId()));
+    }
+  }
+
+  public void delete(BankAccount bankAccount) {
+    if (bankAccount.isHot()) {
+      slots.deleteByBankAccountId(bankAccount.getId());
+    }
+    hotAccounts.remove(bankAccount.getId());
+    contention.remove(bankAccount.getId());
+  }
+
+  private static final class Contention {
+
+    private long windowStart;
+    private int waits;
+
+    //true ровно один раз: когда число долгих ожиданий в окне достигло порога
+    synchronized boolean record(long now, long windowNanos, int threshold) {
+      if (waits == 0 || now - windowStart > windowNanos) {
+        windowStart = now;
+        waits = 0;
+      }
+      return ++waits == threshold;
+    }
+  }
+}
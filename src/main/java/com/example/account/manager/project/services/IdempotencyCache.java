@@ -0,0 +1,71 @@
+package com.example.account.manager.project.services;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченный кэш результатов по ключу идемпотентности. Запись живёт ttl; при превышении ёмкости
+ * вытесняются самые старые ключи. Вытесненный результат остаётся в таблице idempotency_record.
+ */
+class IdempotencyCache<V> {
+
+  private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+  //порядок добавления для вытеснения; ключ может остаться здесь уже после удаления из entries
+  private final Queue<String> order = new ConcurrentLinkedQueue<>();
+  private final int capacity;
+  private final long ttlNanos;
+
+  IdempotencyCache(int capacity, long ttl, TimeUnit unit) {
+    this.capacity = Math.max(capacity, 1);
+    this.ttlNanos = unit.toNanos(ttl);
+  }
+
+  V get(String key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (System.nanoTime() - entry.createdNanos > ttlNanos) {
+      entries.remove(key, entry);
+      return null;
+    }
+    return entry.value;
+  }
+
+  void put(String key, V value) {
+    if (entries.put(key, new Entry<>(value, System.nanoTime())) == null) {
+      order.add(key);
+    }
+    while (entries.size() > capacity) {
+      String oldest = order.poll();
+      if (oldest == null) {
+        break;
+      }
+      entries.remove(oldest);
+    }
+  }
+
+  void removeExpired() {
+    long now = System.nanoTime();
+    entries.values().removeIf(entry -> now - entry.createdNanos > ttlNanos);
+    order.removeIf(key -> !entries.containsKey(key));
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private static final class Entry<V> {
+
+    final V value;
+    final long createdNanos;
+
+    Entry(V value, long createdNanos) {
+      this.value = value;
+      this.createdNanos = createdNanos;
+    }
+  }
+}
@@ -0,0 +1,239 @@
+package com.example.account.manager.project.services;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.IdempotencyRecord;
+import com.example.account.manager.project.exceptions.IdempotencyKeyException;
+import com.example.account.manager.project.exceptions.IdempotencyKeyInUseException;
+import com.example.account.manager.project.exceptions.IdempotencyKeyReusedException;
+import com.example.account.manager.project.money.Money;
+import com.example.account.manager.project.repositories.IdempotencyRecordRepository;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.responses.TransferReceipt;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Пополнение, снятие и перевод с заголовком Idempotency-Key. Перед операцией ключ занимается вставкой
+ * в таблицу idempotency_record, результат пишется туда же в транзакции самой операции, так что деньги
+ * и отметка о выполнении фиксируются вместе. Повтор запроса возвращает сохранённый результат из кэша
+ * в памяти или из таблицы и не блокирует строки счетов. При ошибке операции ключ освобождается,
+ * и запрос можно повторить. Если занявший ключ запрос не завершился за idempotency.lease-seconds
+ * (например, процесс остановился посреди операции), ключ переходит к повтору; прежний запрос уже не сможет
+ * записать результат, и его операция откатится. Аренда должна быть длиннее тайм-аута операции (10 секунд).
+ * В режиме optimistic операция с ключом не повторяется при конфликте версий:
+ * она выполняется во внешней транзакции, и клиент получает 409 с освобождённым ключом.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+  private static final int OPERATION_TIMEOUT_SECONDS = 10;
+
+  private final BankAccountService service;
+  private final IdempotencyRecordRepository records;
+  private final UserRepository users;
+  private final TransactionTemplate transaction;
+  private final TransactionTemplate operationTransaction;
+  private final IdempotencyCache<Replay> cache;
+  private final long ttlMillis;
+  private final long leaseMillis;
+  private final Counter cacheReplays;
+  private final Counter databaseReplays;
+
+  public IdempotencyService(BankAccountService service, IdempotencyRecordRepository records, UserRepository users,
+      PlatformTransactionManager transactionManager, ObjectProvider<MeterRegistry> meterRegistry,
+      @Value("${idempotency.cache.capacity:100000}") int cacheCapacity,
+      @Value("${idempotency.ttl-seconds:86400}") long ttlSeconds,
+      @Value("${idempotency.lease-seconds:60}") long leaseSeconds) {
+    this.service = service;
+    this.records = records;
+    this.users = users;
+    //запись ключа фиксируется отдельно от операции, чтобы параллельный повтор сразу её увидел
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    //тот же тайм-аут, что у переводов без ключа
+    this.operationTransaction = new TransactionTemplate(transactionManager);
+    this.operationTransaction.setTimeout(OPERATION_TIMEOUT_SECONDS);
+    this.cache = new IdempotencyCache<>(cacheCapacity, ttlSeconds, TimeUnit.SECONDS);
+    this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    this.leaseMillis = TimeUnit.SECONDS.toMillis(leaseSeconds);
+    MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+    this.cacheReplays = Counter.builder("bank.accounts.idempotency.replays").tag("source", "cache").register(registry);
+    this.databaseReplays = Counter.builder("bank.accounts.idempotency.replays").tag("source", "database").register(registry);
+  }
+
+  public BankAccount depositMoney(String idempotencyKey, Long bankAccountId, BigDecimal amount) {
+    return execute(idempotencyKey, "deposit:" + bankAccountId + ":" + Money.toMinorUnits(amount), BankAccount.class,
+        () -> service.depositMoney(bankAccountId, amount), this::storeAccount, this::replayAccount);
+  }
+
+  public BankAccount withdrawMoney(String idempotencyKey, Long bankAccountId, BigDecimal amount) {
+    return execute(idempotencyKey, "withdraw:" + bankAccountId + ":" + Money.toMinorUnits(amount), BankAccount.class,
+        () -> service.withdrawMoney(bankAccountId, amount), this::storeAccount, this::replayAccount);
+  }
+
+  public TransferReceipt transferMoney(String idempotencyKey, Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount) {
+    return execute(idempotencyKey, "transfer:" + bankAccountIdFrom + ":" + bankAccountIdTo + ":" + Money.toMinorUnits(amount),
+        TransferReceipt.class, () -> service.transferMoney(bankAccountIdFrom, bankAccountIdTo, amount), this::storeReceipt,
+        this::replayReceipt);
+  }
+
+  @Scheduled(fixedDelayString = "${idempotency.purge-interval-millis:60000}")
+  public void purgeExpired() {
+    cache.removeExpired();
+    Integer purged = transaction.execute(status -> records.deleteCreatedBefore(System.currentTimeMillis() - ttlMillis));
+    if (purged != null && purged > 0) {
+      log.info("Purged " + purged + " expired idempotency keys");
+    }
+  }
+
+  private <T> T execute(String idempotencyKey, String fingerprint, Class<T> type, Supplier<T> operation,
+      BiConsumer<IdempotencyRecord, T> store, Function<IdempotencyRecord, T> replay) {
+    if (idempotencyKey.isEmpty() || idempotencyKey.length() > IdempotencyRecord.MAX_KEY_LENGTH) {
+      throw new IdempotencyKeyException("Idempotency-Key must be 1 to " + IdempotencyRecord.MAX_KEY_LENGTH + " characters long");
+    }
+    Replay cached = cache.get(idempotencyKey);
+    if (cached != null) {
+      checkFingerprint(idempotencyKey, cached.fingerprint, fingerprint);
+      cacheReplays.increment();
+      return type.cast(cached.result);
+    }
+    long claimedAt = System.currentTimeMillis();
+    IdempotencyRecord existing = records.findById(idempotencyKey).orElse(null);
+    if (existing == null && !claim(idempotencyKey, fingerprint, claimedAt)) {
+      existing = records.findById(idempotencyKey).orElse(null);
+      if (existing == null) {
+        //занявший ключ запрос только что завершился ошибкой и освободил его
+        throw new IdempotencyKeyInUseException(idempotencyKey);
+      }
+    }
+    if (existing != null) {
+      checkFingerprint(idempotencyKey, existing.getFingerprint(), fingerprint);
+      if (existing.isCompleted()) {
+        T result = replay.apply(existing);
+        cache.put(idempotencyKey, new Replay(fingerprint, result));
+        databaseReplays.increment();
+        return result;
+      }
+      if (existing.getClaimedAt() > claimedAt - leaseMillis || !reclaim(idempotencyKey, existing.getClaimedAt(), claimedAt)) {
+        throw new IdempotencyKeyInUseException(idempotencyKey);
+      }
+      log.warn("Idempotency-Key:" + idempotencyKey + " was not completed in " + leaseMillis + " ms, claimed again");
+    }
+
+    T result = null;
+    boolean completed = false;
+    try {
+      result = operationTransaction.execute(status -> {
+        T operationResult = operation.get();
+        complete(idempotencyKey, claimedAt, operationResult, store);
+        return operationResult;
+      });
+      completed = true;
+    } finally {
+      //любая ошибка, в том числе Error, освобождает ключ для повтора
+      if (!completed) {
+        release(idempotencyKey, claimedAt);
+      }
+    }
+    cache.put(idempotencyKey, new Replay(fingerprint, result instanceof BankAccount ? snapshot((BankAccount) result) : result));
+    return result;
+  }
+
+  private boolean claim(String idempotencyKey, String fingerprint, long claimedAt) {
+    try {
+      transaction.execute(status -> records.saveAndFlush(new IdempotencyRecord(idempotencyKey, fingerprint, claimedAt)));
+      return true;
+    } catch (DataIntegrityViolationException e) {
+      return false;
+    }
+  }
+
+  private boolean reclaim(String idempotencyKey, long previousClaimedAt, long claimedAt) {
+    Integer reclaimed = transaction.execute(status -> records.reclaim(idempotencyKey, previousClaimedAt, claimedAt));
+    return reclaimed != null && reclaimed == 1;
+  }
+
+  //в транзакции операции: если результат не записать или ключ уже перешёл к повтору, откатится и сама операция
+  private <T> void complete(String idempotencyKey, long claimedAt, T result, BiConsumer<IdempotencyRecord, T> store) {
+    if (records.markCompleted(idempotencyKey, claimedAt) == 0) {
+      throw new IdempotencyKeyInUseException(idempotencyKey);
+    }
+    IdempotencyRecord record = records.findById(idempotencyKey).orElseThrow(() -> new IdempotencyKeyInUseException(idempotencyKey));
+    record.setCompleted(true);
+    store.accept(record, result);
+    records.saveAndFlush(record);
+  }
+
+  private void release(String idempotencyKey, long claimedAt) {
+    try {
+      transaction.execute(status -> records.deleteClaim(idempotencyKey, claimedAt));
+    } catch (DataAccessException e) {
+      log.error("Could not release Idempotency-Key:" + idempotencyKey, e);
+    }
+  }
+
+  private static void checkFingerprint(String idempotencyKey, String stored, String fingerprint) {
+    if (!stored.equals(fingerprint)) {
+      throw new IdempotencyKeyReusedException(idempotencyKey);
+    }
+  }
+
+  private void storeAccount(IdempotencyRecord record, BankAccount bankAccount) {
+    record.setBankAccountId(bankAccount.getId());
+    record.setOwnerId(bankAccount.getUser() == null ? null : bankAccount.getUser().getId());
+    record.setBalance(bankAccount.getTotalBalanceMinorUnits());
+    record.setStatus(bankAccount.getStatus());
+  }
+
+  private BankAccount replayAccount(IdempotencyRecord record) {
+    return new BankAccount(record.getBankAccountId(), record.getBalance(), record.getStatus(),
+        record.getOwnerId() == null ? null : users.findById(record.getOwnerId()).orElse(null));
+  }
+
+  //результат операции - сущность, которую могут изменить дальше; в кэше хранится её копия
+  private static BankAccount snapshot(BankAccount bankAccount) {
+    return new BankAccount(bankAccount.getId(), bankAccount.getTotalBalanceMinorUnits(), bankAccount.getStatus(),
+        bankAccount.getUser());
+  }
+
+  private void storeReceipt(IdempotencyRecord record, TransferReceipt receipt) {
+    record.setBankAccountId(receipt.getBankAccountIdFrom());
+    record.setCounterpartyId(receipt.getBankAccountIdTo());
+    record.setAmount(Money.toMinorUnits(receipt.getAmount()));
+    record.setBalance(Money.toMinorUnits(receipt.getBalanceFrom()));
+    record.setCounterpartyBalance(Money.toMinorUnits(receipt.getBalanceTo()));
+  }
+
+  private TransferReceipt replayReceipt(IdempotencyRecord record) {
+    return new TransferReceipt(record.getBankAccountId(), record.getCounterpartyId(), Money.toDecimal(record.getAmount()),
+        Money.toDecimal(record.getBalance()), Money.toDecimal(record.getCounterpartyBalance()));
+  }
+
+  private static final class Replay {
+
+    final String fingerprint;
+    final Object result;
+
+    Replay(String fingerprint, Object result) {
+      this.fingerprint = fingerprint;
+      this.result = result;
+    }
+  }
+}
@@ -0,0 +1,315 @@
+package com.example.account.manager.project.services;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import com.example.account.manager.project.exceptions.UserNotFoundException;
+import com.example.account.manager.project.journal.AccountState;
+import com.example.account.manager.project.journal.JournalSnapshots;
+import com.example.account.manager.project.journal.JournalState;
+import com.example.account.manager.project.ledger.Ledger;
+import com.example.account.manager.project.ledger.LedgerPersister;
+import com.example.account.manager.project.oplog.OperationLog;
+import com.example.account.manager.project.oplog.OperationLogType;
+import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.example.account.manager.project.repositories.BankAccountSlotRepository;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.requests.BatchTransferMode;
+import com.example.account.manager.project.requests.OwnerAccounts;
+import com.example.account.manager.project.requests.TransferRequest;
+import com.example.account.manager.project.responses.BatchTransferResponse;
+import com.example.account.manager.project.responses.TransferReceipt;
+import com.example.account.manager.project.responses.TransferResult;
+import com.example.account.manager.project.responses.TransferStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Реализация на однопоточных сегментах в памяти, включается профилем ledger.
+ * Создание и удаление счетов идут через базу в транзакции, остатки и статусы меняются в памяти
+ * и сохраняются в базу асинхронно пачками. При ledger.persistence.await-durable=true (по умолчанию)
+ * вызов возвращается только после того, как пачка с его изменениями записана.
+ * При запуске остатки берутся из последнего снимка журнала и записей после него, если они сходятся с базой,
+ * иначе читаются из базы целиком.
+ */
+@Service
+@Profile("ledger")
+@Slf4j
+public class LedgerBankAccountService implements BankAccountService {
+
+  private final UserRepository users;
+  private final BankAccountRepository bankAccounts;
+  private final BankAccountSlotRepository slots;
+  private final TransactionTemplate readOnlyTransaction;
+  private final TransactionTemplate writeTransaction;
+  private final ApplicationEventPublisher events;
+  private final OperationLog operationLog;
+  private final ObjectProvider<JournalSnapshots> snapshots;
+  private final boolean restoreFromSnapshot;
+  private final Ledger ledger;
+
+  public LedgerBankAccountService(UserRepository users, BankAccountRepository bankAccounts, BankAccountSlotRepository slots,
+      JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, ApplicationEventPublisher events,
+      OperationLog operationLog, ObjectProvider<JournalSnapshots> snapshots, ObjectProvider<MeterRegistry> meterRegistry,
+      @Value("${ledger.shards:0}") int shards,
+      @Value("${ledger.queue-capacity:65536}") int queueCapacity,
+      @Value("${ledger.persistence.batch-size:1000}") int persistenceBatchSize,
+      @Value("${ledger.persistence.max-retries:50}") int persistenceMaxRetries,
+      @Value("${ledger.persistence.await-durable:true}") boolean awaitDurable,
+      @Value("${ledger.restore-from-snapshot:true}") boolean restoreFromSnapshot) {
+    this.users = users;
+    this.bankAccounts = bankAccounts;
+    this.slots = slots;
+    this.events = events;
+    this.operationLog = operationLog;
+    this.snapshots = snapshots;
+    this.restoreFromSnapshot = restoreFromSnapshot;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    this.writeTransaction = new TransactionTemplate(transactionManager);
+    this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    LedgerPersister persister = new LedgerPersister(jdbcTemplate, writeTransaction, queueCapacity, persistenceBatchSize,
+        persistenceMaxRetries);
+    int shardCount = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    this.ledger = new Ledger(shardCount, queueCapacity, persister, operationLog, awaitDurable, 10, TimeUnit.SECONDS);
+    Gauge.builder("ledger.persistence.failed", ledger, failed -> failed.isPersistenceFailed() ? 1 : 0)
+        .register(meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+  }
+
+  public boolean isPersistenceFailed() {
+    return ledger.isPersistenceFailed();
+  }
+
+  @PostConstruct
+  public void start() {
+    //реестр хранит остаток одним числом, поэтому части горячих счетов сливаются обратно в строку счёта
+    Integer merged = writeTransaction.execute(status -> {
+      int hot = bankAccounts.mergeHotAccountSlots();
+      slots.deleteAllInBatch();
+      return hot;
+    });
+    if (merged > 0) {
+      log.info("Merged slots of " + merged + " hot bank accounts");
+    }
+    long started = System.nanoTime();
+    String source = "snapshot";
+    Long loaded = restoreFromSnapshot();
+    if (loaded == null) {
+      source = "database";
+      loaded = readOnlyTransaction.execute(status -> {
+        try (Stream<BankAccount> accounts = bankAccounts.streamAll()) {
+          return accounts.peek(ledger::load).count();
+        }
+      });
+    }
+    ledger.start();
+    log.info("Ledger started with " + loaded + " bank accounts from " + source + " in "
+        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+  }
+
+  //null, если снимка нет или он не сходится с базой
+  private Long restoreFromSnapshot() {
+    JournalSnapshots journalSnapshots = snapshots.getIfAvailable();
+    if (!restoreFromSnapshot || journalSnapshots == null) {
+      return null;
+    }
+    try {
+      return journalSnapshots.withState(this::restore);
+    } catch (IOException | RuntimeException e) {
+      log.warn("Could not restore ledger from journal snapshot", e);
+      return null;
+    }
+  }
+
+  private Long restore(JournalState state) {
+    Map<Long, AccountState> accounts = state.getAccounts();
+    //база могла быть создана заново (H2 в памяти) или изменена без журнала: тогда снимок не годится
+    if (accounts.isEmpty()) {
+      return null;
+    }
+    if (accounts.size() != bankAccounts.count() || !accounts.containsKey(bankAccounts.findMaxId())) {
+      log.info("Journal snapshot at record " + state.getSequence() + " does not match database");
+      return null;
+    }
+    Map<Long, User> owners = new HashMap<>();
+    users.findAll().forEach(user -> owners.put(user.getId(), user));
+    List<BankAccount> restored = new ArrayList<>(accounts.size());
+    for (AccountState account : accounts.values()) {
+      User owner = owners.get(account.getOwnerId());
+      if (owner == null || account.getBalance().stripTrailingZeros().scale() > Ledger.SCALE) {
+        log.info("Journal snapshot does not match database for bank account with id:" + account.getBankAccountId());
+        return null;
+      }
+      restored.add(new BankAccount(account.getBankAccountId(), account.getBalance().setScale(Ledger.SCALE),
+          account.getStatus(), owner));
+    }
+    restored.forEach(ledger::load);
+    return (long) restored.size();
+  }
+
+  private Map<Long, User> findOwners(List<OwnerAccounts> owners) {
+    Set<Long> ownerIds = new HashSet<>();
+    owners.forEach(ownerAccounts -> ownerIds.add(ownerAccounts.getOwnerId()));
+    Map<Long, User> ownersById = new HashMap<>(ownerIds.size() * 2);
+    users.findAllById(ownerIds).forEach(user -> ownersById.put(user.getId(), user));
+    for (Long ownerId : ownerIds) {
+      if (!ownersById.containsKey(ownerId)) {
+        throw new UserNotFoundException(ownerId);
+      }
+    }
+    return ownersById;
+  }
+
+  @PreDestroy
+  public void stop() {
+    ledger.stop();
+  }
+
+  @Transactional
+  @Override
+  public BankAccount createBankAccount(Long ownerID) {
+    User user = users.findById(ownerID).orElseThrow(() -> new UserNotFoundException(ownerID));
+    BankAccount bankAccount = new BankAccount(new BigDecimal("0.00"), BankAccountStatus.ACTIVE, user);
+    user.getBankAccounts().add(bankAccount);
+    BankAccount saved = bankAccounts.save(bankAccount);
+    events.publishEvent(BankAccountOperationEvent.created(saved.getId(), ownerID, saved.getBalance()));
+    //счёт попадает в реестр только после фиксации транзакции, в которой он создан
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          ledger.register(saved);
+        }
+      });
+    } else {
+      ledger.register(saved);
+    }
+    return saved;
+  }
+
+  @Transactional
+  @Override
+  public List<BankAccount> createBankAccounts(List<OwnerAccounts> owners) {
+    Map<Long, User> ownersById = findOwners(owners);
+    List<BankAccount> created = new ArrayList<>();
+    for (OwnerAccounts ownerAccounts : owners) {
+      User user = ownersById.get(ownerAccounts.getOwnerId());
+      for (int i = 0; i < ownerAccounts.getCount(); i++) {
+        created.add(new BankAccount(new BigDecimal("0.00"), BankAccountStatus.ACTIVE, user));
+      }
+    }
+    bankAccounts.saveAll(created);
+    for (BankAccount bankAccount : created) {
+      events.publishEvent(BankAccountOperationEvent.created(bankAccount.getId(), bankAccount.getUser().getId(), bankAccount.getBalance()));
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          created.forEach(ledger::register);
+        }
+      });
+    } else {
+      created.forEach(ledger::register);
+    }
+    operationLog.recordAfterCommit(OperationLogType.BULK_CREATED, created.size(), ownersById.size(), null);
+    return created;
+  }
+
+  @Transactional
+  @Override
+  public void deleteBankAccount(Long bankAccountId) {
+    BankAccount bankAccount = ledger.remove(bankAccountId);
+    //если удаление из базы откатится, счёт возвращается в реестр
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCompletion(int status) {
+          if (status == STATUS_ROLLED_BACK) {
+            ledger.register(bankAccount);
+          }
+        }
+      });
+    }
+    bankAccounts.findById(bankAccountId).ifPresent(bankAccounts::delete);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.DELETED, bankAccountId, null, null));
+  }
+
+  @Override
+  public BankAccount depositMoney(Long bankAccountId, BigDecimal amount) {
+    BankAccount bankAccount = ledger.deposit(bankAccountId, amount);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.DEPOSIT, bankAccountId, amount, bankAccount.getBalance()));
+    return bankAccount;
+  }
+
+  @Override
+  public BankAccount withdrawMoney(Long bankAccountId, BigDecimal amount) {
+    BankAccount bankAccount = ledger.withdraw(bankAccountId, amount);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.WITHDRAWAL, bankAccountId, amount, bankAccount.getBalance()));
+    return bankAccount;
+  }
+
+  @Override
+  public TransferReceipt transferMoney(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount) {
+    TransferReceipt receipt = ledger.transfer(bankAccountIdFrom, bankAccountIdTo, amount);
+    events.publishEvent(BankAccountOperationEvent.transfer(bankAccountIdFrom, bankAccountIdTo, amount,
+        receipt.getBalanceFrom(), receipt.getBalanceTo()));
+    return receipt;
+  }
+
+  @Override
+  public BatchTransferResponse transferMoney(List<TransferRequest> transfers, BatchTransferMode mode) {
+    BatchTransferResponse response = ledger.transfer(transfers, mode);
+    for (TransferResult result : response.getResults()) {
+      if (result.getStatus() == TransferStatus.APPLIED) {
+        events.publishEvent(BankAccountOperationEvent.transfer(result.getBankAccountIdFrom(), result.getBankAccountIdTo(),
+            result.getAmount(), result.getBalanceFrom(), result.getBalanceTo()));
+      }
+    }
+    operationLog.record(response.isCommitted() ? OperationLogType.BATCH_COMMITTED : OperationLogType.BATCH_ROLLED_BACK,
+        transfers.size(), mode);
+    return response;
+  }
+
+  @Override
+  public BankAccount activateBankAccount(Long bankAccountId) {
+    BankAccount bankAccount = ledger.activate(bankAccountId);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.ACTIVATED, bankAccountId, null, bankAccount.getBalance()));
+    return bankAccount;
+  }
+
+  @Override
+  public BankAccount blockBankAccount(Long bankAccountId) {
+    BankAccount bankAccount = ledger.block(bankAccountId);
+    events.publishEvent(BankAccountOperationEvent.of(BankAccountOperation.BLOCKED, bankAccountId, null, bankAccount.getBalance()));
+    return bankAccount;
+  }
+}
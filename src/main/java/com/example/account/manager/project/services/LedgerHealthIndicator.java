@@ -0,0 +1,28 @@
+package com.example.account.manager.project.services;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Реестр неисправен, если изменения счетов не удалось сохранить в базу.
+ */
+@Component
+@Profile("ledger")
+public class LedgerHealthIndicator implements HealthIndicator {
+
+  private final LedgerBankAccountService service;
+
+  public LedgerHealthIndicator(LedgerBankAccountService service) {
+    this.service = service;
+  }
+
+  @Override
+  public Health health() {
+    if (service.isPersistenceFailed()) {
+      return Health.down().withDetail("persistence", "failed").build();
+    }
+    return Health.up().build();
+  }
+}
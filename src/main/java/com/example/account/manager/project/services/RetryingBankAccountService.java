@@ -0,0 +1,168 @@
+package com.example.account.manager.project.services;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.requests.BatchTransferMode;
+import com.example.account.manager.project.requests.OwnerAccounts;
+import com.example.account.manager.project.requests.TransferRequest;
+import com.example.account.manager.project.responses.BatchTransferResponse;
+import com.example.account.manager.project.responses.TransferReceipt;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Режим bank.accounts.locking=optimistic: каждая операция BankAccountServiceImpl выполняется в своей транзакции
+ * и при конфликте версий повторяется с экспоненциальной задержкой со случайным разбросом.
+ */
+@Service
+@Primary
+@Profile("!ledger")
+@ConditionalOnProperty(name = "bank.accounts.locking", havingValue = BankAccountServiceImpl.OPTIMISTIC_LOCKING)
+@Slf4j
+public class RetryingBankAccountService implements BankAccountService {
+
+  private static final String[] OPERATIONS = {"create", "bulk-create", "delete", "deposit", "withdraw", "transfer", "batch", "activate", "block"};
+
+  private final BankAccountService delegate;
+  private final int maxAttempts;
+  private final long backoffMillis;
+  private final long maxBackoffMillis;
+  private final Map<String, OperationMetrics> metrics = new HashMap<>();
+
+  @Autowired
+  public RetryingBankAccountService(@Qualifier("bankAccountServiceImpl") BankAccountService delegate,
+      ObjectProvider<MeterRegistry> meterRegistry,
+      @Value("${bank.accounts.optimistic.max-attempts:5}") int maxAttempts,
+      @Value("${bank.accounts.optimistic.backoff-millis:5}") long backoffMillis,
+      @Value("${bank.accounts.optimistic.max-backoff-millis:100}") long maxBackoffMillis) {
+    this(delegate, meterRegistry.getIfAvailable(SimpleMeterRegistry::new), maxAttempts, backoffMillis, maxBackoffMillis);
+  }
+
+  RetryingBankAccountService(BankAccountService delegate, MeterRegistry meterRegistry, int maxAttempts, long backoffMillis,
+      long maxBackoffMillis) {
+    this.delegate = delegate;
+    this.maxAttempts = maxAttempts;
+    this.backoffMillis = backoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    for (String operation : OPERATIONS) {
+      metrics.put(operation, new OperationMetrics(meterRegistry, operation));
+    }
+  }
+
+  @Override
+  public BankAccount createBankAccount(Long ownerID) {
+    return retry("create", () -> delegate.createBankAccount(ownerID));
+  }
+
+  @Override
+  public List<BankAccount> createBankAccounts(List<OwnerAccounts> owners) {
+    return retry("bulk-create", () -> delegate.createBankAccounts(owners));
+  }
+
+  @Override
+  public void deleteBankAccount(Long bankAccountId) {
+    retry("delete", () -> {
+      delegate.deleteBankAccount(bankAccountId);
+      return null;
+    });
+  }
+
+  @Override
+  public BankAccount depositMoney(Long bankAccountId, BigDecimal amount) {
+    return retry("deposit", () -> delegate.depositMoney(bankAccountId, amount));
+  }
+
+  @Override
+  public BankAccount withdrawMoney(Long bankAccountId, BigDecimal amount) {
+    return retry("withdraw", () -> delegate.withdrawMoney(bankAccountId, amount));
+  }
+
+  @Override
+  public TransferReceipt transferMoney(Long bankAccountIdFrom, Long bankAccountIdTo, BigDecimal amount) {
+    return retry("transfer", () -> delegate.transferMoney(bankAccountIdFrom, bankAccountIdTo, amount));
+  }
+
+  @Override
+  public BatchTransferResponse transferMoney(List<TransferRequest> transfers, BatchTransferMode mode) {
+    return retry("batch", () -> delegate.transferMoney(transfers, mode));
+  }
+
+  @Override
+  public BankAccount activateBankAccount(Long bankAccountId) {
+    return retry("activate", () -> delegate.activateBankAccount(bankAccountId));
+  }
+
+  @Override
+  public BankAccount blockBankAccount(Long bankAccountId) {
+    return retry("block", () -> delegate.blockBankAccount(bankAccountId));
+  }
+
+  private <T> T retry(String operation, Supplier<T> call) {
+    OperationMetrics operationMetrics = metrics.get(operation);
+    operationMetrics.calls.increment();
+    //внутри чужой транзакции повтор бесполезен: она уже помечена на откат
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      return call.get();
+    }
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return call.get();
+      } catch (OptimisticLockingFailureException e) {
+        operationMetrics.conflicts.increment();
+        if (attempt >= maxAttempts) {
+          operationMetrics.exhausted.increment();
+          log.info("Optimistic " + operation + " failed after " + attempt + " attempts");
+          throw e;
+        }
+        if (!backoff(attempt)) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  //полный разброс: случайная задержка от 0 до min(max, base * 2^(attempt - 1))
+  private boolean backoff(int attempt) {
+    long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+    if (ceiling <= 0) {
+      return true;
+    }
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static final class OperationMetrics {
+
+    final Counter calls;
+    final Counter conflicts;
+    final Counter exhausted;
+
+    OperationMetrics(MeterRegistry registry, String operation) {
+      calls = Counter.builder("bank.accounts.optimistic.calls").tag("operation", operation).register(registry);
+      conflicts = Counter.builder("bank.accounts.optimistic.conflicts").tag("operation", operation).register(registry);
+      exhausted = Counter.builder("bank.accounts.optimistic.retries.exhausted").tag("operation", operation).register(registry);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.example.account.manager.project.writers;
+
+import com.example.account.manager.project.money.Money;
+import com.example.account.manager.project.repositories.BankAccountRepository;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Выгрузка счетов и выписки по движениям денег в CSV или NDJSON. Строки читаются обычным JDBC-курсором
+ * (только вперёд, по {@link BankAccountRepository#STREAM_FETCH_SIZE} строк за обращение к базе) и сразу
+ * пишутся в ответ без сущностей и контекста персистентности, поэтому память не зависит от объёма выгрузки.
+ * Ответ сбрасывается клиенту после первой строки и затем после каждой порции.
+ */
+@Component
+public class BankAccountExportWriter {
+
+  static final String[] ACCOUNT_COLUMNS = {"id", "userId", "status", "balance"};
+  static final String[] STATEMENT_COLUMNS = {"id", "bankAccountId", "time", "operation", "amount", "balance", "counterpartyId"};
+
+  private static final String ACCOUNTS_QUERY = "select a.id, a.user_id, a.status, a.balance + case when a.hot then "
+      + "(select coalesce(sum(s.balance), 0) from bank_account_slot s where s.bank_account_id = a.id) else 0 end "
+      + "from bank_account a order by a.id";
+  private static final String STATEMENT_QUERY = "select t.id, t.bank_account_id, t.created_at, t.operation, t.amount, t.balance, "
+      + "t.counterparty_id from bank_account_transaction t join bank_account a on a.id = t.bank_account_id "
+      + "where a.user_id = ? and t.created_at >= ? and t.created_at < ? order by t.bank_account_id, t.created_at, t.id";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  public BankAccountExportWriter(DataSource dataSource, PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.jdbcTemplate.setFetchSize(BankAccountRepository.STREAM_FETCH_SIZE);
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setReadOnly(true);
+  }
+
+  public void writeAccounts(ExportFormat format, boolean gzip, OutputStream out) {
+    write(format, gzip, out, ACCOUNT_COLUMNS, ACCOUNTS_QUERY,
+        (rs, row) -> new Object[] {rs.getLong(1), rs.getLong(2), rs.getString(3), Money.toDecimal(rs.getLong(4))});
+  }
+
+  //движения по всем счетам владельца за [from, to) в миллисекундах, по счетам и по времени
+  public void writeStatement(Long userId, long from, long to, ExportFormat format, boolean gzip, OutputStream out) {
+    write(format, gzip, out, STATEMENT_COLUMNS, STATEMENT_QUERY,
+        (rs, row) -> new Object[] {rs.getLong(1), rs.getLong(2), Instant.ofEpochMilli(rs.getLong(3)).toString(), rs.getString(4),
+            Money.toDecimal(rs.getLong(5)), Money.toDecimal(rs.getLong(6)), rs.getObject(7)},
+        userId, from, to);
+  }
+
+  private void write(ExportFormat format, boolean gzip, OutputStream out, String[] columns, String query, RowMapper<Object[]> mapper,
+      Object... parameters) {
+    transactionTemplate.execute(status -> {
+      try {
+        //syncFlush: каждый flush отдаёт клиенту всё сжатое к этому моменту
+        OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_SIZE, true) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+        format.writeHeader(writer, columns);
+        int[] written = {0};
+        jdbcTemplate.query(query, rs -> {
+          try {
+            format.writeRow(writer, columns, mapper.mapRow(rs, written[0]));
+            if (++written[0] == 1 || written[0] % BankAccountRepository.STREAM_FETCH_SIZE == 0) {
+              writer.flush();
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, parameters);
+        writer.flush();
+        if (gzip) {
+          ((GZIPOutputStream) target).finish();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return null;
+    });
+  }
+}
@@ -0,0 +1,65 @@
+package com.example.account.manager.project.writers;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Пишет все банковские счета в виде JSON-массива, не собирая их в памяти:
+ * строки читаются курсором по {@link BankAccountRepository#STREAM_FETCH_SIZE} штук,
+ * после каждой порции буфер генератора сбрасывается в ответ, а контекст персистентности очищается.
+ */
+@Component
+public class BankAccountJsonStreamWriter {
+
+  private final BankAccountRepository repository;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectWriter accountWriter;
+  private final ObjectMapper objectMapper;
+
+  public BankAccountJsonStreamWriter(BankAccountRepository repository, EntityManager entityManager,
+      PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+    this.repository = repository;
+    this.entityManager = entityManager;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setReadOnly(true);
+    this.objectMapper = objectMapper;
+    this.accountWriter = objectMapper.writerFor(BankAccount.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  }
+
+  public void writeAll(OutputStream out) {
+    transactionTemplate.execute(status -> {
+      try (Stream<BankAccount> accounts = repository.streamAll();
+          JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+        generator.writeStartArray();
+        int written = 0;
+        Iterator<BankAccount> iterator = accounts.iterator();
+        while (iterator.hasNext()) {
+          accountWriter.writeValue(generator, iterator.next());
+          if (++written % BankAccountRepository.STREAM_FETCH_SIZE == 0) {
+            generator.flush();
+            entityManager.clear();
+          }
+        }
+        generator.writeEndArray();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return null;
+    });
+  }
+}
@@ -0,0 +1,85 @@
+package com.example.account.manager.project.writers;
+
+import com.example.account.manager.project.exceptions.ExportFormatException;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Формат выгрузки. Значения в выгрузках - числа, коды статусов и операций и время в ISO-8601,
+ * поэтому экранировать в них нечего.
+ */
+public enum ExportFormat {
+
+  //первая строка - имена колонок, пустое значение - пустое поле
+  CSV("text/csv") {
+    @Override
+    void writeHeader(Writer writer, String[] columns) throws IOException {
+      writer.write(String.join(",", columns));
+      writer.write('\n');
+    }
+
+    @Override
+    void writeRow(Writer writer, String[] columns, Object[] values) throws IOException {
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          writer.write(',');
+        }
+        if (values[i] != null) {
+          writer.write(values[i].toString());
+        }
+      }
+      writer.write('\n');
+    }
+  },
+
+  //по объекту JSON на строку
+  NDJSON("application/x-ndjson") {
+    @Override
+    void writeHeader(Writer writer, String[] columns) {
+    }
+
+    @Override
+    void writeRow(Writer writer, String[] columns, Object[] values) throws IOException {
+      writer.write('{');
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          writer.write(',');
+        }
+        writer.write('"');
+        writer.write(columns[i]);
+        writer.write("\":");
+        if (values[i] instanceof String) {
+          writer.write('"');
+          writer.write((String) values[i]);
+          writer.write('"');
+        } else {
+          writer.write(String.valueOf(values[i]));
+        }
+      }
+      writer.write("}\n");
+    }
+  };
+
+  private final String contentType;
+
+  ExportFormat(String contentType) {
+    this.contentType = contentType;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public static ExportFormat of(String format) {
+    for (ExportFormat exportFormat : values()) {
+      if (exportFormat.name().equalsIgnoreCase(format)) {
+        return exportFormat;
+      }
+    }
+    throw new ExportFormatException(format);
+  }
+
+  abstract void writeHeader(Writer writer, String[] columns) throws IOException;
+
+  abstract void writeRow(Writer writer, String[] columns, Object[] values) throws IOException;
+}
@@ -1,32 +1,67 @@
 package com.example.account.manager.project.controllers;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.example.account.manager.project.entities.BankAccount;
 import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.BankAccountTransaction;
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
 import com.example.account.manager.project.entities.User;
 import com.example.account.manager.project.exceptions.BankAccountIllegalStateException;
 import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.exceptions.BankAccountStatusException;
 import com.example.account.manager.project.exceptions.BankAccountWithdrawOperationException;
+import com.example.account.manager.project.exceptions.IdempotencyKeyInUseException;
 import com.example.account.manager.project.exceptions.UserNotFoundException;
+import com.example.account.manager.project.exceptions.WriteRejectedException;
+import com.example.account.manager.project.feed.BankAccountChangeFeed;
+import com.example.account.manager.project.oplog.OperationLog;
 import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.example.account.manager.project.repositories.BankAccountTransactionRepository;
 import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.requests.BatchTransferMode;
+import com.example.account.manager.project.requests.BatchTransferRequest;
+import com.example.account.manager.project.requests.BulkCreateRequest;
 import com.example.account.manager.project.requests.DepositRequest;
+import com.example.account.manager.project.requests.OwnerAccounts;
 import com.example.account.manager.project.requests.TransferRequest;
 import com.example.account.manager.project.requests.WithdrawRequest;
+import com.example.account.manager.project.responses.BalanceSummary;
+import com.example.account.manager.project.responses.BatchTransferResponse;
+import com.example.account.manager.project.responses.StatusSummary;
+import com.example.account.manager.project.responses.TransferReceipt;
+import com.example.account.manager.project.responses.TransferResult;
+import com.example.account.manager.project.services.AccountSummaryService;
 import com.example.account.manager.project.services.BankAccountService;
+import com.example.account.manager.project.services.BankAccountVersions;
+import com.example.account.manager.project.services.HotAccountService;
+import com.example.account.manager.project.services.IdempotencyService;
+import com.example.account.manager.project.writers.BankAccountExportWriter;
+import com.example.account.manager.project.writers.BankAccountJsonStreamWriter;
+import com.example.account.manager.project.writers.ExportFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.math.BigDecimal;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,9 +72,13 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 /**
  * Created by Dyakov on 19.03.2019.
@@ -51,6 +90,8 @@ import org.springframework.test.web.servlet.MockMvc;
     "com.example.account.manager.project.assemblers",
     "com.example.account.manager.project.services",
     "com.example.account.manager.project.exceptions",
+    "com.example.account.manager.project.executors",
+    "com.example.account.manager.project.feed",
     "com.example.account.manager.project.requests",
     "com.example.account.manager.project.entities"
 })
@@ -59,15 +100,42 @@ public class BankAccountControllerTest {
   @Autowired
   private MockMvc mockMvc;
 
+  @Autowired
+  private BankAccountVersions versions;
+
+  @Autowired
+  private BankAccountChangeFeed changes;
+
   @MockBean
   UserRepository userRepository;
 
   @MockBean
   BankAccountRepository bankAccountRepository;
 
+  @MockBean
+  BankAccountTransactionRepository transactionRepository;
+
   @MockBean
   private BankAccountService service;
 
+  @MockBean
+  private HotAccountService hotAccountService;
+
+  @MockBean
+  private BankAccountJsonStreamWriter streamWriter;
+
+  @MockBean
+  private BankAccountExportWriter exportWriter;
+
+  @MockBean
+  private OperationLog operationLog;
+
+  @MockBean
+  private IdempotencyService idempotencyService;
+
+  @MockBean
+  private AccountSummaryService summaryService;
+
   @Before
   public void setUp() {
     User user1 = new User(1L,"Vladidmir", "Dyakov");
@@ -81,10 +149,14 @@ public class BankAccountControllerTest {
     bankAccounts.add(bankAccount3);
     BankAccount bankAccount4 = new BankAccount(4L, new BigDecimal("15.06"), BankAccountStatus.BLOCKED, user2);
     bankAccounts.add(bankAccount4);
-    Mockito.when(bankAccountRepository.findAll()).thenReturn(bankAccounts);
-    Mockito.when(bankAccountRepository.findById(1L)).thenReturn(Optional.of(bankAccount1));
-    Mockito.when(bankAccountRepository.findById(2L)).thenReturn(Optional.of(bankAccount2));
-    Mockito.when(bankAccountRepository.findById(3L)).thenReturn(Optional.of(bankAccount3));
+    Mockito.when(bankAccountRepository.findAllWithUser()).thenReturn(bankAccounts);
+    Mockito.when(bankAccountRepository.findAllByUserId(2L)).thenReturn(Arrays.asList(bankAccount3, bankAccount4));
+    Mockito.when(userRepository.existsById(7L)).thenReturn(false);
+    Mockito.when(bankAccountRepository.findPageAfter(0L, PageRequest.of(0, 2))).thenReturn(Arrays.asList(bankAccount1, bankAccount2));
+    Mockito.when(bankAccountRepository.findPageAfter(2L, PageRequest.of(0, 3))).thenReturn(Arrays.asList(bankAccount3, bankAccount4));
+    Mockito.when(bankAccountRepository.readById(1L)).thenReturn(Optional.of(bankAccount1));
+    Mockito.when(bankAccountRepository.readById(2L)).thenReturn(Optional.of(bankAccount2));
+    Mockito.when(bankAccountRepository.readById(3L)).thenReturn(Optional.of(bankAccount3));
     Mockito.when(service.depositMoney(eq(3L), any(BigDecimal.class))).thenReturn(bankAccount3);
     Mockito.when(service.depositMoney(eq(5L), any(BigDecimal.class))).thenThrow(new BankAccountNotFoundException(5L));
     Mockito.when(service.depositMoney(eq(4L), any(BigDecimal.class))).thenThrow(new BankAccountIllegalStateException(4L));
@@ -92,7 +164,12 @@ public class BankAccountControllerTest {
     Mockito.when(service.withdrawMoney(eq(3L), any(BigDecimal.class))).thenReturn(bankAccount3);
     Mockito.when(service.withdrawMoney(eq(5L), any(BigDecimal.class))).thenThrow(new BankAccountNotFoundException(5L));
     Mockito.when(service.withdrawMoney(eq(4L), any(BigDecimal.class))).thenThrow(new BankAccountIllegalStateException(4L));
+    Mockito.when(service.transferMoney(eq(3L), eq(1L), any(BigDecimal.class)))
+        .thenReturn(new TransferReceipt(3L, 1L, new BigDecimal("5.05"), new BigDecimal("6.07"), new BigDecimal("5.05")));
     Mockito.doThrow(new BankAccountNotFoundException(5L)).when(service).transferMoney(eq(5L), eq(1L), any(BigDecimal.class));
+    Mockito.when(service.transferMoney(anyList(), eq(BatchTransferMode.BEST_EFFORT))).thenReturn(new BatchTransferResponse(BatchTransferMode.BEST_EFFORT, true, Arrays.asList(
+        TransferResult.applied(new TransferReceipt(3L, 1L, new BigDecimal("5.05"), new BigDecimal("6.07"), new BigDecimal("5.05"))),
+        TransferResult.failed(5L, 1L, new BigDecimal("1.00"), "Could not find bank account with id:5"))));
     Mockito.doThrow(new BankAccountNotFoundException(5L)).when(service).transferMoney(eq(3L), eq(5L), any(BigDecimal.class));
     Mockito.doThrow(new BankAccountIllegalStateException(2L)).when(service).transferMoney(eq(2L), eq(1L), any(BigDecimal.class));
     Mockito.doThrow(new BankAccountIllegalStateException(4L)).when(service).transferMoney(eq(3L), eq(4L), any(BigDecimal.class));
@@ -101,12 +178,28 @@ public class BankAccountControllerTest {
     Mockito.when(service.createBankAccount(eq(3L))).thenThrow(new UserNotFoundException(3L));
     BankAccount blockedBankAccount1 = new BankAccount(1L, new BigDecimal("0.0"), BankAccountStatus.BLOCKED, user1);
     Mockito.when(service.blockBankAccount(1L)).thenReturn(blockedBankAccount1);
-    Mockito.when(service.blockBankAccount(2L)).thenReturn(bankAccount2);
-    Mockito.when(bankAccountRepository.findById(5L)).thenThrow(new BankAccountNotFoundException(5L));
+    Mockito.when(service.blockBankAccount(2L)).thenThrow(new BankAccountStatusException(BankAccountStatus.BLOCKED, BankAccountStatus.BLOCKED));
+    Mockito.when(service.blockBankAccount(5L)).thenThrow(new BankAccountNotFoundException(5L));
+    Mockito.when(bankAccountRepository.readById(5L)).thenThrow(new BankAccountNotFoundException(5L));
     BankAccount activeBankAccount2 = new BankAccount(2L, new BigDecimal("10.01"), BankAccountStatus.ACTIVE, user1);
     Mockito.when(service.activateBankAccount(2L)).thenReturn(activeBankAccount2);
-    Mockito.when(service.activateBankAccount(1L)).thenReturn(bankAccount1);
+    Mockito.when(service.activateBankAccount(1L)).thenThrow(new BankAccountStatusException(BankAccountStatus.ACTIVE, BankAccountStatus.ACTIVE));
+    Mockito.when(service.activateBankAccount(5L)).thenThrow(new BankAccountNotFoundException(5L));
     Mockito.doThrow(new BankAccountNotFoundException(5L)).when(service).deleteBankAccount(5L);
+    BankAccountTransaction deposit = new BankAccountTransaction(3L, null, BankAccountOperation.DEPOSIT, 1112, 1112, 1553000000000L);
+    deposit.setId(10L);
+    BankAccountTransaction transfer = new BankAccountTransaction(3L, 1L, BankAccountOperation.TRANSFER, -100, 1012, 1553000060000L);
+    transfer.setId(11L);
+    Mockito.when(transactionRepository.findPage(3L, 0, Long.MAX_VALUE, 0, PageRequest.of(0, 2))).thenReturn(Arrays.asList(deposit, transfer));
+    Map<BankAccountStatus, StatusSummary> user2Statuses = new EnumMap<>(BankAccountStatus.class);
+    user2Statuses.put(BankAccountStatus.ACTIVE, new StatusSummary(1, new BigDecimal("11.12")));
+    user2Statuses.put(BankAccountStatus.BLOCKED, new StatusSummary(1, new BigDecimal("15.06")));
+    Mockito.when(summaryService.userSummary(2L)).thenReturn(new BalanceSummary(2L, 2, new BigDecimal("26.18"), user2Statuses));
+    Mockito.when(summaryService.userSummary(7L)).thenThrow(new UserNotFoundException(7L));
+    Map<BankAccountStatus, StatusSummary> statuses = new EnumMap<>(BankAccountStatus.class);
+    statuses.put(BankAccountStatus.ACTIVE, new StatusSummary(2, new BigDecimal("11.12")));
+    statuses.put(BankAccountStatus.BLOCKED, new StatusSummary(2, new BigDecimal("25.07")));
+    Mockito.when(summaryService.totalSummary()).thenReturn(new BalanceSummary(null, 4, new BigDecimal("36.19"), statuses));
   }
 
   @Test
@@ -131,6 +224,78 @@ public class BankAccountControllerTest {
         .andExpect(jsonPath("$._links.self.href").value("http://localhost/bank/accounts"));
   }
 
+  @Test
+  public void testGetPage_firstPage_bankAccountsWithNextLink() throws Exception {
+    mockMvc.perform(get("/bank/accounts").param("limit", "2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.bankAccountList.length()").value(2))
+        .andExpect(jsonPath("$._embedded.bankAccountList[0].id").value("1"))
+        .andExpect(jsonPath("$._embedded.bankAccountList[1].id").value("2"))
+        .andExpect(jsonPath("$._links.self.href").value("http://localhost/bank/accounts?after=0&limit=2"))
+        .andExpect(jsonPath("$._links.next.href").value("http://localhost/bank/accounts?after=2&limit=2"));
+  }
+
+  @Test
+  public void testGetPage_lastPage_bankAccountsWithoutNextLink() throws Exception {
+    mockMvc.perform(get("/bank/accounts").param("after", "2").param("limit", "3"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.bankAccountList.length()").value(2))
+        .andExpect(jsonPath("$._embedded.bankAccountList[0].id").value("3"))
+        .andExpect(jsonPath("$._embedded.bankAccountList[1].id").value("4"))
+        .andExpect(jsonPath("$._links.next.href").doesNotExist());
+  }
+
+  @Test
+  public void testStream_void_bankAccountsWrittenByStreamWriter() throws Exception {
+    mockMvc.perform(get("/bank/accounts").param("stream", "true"))
+        .andExpect(request().asyncStarted());
+    Mockito.verify(streamWriter, Mockito.timeout(1000)).writeAll(any(OutputStream.class));
+  }
+
+  @Test
+  public void testExport_gzipAccepted_compressedCsv() throws Exception {
+    mockMvc.perform(get("/bank/accounts/export").header("Accept-Encoding", "gzip, deflate"))
+        .andExpect(request().asyncStarted())
+        .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+        .andExpect(header().string("Content-Encoding", "gzip"))
+        .andExpect(header().string("Vary", "Accept-Encoding"));
+    Mockito.verify(exportWriter, Mockito.timeout(1000)).writeAccounts(eq(ExportFormat.CSV), eq(true), any(OutputStream.class));
+  }
+
+  @Test
+  public void testExport_gzipRefusedWithZeroQuality_uncompressedCsv() throws Exception {
+    mockMvc.perform(get("/bank/accounts/export").header("Accept-Encoding", "gzip;q=0, *;q=1"))
+        .andExpect(request().asyncStarted())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(header().string("Vary", "Accept-Encoding"));
+    Mockito.verify(exportWriter, Mockito.timeout(1000)).writeAccounts(eq(ExportFormat.CSV), eq(false), any(OutputStream.class));
+  }
+
+  @Test
+  public void testExport_unknownFormat_HttpResponseWithStatusBadRequest() throws Exception {
+    mockMvc.perform(get("/bank/accounts/export").param("format", "xml"))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string("Unknown export format:xml; supported: csv, ndjson"));
+  }
+
+  @Test
+  public void testStatement_validUserId_ndjsonWrittenByExportWriter() throws Exception {
+    Mockito.when(userRepository.existsById(2L)).thenReturn(true);
+    mockMvc.perform(get("/users/2/statement").param("format", "ndjson").param("from", "2019-03-19T00:00:00Z"))
+        .andExpect(request().asyncStarted())
+        .andExpect(header().string("Content-Type", "application/x-ndjson;charset=UTF-8"))
+        .andExpect(header().doesNotExist("Content-Encoding"));
+    Mockito.verify(exportWriter, Mockito.timeout(1000))
+        .writeStatement(eq(2L), eq(1552953600000L), eq(Long.MAX_VALUE), eq(ExportFormat.NDJSON), eq(false), any(OutputStream.class));
+  }
+
+  @Test
+  public void testStatement_notExistedUserId_HttpResponseWithStatusNotFound() throws Exception {
+    mockMvc.perform(get("/users/7/statement"))
+        .andExpect(status().isNotFound())
+        .andExpect(content().string("Could not find bank account owner with id:7"));
+  }
+
   @Test
   public void testGet_activeBankAccountId_bankAccountWithLinks() throws Exception {
     mockMvc.perform(get("/bank/accounts/1"))
@@ -145,6 +310,67 @@ public class BankAccountControllerTest {
         .andExpect(jsonPath("$._links.activate.href").doesNotExist());
   }
 
+  @Test
+  public void testGet_matchingIfNoneMatch_HttpResponseWithStatusNotModified() throws Exception {
+    String eTag = mockMvc.perform(get("/bank/accounts/1"))
+        .andExpect(status().isOk())
+        .andExpect(header().exists("ETag"))
+        .andReturn().getResponse().getHeader("ETag");
+    Mockito.clearInvocations(bankAccountRepository);
+
+    mockMvc.perform(get("/bank/accounts/1").header("If-None-Match", eTag))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string("ETag", eTag))
+        .andExpect(content().string(""));
+    Mockito.verifyZeroInteractions(bankAccountRepository);
+  }
+
+  @Test
+  public void testGet_accountChanged_newETag() throws Exception {
+    String eTag1 = mockMvc.perform(get("/bank/accounts/1")).andReturn().getResponse().getHeader("ETag");
+    String eTag3 = mockMvc.perform(get("/bank/accounts/3")).andReturn().getResponse().getHeader("ETag");
+    versions.onOperation(BankAccountOperationEvent.transfer(2L, 3L, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE));
+
+    mockMvc.perform(get("/bank/accounts/1").header("If-None-Match", eTag1))
+        .andExpect(status().isNotModified());
+    mockMvc.perform(get("/bank/accounts/3").header("If-None-Match", eTag3))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.id").value("3"));
+  }
+
+  @Test
+  public void testGet_notExistedBankAccountIdWithZeroVersion_HttpResponseWithStatusNotFound() throws Exception {
+    String listETag = versions.listETag();
+    String zeroVersion = listETag.substring(0, listETag.indexOf('-')) + "-0";
+    mockMvc.perform(get("/bank/accounts/5").header("If-None-Match", "\"" + zeroVersion + "\""))
+        .andExpect(status().isNotFound())
+        .andExpect(content().string("Could not find bank account with id:5"));
+  }
+
+  @Test
+  public void testGet_deletedBankAccount_HttpResponseWithStatusNotFound() throws Exception {
+    String eTag = mockMvc.perform(get("/bank/accounts/2")).andReturn().getResponse().getHeader("ETag");
+    versions.onOperation(BankAccountOperationEvent.of(BankAccountOperation.DELETED, 2L, BigDecimal.ZERO, BigDecimal.ZERO));
+    Mockito.when(bankAccountRepository.readById(2L)).thenReturn(Optional.empty());
+
+    mockMvc.perform(get("/bank/accounts/2").header("If-None-Match", eTag))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void testGetAll_anyOperation_newETag() throws Exception {
+    String eTag = mockMvc.perform(get("/bank/accounts")).andReturn().getResponse().getHeader("ETag");
+    mockMvc.perform(get("/bank/accounts").header("If-None-Match", eTag))
+        .andExpect(status().isNotModified());
+    mockMvc.perform(get("/users/2/accounts").header("If-None-Match", eTag))
+        .andExpect(status().isNotModified());
+
+    versions.onOperation(BankAccountOperationEvent.of(BankAccountOperation.DEPOSIT, 4L, BigDecimal.ONE, BigDecimal.ONE));
+    mockMvc.perform(get("/bank/accounts").header("If-None-Match", eTag))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.bankAccountList[0].id").value("1"));
+  }
+
   @Test
   public void testGet_blockedBankAccountId_bankAccountWithLinks() throws Exception {
     mockMvc.perform(get("/bank/accounts/2"))
@@ -159,6 +385,117 @@ public class BankAccountControllerTest {
         .andExpect(jsonPath("$._links.block.href").doesNotExist());
   }
 
+  @Test
+  public void testGetByUser_validUserId_userBankAccountsWithLinks() throws Exception {
+    mockMvc.perform(get("/users/2/accounts"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.bankAccountList.length()").value(2))
+        .andExpect(jsonPath("$._embedded.bankAccountList[0].id").value("3"))
+        .andExpect(jsonPath("$._embedded.bankAccountList[1].id").value("4"))
+        .andExpect(jsonPath("$._embedded.bankAccountList[0].user.id").value("2"))
+        .andExpect(jsonPath("$._embedded.bankAccountList[0]._links.self.href").value("http://localhost/bank/accounts/3"))
+        .andExpect(jsonPath("$._links.self.href").value("http://localhost/users/2/accounts"));
+  }
+
+  @Test
+  public void testGetByUser_notExistedUserId_HttpResponseWithStatusNotFound() throws Exception {
+    mockMvc.perform(get("/users/7/accounts"))
+        .andExpect(status().isNotFound())
+        .andExpect(content().string("Could not find bank account owner with id:7"));
+  }
+
+  @Test
+  public void testGetChanges_userId_eventsOfUserBankAccounts() throws Exception {
+    MvcResult result = mockMvc.perform(get("/bank/accounts/changes").param("userId", "2"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    changes.onOperation(BankAccountOperationEvent.of(BankAccountOperation.DEPOSIT, 1L, BigDecimal.ONE, BigDecimal.ONE));
+    changes.onOperation(BankAccountOperationEvent.transfer(1L, 3L, BigDecimal.TEN, BigDecimal.ONE, BigDecimal.TEN));
+
+    String events = awaitContent(result, "\"operation\":\"TRANSFER\"");
+    assertTrue(events.contains("id:" + changes.lastId() + "\n"));
+    assertTrue(events.contains("\"counterpartyId\":3"));
+    assertFalse(events.contains("\"operation\":\"DEPOSIT\""));
+  }
+
+  @Test
+  public void testGetChanges_lastEventId_missedEventsReplayed() throws Exception {
+    changes.onOperation(BankAccountOperationEvent.of(BankAccountOperation.DEPOSIT, 1L, BigDecimal.ONE, BigDecimal.ONE));
+    long seen = changes.lastId();
+    changes.onOperation(BankAccountOperationEvent.of(BankAccountOperation.BLOCKED, 1L, null, BigDecimal.ONE));
+    MvcResult result = mockMvc.perform(get("/bank/accounts/changes").param("bankAccountId", "1").header("Last-Event-ID", seen))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    String events = awaitContent(result, "\"operation\":\"BLOCKED\"");
+    assertTrue(events.contains("id:" + (seen + 1) + "\n"));
+    assertFalse(events.contains("id:" + seen + "\n"));
+  }
+
+  @Test
+  public void testGetChanges_unknownLastEventId_resetEvent() throws Exception {
+    MvcResult result = mockMvc.perform(get("/bank/accounts/changes").header("Last-Event-ID", changes.lastId() + 1000))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    awaitContent(result, "event:reset");
+  }
+
+  @Test
+  public void testGetChanges_notExistedBankAccountId_HttpResponseWithStatusNotFound() throws Exception {
+    mockMvc.perform(get("/bank/accounts/changes").param("bankAccountId", "5"))
+        .andExpect(status().isNotFound())
+        .andExpect(content().string("Could not find bank account with id:5"));
+  }
+
+  @Test
+  public void testGetTransactions_fullPage_entriesWithNextLink() throws Exception {
+    mockMvc.perform(get("/bank/accounts/3/transactions?limit=2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$._embedded.bankAccountTransactionList.length()").value(2))
+        .andExpect(jsonPath("$._embedded.bankAccountTransactionList[0].operation").value("DEPOSIT"))
+        .andExpect(jsonPath("$._embedded.bankAccountTransactionList[0].amount").value("11.12"))
+        .andExpect(jsonPath("$._embedded.bankAccountTransactionList[1].amount").value("-1.0"))
+        .andExpect(jsonPath("$._embedded.bankAccountTransactionList[1].counterpartyId").value("1"))
+        .andExpect(jsonPath("$._embedded.bankAccountTransactionList[1].time").value("2019-03-19T12:54:20Z"))
+        .andExpect(jsonPath("$._links.next.href")
+            .value("http://localhost/bank/accounts/3/transactions?from=2019-03-19T12:54:20Z&after=11&limit=2"));
+  }
+
+  @Test
+  public void testGetTransactions_notExistedBankAccountId_HttpResponseWithStatusNotFound() throws Exception {
+    mockMvc.perform(get("/bank/accounts/5/transactions"))
+        .andExpect(status().isNotFound())
+        .andExpect(content().string("Could not find bank account with id:5"));
+  }
+
+  @Test
+  public void testGetUserSummary_validUserId_balancesByStatus() throws Exception {
+    mockMvc.perform(get("/users/2/summary"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.userId").value("2"))
+        .andExpect(jsonPath("$.accounts").value("2"))
+        .andExpect(jsonPath("$.balance").value("26.18"))
+        .andExpect(jsonPath("$.statuses.BLOCKED.accounts").value("1"))
+        .andExpect(jsonPath("$.statuses.BLOCKED.balance").value("15.06"));
+  }
+
+  @Test
+  public void testGetUserSummary_notExistedUserId_HttpResponseWithStatusNotFound() throws Exception {
+    mockMvc.perform(get("/users/7/summary"))
+        .andExpect(status().isNotFound())
+        .andExpect(content().string("Could not find bank account owner with id:7"));
+  }
+
+  @Test
+  public void testGetSummary_allUsers_balancesByStatus() throws Exception {
+    mockMvc.perform(get("/bank/accounts/summary"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.accounts").value("4"))
+        .andExpect(jsonPath("$.balance").value("36.19"))
+        .andExpect(jsonPath("$.statuses.ACTIVE.balance").value("11.12"))
+        .andExpect(jsonPath("$.statuses.BLOCKED.balance").value("25.07"));
+  }
+
   @Test
   public void testGet_notExistedBankAccountId_HttpResponseWithStatusNotFound() throws Exception {
     mockMvc.perform(get("/bank/accounts/5"))
@@ -170,7 +507,7 @@ public class BankAccountControllerTest {
   public void testDepositMoney_validBankAccountIdAndValidResponse_validBankAccount() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new DepositRequest("11.05"));
-    mockMvc.perform(put("/bank/accounts/3/deposit/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts/3/deposit/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.id").value("3"));
   }
@@ -179,7 +516,7 @@ public class BankAccountControllerTest {
   public void testDepositMoney_notExistedBankAccountIdAndValidResponse_BankAccountNotFoundException() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new DepositRequest("11.05"));
-    mockMvc.perform(put("/bank/accounts/5/deposit/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts/5/deposit/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isNotFound())
         .andExpect(content().string("Could not find bank account with id:5"));
   }
@@ -188,16 +525,51 @@ public class BankAccountControllerTest {
   public void testDepositMoney_blockedBankAccountIdAndValidResponse_BankAccountIllegalStateException() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new DepositRequest("11.05"));
-    mockMvc.perform(put("/bank/accounts/4/deposit/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts/4/deposit/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isNotAcceptable())
         .andExpect(content().string("Bank account with id:4 blocked"));
   }
 
+  @Test
+  public void testDepositMoney_idempotencyKey_handledByIdempotencyService() throws Exception {
+    Mockito.when(idempotencyService.depositMoney(eq("key-1"), eq(3L), eq(new BigDecimal("11.05")))).thenReturn(
+        new BankAccount(3L, new BigDecimal("11.05"), BankAccountStatus.ACTIVE, new User(2L, "Daria", "Vasilueva")));
+    ObjectMapper objectMapper = new ObjectMapper();
+    String request = objectMapper.writeValueAsString(new DepositRequest("11.05"));
+    performWrite(put("/bank/accounts/3/deposit/money").header("Idempotency-Key", "key-1")
+        .contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.balance").value(11.05));
+    Mockito.verify(service, Mockito.never()).depositMoney(eq(3L), any(BigDecimal.class));
+  }
+
+  @Test
+  public void testTransferMoney_idempotencyKeyInUse_HttpResponseWithStatusConflict() throws Exception {
+    Mockito.when(idempotencyService.transferMoney(eq("key-2"), eq(3L), eq(1L), any(BigDecimal.class)))
+        .thenThrow(new IdempotencyKeyInUseException("key-2"));
+    ObjectMapper objectMapper = new ObjectMapper();
+    String request = objectMapper.writeValueAsString(new TransferRequest(3L, 1L, "5.05"));
+    performWrite(put("/bank/accounts").header("Idempotency-Key", "key-2")
+        .contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+        .andExpect(status().isConflict())
+        .andExpect(content().string("Request with Idempotency-Key:key-2 is still in progress"));
+  }
+
+  @Test
+  public void testDepositMoney_moreThanTwoDecimalPlaces_HttpResponseWithStatusBadRequest() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    String request = objectMapper.writeValueAsString(new DepositRequest("11.055"));
+    mockMvc.perform(put("/bank/accounts/3/deposit/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string("Invalid amount: 11.055; expected a number with at most 2 decimal places"));
+    Mockito.verify(service, Mockito.never()).depositMoney(eq(3L), any(BigDecimal.class));
+  }
+
   @Test
   public void testWithdrawMoney_validBankAccountIdAndValidResponse_validBankAccount() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new WithdrawRequest("11.05"));
-    mockMvc.perform(put("/bank/accounts/3/withdraw/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts/3/withdraw/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.id").value("3"));
   }
@@ -206,7 +578,7 @@ public class BankAccountControllerTest {
   public void testWithdrawMoney_notExistedBankAccountIdAndValidResponse_BankAccountNotFoundException() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new WithdrawRequest("11.05"));
-    mockMvc.perform(put("/bank/accounts/5/withdraw/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts/5/withdraw/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isNotFound())
         .andExpect(content().string("Could not find bank account with id:5"));
   }
@@ -215,7 +587,7 @@ public class BankAccountControllerTest {
   public void testWithdrawMoney_blockedBankAccountIdAndValidResponse_BankAccountIllegalStateException() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new WithdrawRequest("11.05"));
-    mockMvc.perform(put("/bank/accounts/4/withdraw/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts/4/withdraw/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isNotAcceptable())
         .andExpect(content().string("Bank account with id:4 blocked"));
   }
@@ -224,16 +596,30 @@ public class BankAccountControllerTest {
   public void testWithdrawMoney_bankAccountWithZeroBalance_BankAccountWithdrawOperationException() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new WithdrawRequest("11.05"));
-    mockMvc.perform(put("/bank/accounts/1/withdraw/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts/1/withdraw/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isPreconditionFailed())
         .andExpect(content().string("Could not withdraw money from bank account with id:1; amount:11.05"));
   }
 
   @Test
-  public void testTransferMoney_validBankAccounts_AllBankAccountsWithLink() throws Exception{
+  public void testTransferMoney_validBankAccounts_TransferReceipt() throws Exception{
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new TransferRequest(3L, 1L, "5.05"));
-    mockMvc.perform(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.bankAccountIdFrom").value("3"))
+        .andExpect(jsonPath("$.bankAccountIdTo").value("1"))
+        .andExpect(jsonPath("$.amount").value("5.05"))
+        .andExpect(jsonPath("$.balanceFrom").value("6.07"))
+        .andExpect(jsonPath("$.balanceTo").value("5.05"))
+        .andExpect(jsonPath("$._embedded").doesNotExist());
+  }
+
+  @Test
+  public void testTransferMoney_validBankAccountsAndFullView_AllBankAccountsWithLink() throws Exception{
+    ObjectMapper objectMapper = new ObjectMapper();
+    String request = objectMapper.writeValueAsString(new TransferRequest(3L, 1L, "5.05"));
+    performWrite(put("/bank/accounts").param("view", "full").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$._embedded.bankAccountList[0].id").value("1"))
         .andExpect(jsonPath("$._embedded.bankAccountList[1].id").value("2"))
@@ -242,11 +628,85 @@ public class BankAccountControllerTest {
         .andExpect(jsonPath("$._links.self.href").value("http://localhost/bank/accounts"));
   }
 
+  @Test
+  public void testTransferMoneyBatch_bestEffortTransfers_ResultPerTransfer() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    String request = objectMapper.writeValueAsString(new BatchTransferRequest(BatchTransferMode.BEST_EFFORT,
+        Arrays.asList(new TransferRequest(3L, 1L, "5.05"), new TransferRequest(5L, 1L, "1.00"))));
+    performWrite(post("/bank/accounts/transfers:batch").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.mode").value("BEST_EFFORT"))
+        .andExpect(jsonPath("$.committed").value(true))
+        .andExpect(jsonPath("$.results[0].status").value("APPLIED"))
+        .andExpect(jsonPath("$.results[0].balanceFrom").value("6.07"))
+        .andExpect(jsonPath("$.results[1].status").value("FAILED"))
+        .andExpect(jsonPath("$.results[1].message").value("Could not find bank account with id:5"));
+  }
+
+  @Test
+  public void testNewBankAccounts_validOwners_CreatedWithIds() throws Exception {
+    User user = new User(1L, "Vladidmir", "Dyakov");
+    Mockito.when(service.createBankAccounts(anyList())).thenReturn(Arrays.asList(
+        new BankAccount(5L, new BigDecimal("0.00"), BankAccountStatus.ACTIVE, user),
+        new BankAccount(6L, new BigDecimal("0.00"), BankAccountStatus.ACTIVE, user)));
+    String request = new ObjectMapper().writeValueAsString(new BulkCreateRequest(Arrays.asList(new OwnerAccounts(1L, 2))));
+    performWrite(post("/bank/accounts:bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.created").value(2))
+        .andExpect(jsonPath("$.bankAccountIds[0]").value(5))
+        .andExpect(jsonPath("$.bankAccountIds[1]").value(6));
+  }
+
+  @Test
+  public void testNewBankAccounts_tooManyAccounts_BadRequest() throws Exception {
+    String request = new ObjectMapper().writeValueAsString(new BulkCreateRequest(Arrays.asList(
+        new OwnerAccounts(1L, BankAccountController.MAX_BULK_ACCOUNTS), new OwnerAccounts(2L, 1))));
+    mockMvc.perform(post("/bank/accounts:bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string("Could not create 100001 bank accounts in one request; limit:100000"));
+  }
+
+  @Test
+  public void testNewBankAccounts_nullOwners_BadRequest() throws Exception {
+    mockMvc.perform(post("/bank/accounts:bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+        .content("{\"owners\":null}"))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string("Bulk creation needs a list of owners"));
+  }
+
+  @Test
+  public void testNewBankAccounts_emptyOwners_BadRequest() throws Exception {
+    mockMvc.perform(post("/bank/accounts:bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+        .content("{\"owners\":[]}"))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string("Bulk creation needs a list of owners"));
+  }
+
+  @Test
+  public void testTransferMoneyBatch_tooManyTransfers_BadRequest() throws Exception {
+    List<TransferRequest> transfers = new ArrayList<>();
+    for (int i = 0; i <= BankAccountController.MAX_BATCH_TRANSFERS; i++) {
+      transfers.add(new TransferRequest(1L, 3L, "1.00"));
+    }
+    String request = new ObjectMapper().writeValueAsString(new BatchTransferRequest(BatchTransferMode.BEST_EFFORT, transfers));
+    mockMvc.perform(post("/bank/accounts/transfers:batch").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string("Could not apply 1001 transfers in one batch; limit:1000"));
+  }
+
+  @Test
+  public void testTransferMoneyBatch_nullTransfers_BadRequest() throws Exception {
+    mockMvc.perform(post("/bank/accounts/transfers:batch").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+        .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":null}"))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string("Batch transfer needs a mode and a list of transfers"));
+  }
+
   @Test
   public void testTransferMoney_notExistedBankAccountFromId_BankAccountNotFoundException() throws  Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new TransferRequest(5L, 1L, "5.05"));
-    mockMvc.perform(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isNotFound())
         .andExpect(content().string("Could not find bank account with id:5"));
   }
@@ -255,7 +715,7 @@ public class BankAccountControllerTest {
   public void testTransferMoney_notExistedBankAccountToId_BankAccountNotFoundException() throws  Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new TransferRequest(3L, 5L, "5.05"));
-    mockMvc.perform(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isNotFound())
         .andExpect(content().string("Could not find bank account with id:5"));
   }
@@ -264,7 +724,7 @@ public class BankAccountControllerTest {
   public void testTransferMoney_blockedBankAccountFrom_BankAccountIllegalStateException() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new TransferRequest(2L, 1L, "5.05"));
-    mockMvc.perform(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isNotAcceptable())
         .andExpect(content().string("Bank account with id:2 blocked"));
   }
@@ -273,7 +733,7 @@ public class BankAccountControllerTest {
   public void testTransferMoney_blockedBankAccountTo_BankAccountIllegalStateException() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new TransferRequest(3L, 4L, "5.05"));
-    mockMvc.perform(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isNotAcceptable())
         .andExpect(content().string("Bank account with id:4 blocked"));
   }
@@ -282,7 +742,7 @@ public class BankAccountControllerTest {
   public void testTransferMoney_bankAccountFromWithZeroBalance_BankAccountWithdrawOperationException() throws Exception {
     ObjectMapper objectMapper = new ObjectMapper();
     String request = objectMapper.writeValueAsString(new TransferRequest(1L, 3L, "11.05"));
-    mockMvc.perform(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(put("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isPreconditionFailed())
         .andExpect(content().string("Could not withdraw money from bank account with id:1; amount:11.05"));
   }
@@ -292,7 +752,7 @@ public class BankAccountControllerTest {
     ObjectMapper objectMapper = new ObjectMapper();
     User user = new User(1L,"Vladidmir", "Dyakov");
     String request = objectMapper.writeValueAsString(user);
-    mockMvc.perform(post("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(post("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isCreated())
         .andExpect(jsonPath("$.id").value("1"));
   }
@@ -302,14 +762,14 @@ public class BankAccountControllerTest {
     ObjectMapper objectMapper = new ObjectMapper();
     User user = new User(3L,"Ivan", "Ivanov");
     String request = objectMapper.writeValueAsString(user);
-    mockMvc.perform(post("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+    performWrite(post("/bank/accounts").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
         .andExpect(status().isNotFound())
         .andExpect(content().string("Could not find bank account owner with id:3"));
   }
 
   @Test
   public void testBlock_activeBankAccount_blockedBankAccount() throws Exception {
-    mockMvc.perform(delete("/bank/accounts/1/block"))
+    performWrite(delete("/bank/accounts/1/block"))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.id").value("1"))
         .andExpect(jsonPath("$.status").value("BLOCKED"));
@@ -317,7 +777,7 @@ public class BankAccountControllerTest {
 
   @Test
   public void testBlock_blockedBankAccount_MethodNotAllowedResponse() throws Exception {
-    mockMvc.perform(delete("/bank/accounts/2/block"))
+    performWrite(delete("/bank/accounts/2/block"))
         .andExpect(status().isMethodNotAllowed())
         .andExpect(jsonPath("$.logref").value("Method not allowed"))
         .andExpect(jsonPath("$.message").value("You can't block bank account that is in the BLOCKED status"));
@@ -325,14 +785,14 @@ public class BankAccountControllerTest {
 
   @Test
   public void testBlock_notExistedBankAccountId_BankAccountNotFoundException() throws Exception {
-    mockMvc.perform(delete("/bank/accounts/5/block"))
+    performWrite(delete("/bank/accounts/5/block"))
         .andExpect(status().isNotFound())
         .andExpect(content().string("Could not find bank account with id:5"));
   }
 
   @Test
   public void testActivate_blockedBankAccount_activeBankAccount() throws Exception {
-    mockMvc.perform(put("/bank/accounts/2/activate"))
+    performWrite(put("/bank/accounts/2/activate"))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.id").value("2"))
         .andExpect(jsonPath("$.status").value("ACTIVE"));
@@ -340,7 +800,7 @@ public class BankAccountControllerTest {
 
   @Test
   public void testActivate_activeBankAccount_MethodNotAllowedResponse() throws Exception {
-    mockMvc.perform(put("/bank/accounts/1/activate"))
+    performWrite(put("/bank/accounts/1/activate"))
         .andExpect(status().isMethodNotAllowed())
         .andExpect(jsonPath("$.logref").value("Method not allowed"))
         .andExpect(jsonPath("$.message").value("You can't activate bank account that is in the ACTIVE status"));
@@ -348,14 +808,21 @@ public class BankAccountControllerTest {
 
   @Test
   public void testActivate_notExistedBankAccountId_BankAccountNotFoundException() throws Exception {
-    mockMvc.perform(put("/bank/accounts/5/activate"))
+    performWrite(put("/bank/accounts/5/activate"))
         .andExpect(status().isNotFound())
         .andExpect(content().string("Could not find bank account with id:5"));
   }
 
   @Test
-  public void testDeleteBankAccount_validBankAccountId_AllBankAccountsWithLinks() throws Exception {
-    mockMvc.perform(delete("/bank/accounts/1/delete"))
+  public void testDeleteBankAccount_validBankAccountId_NoContent() throws Exception {
+    performWrite(delete("/bank/accounts/1/delete"))
+        .andExpect(status().isNoContent())
+        .andExpect(content().string(""));
+  }
+
+  @Test
+  public void testDeleteBankAccount_validBankAccountIdAndFullView_AllBankAccountsWithLinks() throws Exception {
+    performWrite(delete("/bank/accounts/1/delete").param("view", "full"))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$._embedded.bankAccountList[0].id").value("1"))
         .andExpect(jsonPath("$._embedded.bankAccountList[1].id").value("2"))
@@ -366,9 +833,40 @@ public class BankAccountControllerTest {
 
   @Test
   public void testDeleteBankAccount_notExistedBankAccountId_BankAccountNotFoundException() throws Exception {
-    mockMvc.perform(delete("/bank/accounts/5/delete"))
+    performWrite(delete("/bank/accounts/5/delete"))
         .andExpect(status().isNotFound())
         .andExpect(content().string("Could not find bank account with id:5"));
 
   }
+
+  @Test
+  public void testDepositMoney_writeRejected_TooManyRequestsWithRetryAfter() throws Exception {
+    Mockito.when(service.depositMoney(eq(6L), any(BigDecimal.class))).thenThrow(new WriteRejectedException(2));
+    ObjectMapper objectMapper = new ObjectMapper();
+    String request = objectMapper.writeValueAsString(new DepositRequest("1.00"));
+    performWrite(put("/bank/accounts/6/deposit/money").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).content(request))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().string("Retry-After", "2"))
+        .andExpect(content().string("Too many pending write requests, retry after 2 s"));
+  }
+
+  //события отправляются потоками ленты, поэтому тело ответа дописывается после perform, строка id - раньше данных
+  private String awaitContent(MvcResult result, String expected) throws Exception {
+    long deadline = System.currentTimeMillis() + 5000;
+    String content = result.getResponse().getContentAsString();
+    while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      content = result.getResponse().getContentAsString();
+    }
+    assertTrue(content, content.contains(expected));
+    return content;
+  }
+
+  //операции записи возвращают CompletableFuture, ответ приходит во втором, асинхронном проходе
+  private ResultActions performWrite(RequestBuilder requestBuilder) throws Exception {
+    MvcResult result = mockMvc.perform(requestBuilder)
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    return mockMvc.perform(asyncDispatch(result));
+  }
 }
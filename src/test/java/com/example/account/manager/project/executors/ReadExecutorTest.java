@@ -0,0 +1,44 @@
+package com.example.account.manager.project.executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Test;
+
+public class ReadExecutorTest {
+
+  private final ReadExecutor executor = new ReadExecutor(1);
+
+  @After
+  public void tearDown() throws InterruptedException {
+    executor.close();
+  }
+
+  @Test
+  public void testAfter_completedWrite_readOnReadThread() throws Exception {
+    CompletableFuture<String> write = new CompletableFuture<>();
+    CompletableFuture<String> read = executor.after(write, () -> Thread.currentThread().getName());
+    assertFalse(read.isDone());
+    write.complete("written");
+    assertEquals("read-0", read.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testAfter_failedWrite_failureWithoutRead() throws Exception {
+    AtomicBoolean readCalled = new AtomicBoolean();
+    CompletableFuture<Object> write = new CompletableFuture<>();
+    write.completeExceptionally(new IllegalStateException("write failed"));
+    try {
+      executor.after(write, () -> readCalled.getAndSet(true)).get(1, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    assertFalse(readCalled.get());
+  }
+}
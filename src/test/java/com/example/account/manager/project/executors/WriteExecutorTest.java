@@ -0,0 +1,92 @@
+package com.example.account.manager.project.executors;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.account.manager.project.exceptions.WriteRejectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+public class WriteExecutorTest {
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private WriteExecutor executor;
+
+  @Before
+  public void setUp() {
+    StaticListableBeanFactory beans = new StaticListableBeanFactory();
+    beans.addBean("meterRegistry", registry);
+    executor = new WriteExecutor(1, 2, 1, 3, 1000, beans.getBeanProvider(MeterRegistry.class));
+    executor.start();
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    release.countDown();
+    executor.close();
+  }
+
+  @Test
+  public void testSubmit_queueFull_WriteRejectedException() throws InterruptedException {
+    CountDownLatch started = blockWorker();
+    started.await(5, TimeUnit.SECONDS);
+    executor.submit(WritePriority.LOW, () -> "low");
+    try {
+      executor.submit(WritePriority.LOW, () -> "rejected");
+      throw new AssertionError("Write over queue capacity was accepted");
+    } catch (WriteRejectedException e) {
+      assertEquals(3, e.getRetryAfterSeconds());
+    }
+    assertEquals(1.0, registry.counter("bank.accounts.writes.rejected", "priority", "low").count(), 0.0);
+    assertEquals(1, executor.size(WritePriority.LOW));
+  }
+
+  @Test
+  public void testSubmit_bothPriorities_highFirst() throws Exception {
+    CountDownLatch started = blockWorker();
+    started.await(5, TimeUnit.SECONDS);
+    List<String> order = new CopyOnWriteArrayList<>();
+    CompletableFuture<Boolean> low = executor.submit(WritePriority.LOW, () -> order.add("low"));
+    CompletableFuture<Boolean> high = executor.submit(WritePriority.HIGH, () -> order.add("high"));
+    release.countDown();
+    CompletableFuture.allOf(low, high).get(5, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList("high", "low"), order);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSubmit_operationFails_futureCompletedExceptionally() throws Throwable {
+    try {
+      executor.submit(WritePriority.HIGH, () -> {
+        throw new IllegalStateException("failed");
+      }).get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    }
+  }
+
+  //единственный поток занят, пока не будет отпущен release
+  private CountDownLatch blockWorker() {
+    CountDownLatch started = new CountDownLatch(1);
+    executor.submit(WritePriority.HIGH, () -> {
+      started.countDown();
+      try {
+        return release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    });
+    return started;
+  }
+}
@@ -0,0 +1,90 @@
+package com.example.account.manager.project.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.account.manager.project.entities.BankAccountTransaction;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.services.BankAccountQueryService;
+import com.example.account.manager.project.services.BankAccountService;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = "history.batch-size=2")
+@ComponentScan({"com.example.account.manager.project.services", "com.example.account.manager.project.oplog",
+    "com.example.account.manager.project.history"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+public class TransactionHistoryWriterTest {
+
+  @Autowired
+  UserRepository users;
+
+  @Autowired
+  BankAccountService bankAccountService;
+
+  @Autowired
+  BankAccountQueryService queries;
+
+  @Autowired
+  TransactionHistoryWriter history;
+
+  @Test
+  public void testOnOperation_depositWithdrawTransfer_entriesForBothAccounts() throws InterruptedException {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    Long bankAccountIdFrom = bankAccountService.createBankAccount(user.getId()).getId();
+    Long bankAccountIdTo = bankAccountService.createBankAccount(user.getId()).getId();
+    bankAccountService.depositMoney(bankAccountIdFrom, new BigDecimal("10.00"));
+    bankAccountService.withdrawMoney(bankAccountIdFrom, new BigDecimal("1.50"));
+    bankAccountService.transferMoney(bankAccountIdFrom, bankAccountIdTo, new BigDecimal("2.25"));
+    bankAccountService.blockBankAccount(bankAccountIdTo);
+    history.flush();
+
+    List<BankAccountTransaction> from = queries.findTransactions(bankAccountIdFrom, 0, Long.MAX_VALUE, 0, 10);
+    assertEquals(3, from.size());
+    assertEquals(BankAccountOperation.DEPOSIT, from.get(0).getOperation());
+    assertEquals(new BigDecimal("-1.50"), from.get(1).getAmount());
+    assertEquals(new BigDecimal("6.25"), from.get(2).getBalance());
+    assertEquals(bankAccountIdTo, from.get(2).getCounterpartyId());
+
+    List<BankAccountTransaction> to = queries.findTransactions(bankAccountIdTo, 0, Long.MAX_VALUE, 0, 10);
+    assertEquals(1, to.size());
+    assertEquals(new BigDecimal("2.25"), to.get(0).getAmount());
+    assertEquals(bankAccountIdFrom, to.get(0).getCounterpartyId());
+  }
+
+  @Test
+  public void testFindTransactions_keysetPages_eachEntryOnce() throws InterruptedException {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    Long bankAccountId = bankAccountService.createBankAccount(user.getId()).getId();
+    for (int i = 1; i <= 5; i++) {
+      bankAccountService.depositMoney(bankAccountId, new BigDecimal(i));
+    }
+    history.flush();
+
+    List<BankAccountTransaction> first = queries.findTransactions(bankAccountId, 0, Long.MAX_VALUE, 0, 2);
+    BankAccountTransaction last = first.get(1);
+    List<BankAccountTransaction> second = queries.findTransactions(bankAccountId, last.getCreatedAt(), Long.MAX_VALUE, last.getId(), 10);
+    assertEquals(2, first.size());
+    assertEquals(3, second.size());
+    assertEquals(new BigDecimal("3.00"), second.get(0).getAmount());
+    assertEquals(new BigDecimal("15.00"), second.get(2).getBalance());
+
+    long after = second.get(2).getCreatedAt() + 1;
+    assertTrue(queries.findTransactions(bankAccountId, after, Long.MAX_VALUE, 0, 10).isEmpty());
+  }
+}
@@ -0,0 +1,92 @@
+package com.example.account.manager.project.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BankAccountJournalTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReplay_operationsAcrossSegments_rebuiltBalances() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    //по три записи в сегменте, чтобы проверить переход на следующий
+    BankAccountJournal journal = new BankAccountJournal(directory, 3 * JournalRecord.SIZE, TimeUnit.MILLISECONDS.toNanos(1));
+    journal.open();
+    journal.append(BankAccountOperationEvent.of(BankAccountOperation.CREATED, 1L, null, new BigDecimal("0.00")));
+    journal.append(BankAccountOperationEvent.of(BankAccountOperation.CREATED, 2L, null, new BigDecimal("0.00")));
+    journal.append(BankAccountOperationEvent.of(BankAccountOperation.DEPOSIT, 1L, new BigDecimal("10.5"), new BigDecimal("10.5")));
+    journal.append(BankAccountOperationEvent.transfer(1L, 2L, new BigDecimal("3.25"), new BigDecimal("7.25"), new BigDecimal("3.25")));
+    journal.close();
+
+    journal = new BankAccountJournal(directory, 3 * JournalRecord.SIZE, TimeUnit.MILLISECONDS.toNanos(1));
+    journal.open();
+    assertEquals(5L, journal.append(BankAccountOperationEvent.of(BankAccountOperation.WITHDRAWAL, 2L, new BigDecimal("1.001"), null)));
+    journal.append(BankAccountOperationEvent.of(BankAccountOperation.BLOCKED, 2L, null, null));
+    journal.close();
+
+    Map<Long, BigDecimal> balances = new HashMap<>();
+    assertEquals(6L, JournalReplay.replay(directory, balances));
+    assertEquals(new BigDecimal("7.25"), balances.get(1L));
+    assertEquals(new BigDecimal("2.249"), balances.get(2L));
+
+    List<JournalRecord> tail = new ArrayList<>();
+    JournalReader.read(directory, 4, tail::add);
+    assertEquals(2, tail.size());
+    assertEquals(BankAccountOperation.WITHDRAWAL, tail.get(0).getOperation());
+    assertEquals(new BigDecimal("1.001"), tail.get(0).getAmount());
+  }
+
+  @Test
+  public void testRestore_snapshotAndJournalTail_sameStateAsFullReplay() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    BankAccountJournal journal = new BankAccountJournal(directory, 4 * JournalRecord.SIZE, TimeUnit.MILLISECONDS.toNanos(1));
+    journal.open();
+    journal.append(BankAccountOperationEvent.created(1L, 10L, new BigDecimal("0.00")));
+    journal.append(BankAccountOperationEvent.created(2L, 20L, new BigDecimal("0.00")));
+    journal.append(BankAccountOperationEvent.of(BankAccountOperation.DEPOSIT, 1L, new BigDecimal("100.00"), null));
+    JournalState state = new JournalState();
+    state.catchUp(directory);
+    Path first = state.write(directory);
+
+    journal.append(BankAccountOperationEvent.transfer(1L, 2L, new BigDecimal("40.00"), null, null));
+    journal.append(BankAccountOperationEvent.of(BankAccountOperation.BLOCKED, 2L, null, null));
+    journal.append(BankAccountOperationEvent.created(3L, 10L, new BigDecimal("0.00")));
+    state.catchUp(directory);
+    Path second = state.write(directory);
+    journal.append(BankAccountOperationEvent.of(BankAccountOperation.DELETED, 3L, null, null));
+    journal.append(BankAccountOperationEvent.of(BankAccountOperation.WITHDRAWAL, 1L, new BigDecimal("10.00"), null));
+    journal.close();
+
+    JournalState restored = JournalState.restore(directory);
+    assertEquals(8L, restored.getSequence());
+    assertEquals(2, restored.getAccounts().size());
+    assertEquals(new AccountState(1L, 10L, new BigDecimal("50.00"), BankAccountStatus.ACTIVE), restored.getAccounts().get(1L));
+    assertEquals(new AccountState(2L, 20L, new BigDecimal("40.00"), BankAccountStatus.BLOCKED), restored.getAccounts().get(2L));
+    assertFalse(restored.getAccounts().containsKey(3L));
+
+    //повреждённый последний снимок пропускается, остаток журнала проигрывается от предыдущего
+    byte[] corrupted = Files.readAllBytes(second);
+    corrupted[corrupted.length - 10] ^= 1;
+    Files.write(second, corrupted);
+    assertEquals(3L, JournalState.latestSnapshot(directory).getSequence());
+    assertEquals(restored.getAccounts(), JournalState.restore(directory).getAccounts());
+    assertEquals(first.getFileName().toString(), JournalState.snapshotName(3));
+  }
+}
@@ -0,0 +1,151 @@
+package com.example.account.manager.project.ledger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.exceptions.LedgerPersistenceException;
+import com.example.account.manager.project.oplog.OperationLog;
+import com.example.account.manager.project.responses.TransferReceipt;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class LedgerTest {
+
+  private static final long TIMEOUT_MILLIS = 200;
+
+  private Ledger ledger;
+  private LedgerShard shardFrom;
+  private LedgerShard shardTo;
+  private CountDownLatch resumeFrom;
+  private CountDownLatch resumeTo;
+
+  //счета 1 и 2 в разных сегментах
+  @Before
+  public void setUp() {
+    LedgerPersister persister = new LedgerPersister(Mockito.mock(JdbcTemplate.class), Mockito.mock(TransactionTemplate.class), 1024, 100, 0);
+    ledger = new Ledger(2, 4, persister, Mockito.mock(OperationLog.class), false, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    User user = new User(1L, "Vladimir", "Dyakov");
+    ledger.load(new BankAccount(1L, new BigDecimal("10.00"), BankAccountStatus.ACTIVE, user));
+    ledger.load(new BankAccount(2L, new BigDecimal("0.00"), BankAccountStatus.ACTIVE, user));
+    ledger.start();
+    shardFrom = ledger.shardOf(1L);
+    shardTo = ledger.shardOf(2L);
+  }
+
+  @After
+  public void tearDown() {
+    resume(resumeFrom);
+    resume(resumeTo);
+    ledger.stop();
+  }
+
+  @Test
+  public void testTransfer_receiverQueueFull_debitRefunded() throws Exception {
+    CompletableFuture<TransferReceipt> transfer = transferAfterCheck();
+    resumeTo = pause(shardTo);
+    while (shardTo.submit(LedgerCommand.of(LedgerCommand.Type.CHECK_ACTIVE, 2L), System.nanoTime())) {
+      //очередь сегмента получателя заполняется до отказа
+    }
+    resume(resumeFrom);
+
+    try {
+      transfer.get(10, TimeUnit.SECONDS);
+      fail("Transfer with a full receiver queue must fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TransactionTimedOutException);
+    }
+    resume(resumeTo);
+    assertEquals(new BigDecimal("10.00"), ledger.block(1L).getBalance());
+    assertEquals(new BigDecimal("0.00"), ledger.block(2L).getBalance());
+  }
+
+  @Test
+  public void testTransfer_creditQueuedLongerThanTimeout_transferSettled() throws Exception {
+    CompletableFuture<TransferReceipt> transfer = transferAfterCheck();
+    resumeTo = pause(shardTo);
+    resume(resumeFrom);
+    awaitPending(shardTo);
+    Thread.sleep(TIMEOUT_MILLIS * 2);
+    assertFalse(transfer.isDone());
+    resume(resumeTo);
+
+    TransferReceipt receipt = transfer.get(10, TimeUnit.SECONDS);
+    assertEquals(new BigDecimal("5.00"), receipt.getBalanceFrom());
+    assertEquals(new BigDecimal("5.00"), receipt.getBalanceTo());
+    assertEquals(new BigDecimal("5.00"), ledger.block(2L).getBalance());
+  }
+
+  @Test
+  public void testDeposit_persistenceFailsAfterRetries_depositsRejected() {
+    TransactionTemplate failing = Mockito.mock(TransactionTemplate.class);
+    Mockito.when(failing.execute(Mockito.any())).thenThrow(new IllegalStateException("database is down"));
+    LedgerPersister persister = new LedgerPersister(Mockito.mock(JdbcTemplate.class), failing, 1024, 100, 2);
+    Ledger durableLedger = new Ledger(2, 4, persister, Mockito.mock(OperationLog.class), true, 10, TimeUnit.SECONDS);
+    durableLedger.load(new BankAccount(1L, new BigDecimal("10.00"), BankAccountStatus.ACTIVE, new User(1L, "Vladimir", "Dyakov")));
+    durableLedger.start();
+    try {
+      try {
+        durableLedger.deposit(1L, BigDecimal.ONE);
+        fail("Deposit that could not be persisted must fail");
+      } catch (LedgerPersistenceException e) {
+        assertEquals("Ledger could not persist bank account with id:1", e.getMessage());
+      }
+      assertTrue(durableLedger.isPersistenceFailed());
+      try {
+        durableLedger.deposit(1L, BigDecimal.ONE);
+        fail("Ledger with failed persistence must reject deposits");
+      } catch (LedgerPersistenceException e) {
+        assertEquals("Ledger persistence failed, bank accounts could not be changed", e.getMessage());
+      }
+      Mockito.verify(failing, Mockito.times(3)).execute(Mockito.any());
+    } finally {
+      durableLedger.stop();
+    }
+  }
+
+  //перевод проходит проверку получателя и ждёт, пока сегмент отправителя выполнит списание
+  private CompletableFuture<TransferReceipt> transferAfterCheck() throws InterruptedException {
+    resumeFrom = pause(shardFrom);
+    CompletableFuture<TransferReceipt> transfer = CompletableFuture.supplyAsync(
+        () -> ledger.transfer(1L, 2L, new BigDecimal("5.00")));
+    awaitPending(shardFrom);
+    return transfer;
+  }
+
+  private static CountDownLatch pause(LedgerShard shard) throws InterruptedException {
+    CountDownLatch paused = new CountDownLatch(1);
+    CountDownLatch resume = new CountDownLatch(1);
+    assertTrue(shard.submit(LedgerCommand.pause(paused, resume), Long.MAX_VALUE));
+    assertTrue(paused.await(10, TimeUnit.SECONDS));
+    return resume;
+  }
+
+  private static void resume(CountDownLatch resume) {
+    if (resume != null) {
+      resume.countDown();
+    }
+  }
+
+  private static void awaitPending(LedgerShard shard) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!shard.hasPending() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertTrue(shard.hasPending());
+  }
+}
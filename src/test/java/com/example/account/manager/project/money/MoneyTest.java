@@ -0,0 +1,50 @@
+package com.example.account.manager.project.money;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.example.account.manager.project.exceptions.BankAccountAmountException;
+import java.math.BigDecimal;
+import org.junit.Test;
+
+public class MoneyTest {
+
+  @Test
+  public void testParseMinorUnits_validAmounts_exactCents() {
+    assertEquals(1000L, Money.parseMinorUnits("10"));
+    assertEquals(1050L, Money.parseMinorUnits("10.5"));
+    assertEquals(1001L, Money.parseMinorUnits("10.01"));
+    assertEquals(50L, Money.parseMinorUnits(".5"));
+    assertEquals(-1L, Money.parseMinorUnits("-0.01"));
+    assertEquals(Long.MAX_VALUE, Money.parseMinorUnits("92233720368547758.07"));
+    assertEquals(new BigDecimal("10.50"), Money.parse("10.5"));
+  }
+
+  @Test
+  public void testParseMinorUnits_invalidAmounts_rejected() {
+    for (String amount : new String[] {null, "", "-", ".", "1.001", "1,5", "1e3", "10.5.0", "92233720368547758.08"}) {
+      try {
+        Money.parseMinorUnits(amount);
+        fail("Accepted " + amount);
+      } catch (BankAccountAmountException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void testToMinorUnits_decimal_exactOrRejected() {
+    assertEquals(1000L, Money.toMinorUnits(new BigDecimal("10")));
+    assertEquals(1010L, Money.toMinorUnits(new BigDecimal("10.100")));
+    assertEquals(new BigDecimal("10.10"), Money.toDecimal(1010L));
+    try {
+      Money.toMinorUnits(new BigDecimal("0.001"));
+      fail();
+    } catch (BankAccountAmountException expected) {
+    }
+  }
+
+  @Test(expected = BankAccountAmountException.class)
+  public void testAdd_overflow_rejected() {
+    Money.add(Long.MAX_VALUE, 1);
+  }
+}
@@ -0,0 +1,100 @@
+package com.example.account.manager.project.oplog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.example.account.manager.project.events.BankAccountOperation;
+import com.example.account.manager.project.events.BankAccountOperationEvent;
+import com.example.account.manager.project.requests.BatchTransferMode;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+public class OperationLogTest {
+
+  private final Logger logger = (Logger) LoggerFactory.getLogger("bank.operations");
+  private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+  @Before
+  public void setUp() {
+    appender.start();
+    logger.addAppender(appender);
+  }
+
+  @After
+  public void tearDown() {
+    logger.detachAppender(appender);
+  }
+
+  @Test
+  public void testRecord_manyThreads_allWrittenInOrderPerThread() throws Exception {
+    OperationLog operationLog = operationLog(1024);
+    operationLog.start();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      long bankAccountId = t + 1;
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 100; i++) {
+          operationLog.record(OperationLogType.DEPOSIT, bankAccountId, BigDecimal.valueOf(i, 2));
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    operationLog.record(OperationLogType.TRANSFER, 1, 2, new BigDecimal("3.25"));
+    operationLog.record(OperationLogType.BATCH_ROLLED_BACK, 7, BatchTransferMode.ALL_OR_NOTHING);
+    operationLog.close();
+
+    List<String> lines = appender.list.stream().map(ILoggingEvent::getFormattedMessage).collect(Collectors.toList());
+    assertEquals(0, operationLog.getDropped());
+    assertEquals(402, lines.size());
+    List<String> first = lines.stream().filter(line -> line.startsWith("DEPOSIT account=1 ")).collect(Collectors.toList());
+    assertEquals(100, first.size());
+    assertTrue(first.get(99).startsWith("DEPOSIT account=1 amount=0.99 time="));
+    assertTrue(lines.get(400).startsWith("TRANSFER from=1 to=2 amount=3.25 time="));
+    assertTrue(lines.get(401).startsWith("BATCH_ROLLED_BACK transfers=7 mode=ALL_OR_NOTHING time="));
+  }
+
+  @Test
+  public void testRecord_queueFull_droppedWithoutBlocking() throws Exception {
+    //фоновый поток не запущен, очередь никто не разбирает
+    OperationLog operationLog = operationLog(4);
+    for (int i = 0; i < 6; i++) {
+      operationLog.record(OperationLogType.BLOCKED, i);
+    }
+    assertEquals(2, operationLog.getDropped());
+    assertEquals(0, appender.list.size());
+  }
+
+  @Test
+  public void testOnOperation_committedOperations_recordedWithOwnerAndCounterparty() throws Exception {
+    OperationLog operationLog = operationLog(16);
+    operationLog.start();
+    operationLog.onOperation(BankAccountOperationEvent.created(1L, 10L, new BigDecimal("0.00")));
+    operationLog.onOperation(BankAccountOperationEvent.transfer(1L, 2L, new BigDecimal("3.25"), new BigDecimal("0.00"),
+        new BigDecimal("3.25")));
+    operationLog.onOperation(BankAccountOperationEvent.of(BankAccountOperation.DELETED, 1L, null, null));
+    operationLog.close();
+
+    List<String> lines = appender.list.stream().map(ILoggingEvent::getFormattedMessage).collect(Collectors.toList());
+    assertEquals(3, lines.size());
+    assertTrue(lines.get(0).startsWith("CREATED account=1 owner=10 time="));
+    assertTrue(lines.get(1).startsWith("TRANSFER from=1 to=2 amount=3.25 time="));
+    assertTrue(lines.get(2).startsWith("DELETED account=1 time="));
+  }
+
+  private static OperationLog operationLog(int capacity) {
+    return new OperationLog(true, capacity, 64, 1, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+  }
+}
@@ -0,0 +1,449 @@
+package com.example.account.manager.project.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.exceptions.BankAccountIllegalStateException;
+import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import com.example.account.manager.project.exceptions.BankAccountStatusException;
+import com.example.account.manager.project.exceptions.BankAccountWithdrawOperationException;
+import com.example.account.manager.project.exceptions.UserNotFoundException;
+import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.requests.BatchTransferMode;
+import com.example.account.manager.project.requests.OwnerAccounts;
+import com.example.account.manager.project.requests.TransferRequest;
+import com.example.account.manager.project.responses.BatchTransferResponse;
+import com.example.account.manager.project.responses.TransferReceipt;
+import com.example.account.manager.project.responses.TransferStatus;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+//общие проверки для всех реализаций BankAccountService
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ComponentScan({"com.example.account.manager.project.services", "com.example.account.manager.project.oplog"})
+public abstract class AbstractBankAccountServiceTest {
+
+  @Autowired
+  UserRepository users;
+
+  @Autowired
+  BankAccountRepository accounts;
+
+  @Autowired
+  BankAccountService bankAccountService;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  @DirtiesContext
+  public void testCreateBankAccount_validUser_validBankAccount() {
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    assertNotNull(bankAccount.getId());
+  }
+
+  @Test
+  public void testCreateBankAccount_invalidUser_UserNotFoundException() {
+    thrown.expect(UserNotFoundException.class);
+    thrown.expectMessage("Could not find bank account owner with id:1");
+    bankAccountService.createBankAccount(1L);
+  }
+
+  @Test
+  @DirtiesContext
+  public void testCreateBankAccounts_manyOwners_accountsWithDistinctIds() {
+    User first = users.save(new User("Vladimir", "Dyakov"));
+    User second = users.save(new User("Daria", "Vasilueva"));
+    List<BankAccount> created = bankAccountService.createBankAccounts(Arrays.asList(
+        new OwnerAccounts(first.getId(), 120), new OwnerAccounts(second.getId(), 3)));
+    assertEquals(123, created.size());
+    assertEquals(123, created.stream().map(BankAccount::getId).distinct().count());
+    assertEquals(first.getId(), created.get(119).getUser().getId());
+    assertEquals(second.getId(), created.get(120).getUser().getId());
+    assertEquals(new BigDecimal("0.00"), accounts.readById(created.get(122).getId()).get().getBalance());
+  }
+
+  @Test
+  public void testCreateBankAccounts_invalidUser_UserNotFoundException() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    thrown.expect(UserNotFoundException.class);
+    thrown.expectMessage("Could not find bank account owner with id:" + (user.getId() + 1000));
+    bankAccountService.createBankAccounts(Arrays.asList(new OwnerAccounts(user.getId(), 2), new OwnerAccounts(user.getId() + 1000, 1)));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testDeleteBankAccount_validBankAccount_void() {
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    Long bankAccountId = bankAccount.getId();
+    bankAccountService.deleteBankAccount(bankAccountId);
+    assertEquals(false, accounts.findById(bankAccountId).isPresent());
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testDepositMoney_validBankAccountAndAmount_validBankAccount() {
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccount = bankAccountService.depositMoney(bankAccount.getId(), new BigDecimal("10.5"));
+    assertEquals(true, bankAccount.getBalance().doubleValue() == 10.5);
+  }
+
+  @Test
+  public void testDepositMoney_invalidBankAccount_BankAccountNotFoundException() {
+    thrown.expect(BankAccountNotFoundException.class);
+    thrown.expectMessage("Could not find bank account with id:1");
+    bankAccountService.depositMoney(1L, new BigDecimal("10.5"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testDepositMoney_invalidBankAccount_BankAccountIllegalStateException() {
+    thrown.expect(BankAccountIllegalStateException.class);
+    thrown.expectMessage("Bank account with id:1 blocked");
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.blockBankAccount(bankAccount.getId());
+    bankAccountService.depositMoney(bankAccount.getId(), new BigDecimal("10.5"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testWithdrawMoney_validBankAccountAndAmount_validBankAccount() {
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.depositMoney(bankAccount.getId(), new BigDecimal("50.0"));
+    bankAccount = bankAccountService.withdrawMoney(bankAccount.getId(), new BigDecimal("10.5"));
+    assertTrue(bankAccount.getBalance().doubleValue() == 39.5);
+  }
+
+  @Test
+  public void testWithdrawMoney_invalidBankAccount_BankAccountNotFoundException() {
+    thrown.expect(BankAccountNotFoundException.class);
+    thrown.expectMessage("Could not find bank account with id:1");
+    bankAccountService.withdrawMoney(1L, new BigDecimal("10.5"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testWithdrawMoney_invalidBankAccount_BankAccountIllegalStateException() {
+    thrown.expect(BankAccountIllegalStateException.class);
+    thrown.expectMessage("Bank account with id:1 blocked");
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.blockBankAccount(bankAccount.getId());
+    bankAccountService.withdrawMoney(bankAccount.getId(), new BigDecimal("10.5"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testWithdrawMoney_validBankAccount_BankAccountWithdrawOperationException() {
+    thrown.expect(BankAccountWithdrawOperationException.class);
+    thrown.expectMessage("Could not withdraw money from bank account with id:1; amount:10.5");
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.withdrawMoney(bankAccount.getId(), new BigDecimal("10.5"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testBlockBankAccount_validActiveBankAccount_vakidBlockedBankAccount() {
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccount = bankAccountService.blockBankAccount(bankAccount.getId());
+    assertEquals(BankAccountStatus.BLOCKED, bankAccount.getStatus());
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testBlockBankAccount_blockedBankAccount_BankAccountStatusException() {
+    thrown.expect(BankAccountStatusException.class);
+    thrown.expectMessage("You can't block bank account that is in the BLOCKED status");
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.blockBankAccount(bankAccount.getId());
+    bankAccountService.blockBankAccount(bankAccount.getId());
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testActivateBankAccount_activeBankAccount_BankAccountStatusException() {
+    thrown.expect(BankAccountStatusException.class);
+    thrown.expectMessage("You can't activate bank account that is in the ACTIVE status");
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.activateBankAccount(bankAccount.getId());
+  }
+
+  @Test
+  public void testBlockBankAccount_invalidBankAccount_BankAccountNotFoundException() {
+    thrown.expect(BankAccountNotFoundException.class);
+    thrown.expectMessage("Could not find bank account with id:1");
+    bankAccountService.blockBankAccount(1L);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testActivateBankAccount_validBlockedBankAccount_validActiveBankAccount() {
+    User user = new User("Vladimir", "Dyakov");
+    user = users.save(user);
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccount = bankAccountService.blockBankAccount(bankAccount.getId());
+    bankAccount = bankAccountService.activateBankAccount(bankAccount.getId());
+    assertEquals(BankAccountStatus.ACTIVE, bankAccount.getStatus());
+  }
+
+  @Test
+  public void testActivateBankAccount_invalidBankAccount_BankAccountNotFoundException() {
+    thrown.expect(BankAccountNotFoundException.class);
+    thrown.expectMessage("Could not find bank account with id:1");
+    bankAccountService.activateBankAccount(1L);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_validBankAccountFromAndValidBankAccountTo_void() {
+    User user1 = new User("Vladimir", "Dyakov");
+    user1 = users.save(user1);
+    User user2 = new User("Daria", "Vasilueva");
+    user2 = users.save(user2);
+    BankAccount firstUserBankAccount = bankAccountService.createBankAccount(user1.getId());
+    firstUserBankAccount = bankAccountService.depositMoney(firstUserBankAccount.getId(), new BigDecimal("20.10"));
+    BankAccount secondUserBankAccount = bankAccountService.createBankAccount(user2.getId());
+    bankAccountService.transferMoney(firstUserBankAccount.getId(), secondUserBankAccount.getId(), new BigDecimal("10.3"));
+    firstUserBankAccount = accounts.findById(firstUserBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    secondUserBankAccount = accounts.findById(secondUserBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    assertTrue(firstUserBankAccount.getBalance().doubleValue() == 9.8);
+    assertTrue(secondUserBankAccount.getBalance().doubleValue() == 10.3);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_validBankAccountFromAndValidBankAccountTo_TransferReceiptWithNewBalances() {
+    User user1 = new User("Vladimir", "Dyakov");
+    user1 = users.save(user1);
+    User user2 = new User("Daria", "Vasilueva");
+    user2 = users.save(user2);
+    BankAccount firstUserBankAccount = bankAccountService.createBankAccount(user1.getId());
+    bankAccountService.depositMoney(firstUserBankAccount.getId(), new BigDecimal("20.10"));
+    BankAccount secondUserBankAccount = bankAccountService.createBankAccount(user2.getId());
+    TransferReceipt receipt = bankAccountService.transferMoney(firstUserBankAccount.getId(), secondUserBankAccount.getId(), new BigDecimal("10.3"));
+    assertEquals(firstUserBankAccount.getId(), receipt.getBankAccountIdFrom());
+    assertEquals(secondUserBankAccount.getId(), receipt.getBankAccountIdTo());
+    assertTrue(receipt.getAmount().doubleValue() == 10.3);
+    assertTrue(receipt.getBalanceFrom().doubleValue() == 9.8);
+    assertTrue(receipt.getBalanceTo().doubleValue() == 10.3);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_validBankAccountToWithALagerIdThanThatValidBankAccountFrom_void() {
+    User user1 = new User("Vladimir", "Dyakov");
+    user1 = users.save(user1);
+    User user2 = new User("Daria", "Vasilueva");
+    user2 = users.save(user2);
+    BankAccount firstUserBankAccount = bankAccountService.createBankAccount(user1.getId());
+    BankAccount secondUserBankAccount = bankAccountService.createBankAccount(user2.getId());
+    secondUserBankAccount = bankAccountService.depositMoney(secondUserBankAccount.getId(), new BigDecimal("20.10"));
+    bankAccountService.transferMoney(secondUserBankAccount.getId(), firstUserBankAccount.getId(), new BigDecimal("10.3"));
+    firstUserBankAccount = accounts.findById(firstUserBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    secondUserBankAccount = accounts.findById(secondUserBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    assertTrue(firstUserBankAccount.getBalance().doubleValue() == 10.3);
+    assertTrue(secondUserBankAccount.getBalance().doubleValue() == 9.8);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_invalidBankAccountFromAndValidBankAccountTo_BankAccountNotFoundException() {
+    thrown.expect(BankAccountNotFoundException.class);
+    thrown.expectMessage("Could not find bank account with id:2");
+    User user2 = new User("Daria", "Vasilueva");
+    user2 = users.save(user2);
+    BankAccount secondUserBankAccount = bankAccountService.createBankAccount(user2.getId());
+    bankAccountService.transferMoney(2L, secondUserBankAccount.getId(), new BigDecimal("10.3"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_validBankAccountFromAndInvalidBankAccountTo_BankAccountNotFoundException() {
+    thrown.expect(BankAccountNotFoundException.class);
+    thrown.expectMessage("Could not find bank account with id:2");
+    User user1 = new User("Vladimir", "Dyakov");
+    user1 = users.save(user1);
+    BankAccount firstUserBankAccount = bankAccountService.createBankAccount(user1.getId());
+    bankAccountService.transferMoney(firstUserBankAccount.getId(), 2L, new BigDecimal("10.3"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_validBlockedBankAccountFromAndValidActiveBankAccountTo_BankAccountIllegalStateException() {
+    thrown.expect(BankAccountIllegalStateException.class);
+    thrown.expectMessage("Bank account with id:1 blocked");
+    User user1 = new User("Vladimir", "Dyakov");
+    user1 = users.save(user1);
+    User user2 = new User("Daria", "Vasilueva");
+    user2 = users.save(user2);
+    BankAccount firstUserBankAccount = bankAccountService.createBankAccount(user1.getId());
+    firstUserBankAccount = bankAccountService.blockBankAccount(firstUserBankAccount.getId());
+    BankAccount secondUserBankAccount = bankAccountService.createBankAccount(user2.getId());
+    bankAccountService.transferMoney(firstUserBankAccount.getId(), secondUserBankAccount.getId(), new BigDecimal("10.3"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_validActiveBankAccountFromAndValidBlockedBankAccountTo_BankAccountIllegalStateException() {
+    thrown.expect(BankAccountIllegalStateException.class);
+    thrown.expectMessage("Bank account with id:2 blocked");
+    User user1 = new User("Vladimir", "Dyakov");
+    user1 = users.save(user1);
+    User user2 = new User("Daria", "Vasilueva");
+    user2 = users.save(user2);
+    BankAccount firstUserBankAccount = bankAccountService.createBankAccount(user1.getId());
+    BankAccount secondUserBankAccount = bankAccountService.createBankAccount(user2.getId());
+    secondUserBankAccount = bankAccountService.blockBankAccount(secondUserBankAccount.getId());
+    bankAccountService.transferMoney(firstUserBankAccount.getId(), secondUserBankAccount.getId(), new BigDecimal("10.3"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_validBankAccountFromAndValidBankAccountTo_BankAccountWithdrawOperationException() {
+    thrown.expect(BankAccountWithdrawOperationException.class);
+    thrown.expectMessage("Could not withdraw money from bank account with id:1; amount:10.3");
+    User user1 = new User("Vladimir", "Dyakov");
+    user1 = users.save(user1);
+    User user2 = new User("Daria", "Vasilueva");
+    user2 = users.save(user2);
+    BankAccount firstUserBankAccount = bankAccountService.createBankAccount(user1.getId());
+    BankAccount secondUserBankAccount = bankAccountService.createBankAccount(user2.getId());
+    bankAccountService.transferMoney(firstUserBankAccount.getId(), secondUserBankAccount.getId(), new BigDecimal("10.3"));
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_validBankAccountFromAndValidBankAccountToWithTheSameOwner_void() {
+    User owner = new User("Vladimir", "Dyakov");
+    owner = users.save(owner);
+    BankAccount firstUserBankAccount = bankAccountService.createBankAccount(owner.getId());
+    firstUserBankAccount = bankAccountService.depositMoney(firstUserBankAccount.getId(), new BigDecimal("20.10"));
+    BankAccount secondUserBankAccount = bankAccountService.createBankAccount(owner.getId());
+    bankAccountService.transferMoney(firstUserBankAccount.getId(), secondUserBankAccount.getId(), new BigDecimal("10.3"));
+    firstUserBankAccount = accounts.findById(firstUserBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    secondUserBankAccount = accounts.findById(secondUserBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    assertTrue(firstUserBankAccount.getBalance().doubleValue() == 9.8);
+    assertTrue(secondUserBankAccount.getBalance().doubleValue() == 10.3);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_validSameBankAccounts_void() {
+    User owner = new User("Vladimir", "Dyakov");
+    owner = users.save(owner);
+    BankAccount bankAccount = bankAccountService.createBankAccount(owner.getId());
+    bankAccount = bankAccountService.depositMoney(bankAccount.getId(), new BigDecimal("20.10"));
+    bankAccountService.transferMoney(bankAccount.getId(), bankAccount.getId(), new BigDecimal("10.3"));
+    bankAccount = accounts.findById(bankAccount.getId()).orElseThrow(IllegalStateException::new);
+    assertTrue(bankAccount.getBalance().doubleValue() == 20.1);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoneyBatch_allOrNothingWithFailedTransfer_noTransferApplied() {
+    User owner = new User("Vladimir", "Dyakov");
+    owner = users.save(owner);
+    BankAccount firstBankAccount = bankAccountService.createBankAccount(owner.getId());
+    bankAccountService.depositMoney(firstBankAccount.getId(), new BigDecimal("20.10"));
+    BankAccount secondBankAccount = bankAccountService.createBankAccount(owner.getId());
+    BatchTransferResponse response = bankAccountService.transferMoney(Arrays.asList(
+        new TransferRequest(firstBankAccount.getId(), secondBankAccount.getId(), "10.3"),
+        new TransferRequest(secondBankAccount.getId(), 100L, "1.0"),
+        new TransferRequest(firstBankAccount.getId(), secondBankAccount.getId(), "1.0")
+    ), BatchTransferMode.ALL_OR_NOTHING);
+    assertFalse(response.isCommitted());
+    assertEquals(TransferStatus.ABORTED, response.getResults().get(0).getStatus());
+    assertEquals(TransferStatus.FAILED, response.getResults().get(1).getStatus());
+    assertEquals("Could not find bank account with id:100", response.getResults().get(1).getMessage());
+    assertEquals(TransferStatus.ABORTED, response.getResults().get(2).getStatus());
+    assertEquals(new BigDecimal("1.00"), response.getResults().get(2).getAmount());
+    firstBankAccount = accounts.findById(firstBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    secondBankAccount = accounts.findById(secondBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    assertTrue(firstBankAccount.getBalance().doubleValue() == 20.1);
+    assertTrue(secondBankAccount.getBalance().doubleValue() == 0);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoneyBatch_bestEffortWithFailedTransfer_otherTransfersApplied() {
+    User owner = new User("Vladimir", "Dyakov");
+    owner = users.save(owner);
+    BankAccount firstBankAccount = bankAccountService.createBankAccount(owner.getId());
+    bankAccountService.depositMoney(firstBankAccount.getId(), new BigDecimal("20.10"));
+    BankAccount secondBankAccount = bankAccountService.createBankAccount(owner.getId());
+    BatchTransferResponse response = bankAccountService.transferMoney(Arrays.asList(
+        new TransferRequest(firstBankAccount.getId(), secondBankAccount.getId(), "10.3"),
+        new TransferRequest(secondBankAccount.getId(), firstBankAccount.getId(), "100"),
+        new TransferRequest(secondBankAccount.getId(), firstBankAccount.getId(), "0.3")
+    ), BatchTransferMode.BEST_EFFORT);
+    assertTrue(response.isCommitted());
+    assertEquals(TransferStatus.APPLIED, response.getResults().get(0).getStatus());
+    assertEquals(TransferStatus.FAILED, response.getResults().get(1).getStatus());
+    assertEquals(TransferStatus.APPLIED, response.getResults().get(2).getStatus());
+    assertTrue(response.getResults().get(2).getBalanceFrom().doubleValue() == 10.0);
+    firstBankAccount = accounts.findById(firstBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    secondBankAccount = accounts.findById(secondBankAccount.getId()).orElseThrow(IllegalStateException::new);
+    assertTrue(firstBankAccount.getBalance().doubleValue() == 10.1);
+    assertTrue(secondBankAccount.getBalance().doubleValue() == 10.0);
+  }
+}
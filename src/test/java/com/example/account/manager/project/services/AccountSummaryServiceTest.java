@@ -0,0 +1,132 @@
+package com.example.account.manager.project.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.account.manager.project.entities.AccountSummary;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.exceptions.UserNotFoundException;
+import com.example.account.manager.project.repositories.AccountSummaryRepository;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.responses.BalanceSummary;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ComponentScan({"com.example.account.manager.project.services", "com.example.account.manager.project.oplog"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+public class AccountSummaryServiceTest {
+
+  @Autowired
+  UserRepository users;
+
+  @Autowired
+  AccountSummaryRepository summaryRepository;
+
+  @Autowired
+  BankAccountService bankAccountService;
+
+  @Autowired
+  AccountSummaryService summaries;
+
+  @Autowired
+  HotAccountService hotAccountService;
+
+  @Test
+  public void testUserSummary_operations_countersMatchRecount() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    User other = users.save(new User("Daria", "Vasilueva"));
+    BalanceSummary before = summaries.totalSummary();
+    Long bankAccountId1 = bankAccountService.createBankAccount(user.getId()).getId();
+    Long bankAccountId2 = bankAccountService.createBankAccount(user.getId()).getId();
+    Long bankAccountId3 = bankAccountService.createBankAccount(other.getId()).getId();
+    bankAccountService.depositMoney(bankAccountId1, new BigDecimal("20.20"));
+    bankAccountService.depositMoney(bankAccountId2, new BigDecimal("10.01"));
+    bankAccountService.withdrawMoney(bankAccountId1, new BigDecimal("0.20"));
+    bankAccountService.transferMoney(bankAccountId1, bankAccountId3, new BigDecimal("5.00"));
+    bankAccountService.blockBankAccount(bankAccountId2);
+    bankAccountService.deleteBankAccount(bankAccountId3);
+
+    BalanceSummary summary = summaries.userSummary(user.getId());
+    assertEquals(2, summary.getAccounts());
+    assertEquals(new BigDecimal("25.01"), summary.getBalance());
+    assertEquals(1, summary.getStatuses().get(BankAccountStatus.ACTIVE).getAccounts());
+    assertEquals(new BigDecimal("15.00"), summary.getStatuses().get(BankAccountStatus.ACTIVE).getBalance());
+    assertEquals(new BigDecimal("10.01"), summary.getStatuses().get(BankAccountStatus.BLOCKED).getBalance());
+    assertEquals(0, summaries.userSummary(other.getId()).getAccounts());
+
+    BalanceSummary after = summaries.totalSummary();
+    assertEquals(before.getAccounts() + 2, after.getAccounts());
+    assertEquals(before.getBalance().add(new BigDecimal("25.01")), after.getBalance());
+    assertEquals(0, summaries.verify());
+  }
+
+  @Test
+  public void testVerify_corruptedCounter_mismatchFound() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    Long bankAccountId = bankAccountService.createBankAccount(user.getId()).getId();
+    bankAccountService.depositMoney(bankAccountId, new BigDecimal("1.00"));
+    summaryRepository.save(new AccountSummary(user.getId(), BankAccountStatus.ACTIVE, 0, 1, 99));
+    assertTrue(summaries.verify() > 0);
+
+    summaries.rebuild();
+    assertEquals(0, summaries.verify());
+    assertEquals(new BigDecimal("1.00"), summaries.userSummary(user.getId()).getBalance());
+  }
+
+  @Test
+  public void testUserSummary_concurrentCreditsToHotBankAccount_spreadOverOwnerStripes() throws Exception {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    Long bankAccountId = bankAccountService.createBankAccount(user.getId()).getId();
+    hotAccountService.promote(bankAccountId);
+    int threads = 8;
+    int deposits = 10;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> results = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      results.add(executor.submit(() -> {
+        start.await();
+        for (int j = 0; j < deposits; j++) {
+          bankAccountService.depositMoney(bankAccountId, new BigDecimal("1.00"));
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> result : results) {
+      result.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    assertEquals(new BigDecimal("80.00"), summaries.userSummary(user.getId()).getBalance());
+    long creditedStripes = summaryRepository.findAll().stream()
+        .filter(row -> row.getOwnerId().equals(user.getId()) && row.getBalance() > 0)
+        .count();
+    assertTrue(creditedStripes > 1);
+    assertEquals(0, summaries.verify());
+  }
+
+  @Test(expected = UserNotFoundException.class)
+  public void testUserSummary_invalidUser_UserNotFoundException() {
+    summaries.userSummary(Long.MAX_VALUE);
+  }
+}
@@ -0,0 +1,114 @@
+package com.example.account.manager.project.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.exceptions.UserNotFoundException;
+import com.example.account.manager.project.repositories.UserRepository;
+import java.math.BigDecimal;
+import java.util.List;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = {
+    "bank.accounts.read-cache.ttl-millis=60000",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@ComponentScan({"com.example.account.manager.project.services", "com.example.account.manager.project.oplog"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+public class BankAccountQueryServiceTest {
+
+  @Autowired
+  UserRepository users;
+
+  @Autowired
+  BankAccountService bankAccountService;
+
+  @Autowired
+  BankAccountQueryService queries;
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  @Test
+  public void testFindById_cacheEnabled_cachedUntilOperation() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    Long bankAccountId = bankAccountService.createBankAccount(user.getId()).getId();
+    BankAccount first = queries.findById(bankAccountId).get();
+    assertSame(first, queries.findById(bankAccountId).get());
+
+    bankAccountService.depositMoney(bankAccountId, new BigDecimal("10.00"));
+    BankAccount afterDeposit = queries.findById(bankAccountId).get();
+    assertNotSame(first, afterDeposit);
+    assertEquals(new BigDecimal("10.00"), afterDeposit.getTotalBalance());
+  }
+
+  @Test
+  public void testFindById_transfer_bothAccountsInvalidated() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    Long bankAccountIdFrom = bankAccountService.createBankAccount(user.getId()).getId();
+    Long bankAccountIdTo = bankAccountService.createBankAccount(user.getId()).getId();
+    bankAccountService.depositMoney(bankAccountIdFrom, new BigDecimal("5.00"));
+    queries.findById(bankAccountIdFrom);
+    queries.findById(bankAccountIdTo);
+
+    bankAccountService.transferMoney(bankAccountIdFrom, bankAccountIdTo, new BigDecimal("2.50"));
+    assertEquals(new BigDecimal("2.50"), queries.findById(bankAccountIdFrom).get().getTotalBalance());
+    assertEquals(new BigDecimal("2.50"), queries.findById(bankAccountIdTo).get().getTotalBalance());
+  }
+
+  @Test
+  public void testFindAll_manyOwners_singleQuery() {
+    for (int i = 0; i < 3; i++) {
+      bankAccountService.createBankAccount(users.save(new User("Vladimir", "Dyakov")).getId());
+    }
+    Statistics statistics = statistics();
+    List<BankAccount> bankAccounts = queries.findAll();
+    //счета из других тестов этого класса тоже попадают в выборку
+    assertTrue(bankAccounts.stream().map(bankAccount -> bankAccount.getUser().getId()).distinct().count() >= 3);
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  public void testFindByUser_manyBankAccounts_singleQuery() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    for (int i = 0; i < 3; i++) {
+      bankAccountService.createBankAccount(user.getId());
+    }
+    bankAccountService.createBankAccount(users.save(new User("Daria", "Vasilueva")).getId());
+    Statistics statistics = statistics();
+    List<BankAccount> bankAccounts = queries.findByUser(user.getId());
+    assertEquals(3, bankAccounts.size());
+    bankAccounts.forEach(bankAccount -> assertEquals(user.getId(), bankAccount.getUser().getId()));
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  @Test(expected = UserNotFoundException.class)
+  public void testFindByUser_invalidUser_UserNotFoundException() {
+    queries.findByUser(Long.MAX_VALUE);
+  }
+
+  private Statistics statistics() {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+    return statistics;
+  }
+}
@@ -0,0 +1,176 @@
+package com.example.account.manager.project.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.IdempotencyRecord;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.exceptions.BankAccountWithdrawOperationException;
+import com.example.account.manager.project.exceptions.IdempotencyKeyInUseException;
+import com.example.account.manager.project.exceptions.IdempotencyKeyReusedException;
+import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.example.account.manager.project.repositories.IdempotencyRecordRepository;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.responses.TransferReceipt;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ComponentScan({"com.example.account.manager.project.services", "com.example.account.manager.project.oplog"})
+@Transactional(propagation = Propagation.SUPPORTS)
+@DirtiesContext
+public class IdempotencyServiceTest {
+
+  @Autowired
+  UserRepository users;
+
+  @Autowired
+  BankAccountRepository accounts;
+
+  @Autowired
+  IdempotencyRecordRepository records;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  BankAccountService bankAccountService;
+
+  @Autowired
+  IdempotencyService idempotency;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void testDepositMoney_sameKeyTwice_appliedOnceAndSameResult() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    BankAccount first = idempotency.depositMoney("deposit-1", bankAccount.getId(), new BigDecimal("10.50"));
+    BankAccount second = idempotency.depositMoney("deposit-1", bankAccount.getId(), new BigDecimal("10.5"));
+    assertEquals(new BigDecimal("10.50"), first.getTotalBalance());
+    assertEquals(new BigDecimal("10.50"), second.getTotalBalance());
+    assertEquals(first.getStatus(), second.getStatus());
+    assertEquals(first.getUser().getId(), second.getUser().getId());
+    assertEquals(new BigDecimal("10.50"), accounts.readById(bankAccount.getId()).get().getTotalBalance());
+  }
+
+  @Test
+  public void testTransferMoney_replayAfterRestart_resultFromTable() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount from = bankAccountService.createBankAccount(user.getId());
+    BankAccount to = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.depositMoney(from.getId(), new BigDecimal("10.00"));
+    TransferReceipt receipt = idempotency.transferMoney("transfer-1", from.getId(), to.getId(), new BigDecimal("3.25"));
+
+    //новый экземпляр с пустым кэшем, как после перезапуска
+    IdempotencyService restarted = new IdempotencyService(bankAccountService, records, users, transactionManager,
+        new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), 16, 3600, 60);
+    TransferReceipt replayed = restarted.transferMoney("transfer-1", from.getId(), to.getId(), new BigDecimal("3.25"));
+    assertEquals(receipt, replayed);
+    assertEquals(new BigDecimal("6.75"), accounts.readById(from.getId()).get().getTotalBalance());
+    assertEquals(new BigDecimal("3.25"), accounts.readById(to.getId()).get().getTotalBalance());
+  }
+
+  @Test
+  public void testWithdrawMoney_failedOperation_keyReleased() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    try {
+      idempotency.withdrawMoney("withdraw-1", bankAccount.getId(), new BigDecimal("5.00"));
+    } catch (BankAccountWithdrawOperationException expected) {
+    }
+    assertFalse(records.existsById("withdraw-1"));
+    bankAccountService.depositMoney(bankAccount.getId(), new BigDecimal("7.00"));
+    BankAccount result = idempotency.withdrawMoney("withdraw-1", bankAccount.getId(), new BigDecimal("5.00"));
+    assertEquals(new BigDecimal("2.00"), result.getTotalBalance());
+    assertTrue(records.findById("withdraw-1").get().isCompleted());
+  }
+
+  @Test
+  public void testDepositMoney_sameKeyDifferentAmount_IdempotencyKeyReusedException() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    idempotency.depositMoney("deposit-2", bankAccount.getId(), new BigDecimal("1.00"));
+    thrown.expect(IdempotencyKeyReusedException.class);
+    idempotency.depositMoney("deposit-2", bankAccount.getId(), new BigDecimal("2.00"));
+  }
+
+  @Test
+  public void testDepositMoney_resultNotStored_depositRolledBack() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    //запись ключа пропадает внутри операции, и результат сохранить не удаётся
+    BankAccountService losingRecord = Mockito.mock(BankAccountService.class);
+    Mockito.when(losingRecord.depositMoney(bankAccount.getId(), new BigDecimal("4.00"))).thenAnswer(invocation -> {
+      BankAccount result = bankAccountService.depositMoney(bankAccount.getId(), new BigDecimal("4.00"));
+      records.deleteById("deposit-3");
+      return result;
+    });
+    IdempotencyService service = new IdempotencyService(losingRecord, records, users, transactionManager,
+        new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), 16, 3600, 60);
+    try {
+      service.depositMoney("deposit-3", bankAccount.getId(), new BigDecimal("4.00"));
+      fail("Deposit without stored result must fail");
+    } catch (IdempotencyKeyInUseException expected) {
+    }
+    assertEquals(new BigDecimal("0.00"), accounts.readById(bankAccount.getId()).get().getTotalBalance());
+    assertFalse(records.existsById("deposit-3"));
+  }
+
+  @Test
+  public void testDepositMoney_claimOlderThanLease_keyClaimedAgain() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    //ключ занят запросом, процесс которого остановился до завершения операции
+    records.saveAndFlush(new IdempotencyRecord("deposit-4", "deposit:" + bankAccount.getId() + ":400",
+        System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(2)));
+    BankAccount result = idempotency.depositMoney("deposit-4", bankAccount.getId(), new BigDecimal("4.00"));
+    assertEquals(new BigDecimal("4.00"), result.getTotalBalance());
+    assertTrue(records.findById("deposit-4").get().isCompleted());
+  }
+
+  @Test
+  public void testDepositMoney_claimWithinLease_IdempotencyKeyInUseException() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    records.saveAndFlush(new IdempotencyRecord("deposit-5", "deposit:" + bankAccount.getId() + ":400", System.currentTimeMillis()));
+    thrown.expect(IdempotencyKeyInUseException.class);
+    idempotency.depositMoney("deposit-5", bankAccount.getId(), new BigDecimal("4.00"));
+  }
+
+  @Test
+  public void testDepositMoney_operationThrowsError_keyReleased() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    BankAccountService failing = Mockito.mock(BankAccountService.class);
+    Mockito.when(failing.depositMoney(bankAccount.getId(), new BigDecimal("4.00"))).thenThrow(new OutOfMemoryError());
+    IdempotencyService service = new IdempotencyService(failing, records, users, transactionManager,
+        new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), 16, 3600, 60);
+    try {
+      service.depositMoney("deposit-6", bankAccount.getId(), new BigDecimal("4.00"));
+      fail("Deposit must fail with the error of the operation");
+    } catch (OutOfMemoryError expected) {
+    }
+    assertFalse(records.existsById("deposit-6"));
+  }
+}
@@ -0,0 +1,69 @@
+package com.example.account.manager.project.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.exceptions.BankAccountIllegalStateException;
+import com.example.account.manager.project.exceptions.BankAccountNotFoundException;
+import java.math.BigDecimal;
+import org.junit.Test;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@ActiveProfiles("ledger")
+public class LedgerBankAccountServiceTest extends AbstractBankAccountServiceTest {
+
+  @Test
+  public void testLedgerService_ledgerProfile_ledgerImplementation() {
+    assertTrue(bankAccountService instanceof LedgerBankAccountService);
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testDepositAndWithdraw_validBankAccount_persistedBalance() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.depositMoney(bankAccount.getId(), new BigDecimal("100.50"));
+    BankAccount result = bankAccountService.withdrawMoney(bankAccount.getId(), new BigDecimal("0.50"));
+    assertEquals(new BigDecimal("100.00"), result.getBalance());
+    assertEquals(new BigDecimal("100.00"), accounts.findById(bankAccount.getId()).get().getBalance());
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testTransferMoney_blockedBankAccountTo_balanceUnchanged() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccountFrom = bankAccountService.createBankAccount(user.getId());
+    BankAccount bankAccountTo = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.depositMoney(bankAccountFrom.getId(), new BigDecimal("10.00"));
+    bankAccountService.blockBankAccount(bankAccountTo.getId());
+    try {
+      bankAccountService.transferMoney(bankAccountFrom.getId(), bankAccountTo.getId(), new BigDecimal("4.00"));
+    } catch (BankAccountIllegalStateException e) {
+      assertEquals(new BigDecimal("10.00"), accounts.findById(bankAccountFrom.getId()).get().getBalance());
+      assertEquals(BankAccountStatus.BLOCKED, accounts.findById(bankAccountTo.getId()).get().getStatus());
+      return;
+    }
+    throw new AssertionError("Transfer to blocked bank account was applied");
+  }
+
+  @Test
+  @Transactional(propagation = Propagation.SUPPORTS)
+  @DirtiesContext
+  public void testDeleteBankAccount_validBankAccount_removedFromLedger() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    bankAccountService.deleteBankAccount(bankAccount.getId());
+    assertFalse(accounts.findById(bankAccount.getId()).isPresent());
+    thrown.expect(BankAccountNotFoundException.class);
+    bankAccountService.depositMoney(bankAccount.getId(), BigDecimal.ONE);
+  }
+}
@@ -0,0 +1,102 @@
+package com.example.account.manager.project.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.BankAccountStatus;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.example.account.manager.project.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = "bank.accounts.locking=optimistic")
+@ComponentScan({"com.example.account.manager.project.services", "com.example.account.manager.project.oplog"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+public class OptimisticBankAccountServiceTest {
+
+  @Autowired
+  UserRepository users;
+
+  @Autowired
+  BankAccountRepository accounts;
+
+  @Autowired
+  BankAccountService bankAccountService;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void testDepositMoney_optimisticLocking_versionIncremented() {
+    assertTrue(bankAccountService instanceof RetryingBankAccountService);
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    Long version = accounts.readById(bankAccount.getId()).get().getVersion();
+    bankAccountService.depositMoney(bankAccount.getId(), new BigDecimal("10.00"));
+    BankAccount result = accounts.readById(bankAccount.getId()).get();
+    assertEquals(new BigDecimal("10.00"), result.getBalance());
+    assertEquals(Long.valueOf(version + 1), result.getVersion());
+  }
+
+  @Test
+  public void testSave_staleVersion_OptimisticLockingFailureException() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    BankAccount bankAccount = bankAccountService.createBankAccount(user.getId());
+    BankAccount stale = accounts.readById(bankAccount.getId()).get();
+    bankAccountService.depositMoney(bankAccount.getId(), new BigDecimal("10.00"));
+    stale.setBalance(new BigDecimal("1.00"));
+    thrown.expect(OptimisticLockingFailureException.class);
+    accounts.save(stale);
+  }
+
+  @Test
+  public void testRetry_conflictThenSuccess_retried() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    BankAccountService delegate = Mockito.mock(BankAccountService.class);
+    BankAccount bankAccount = new BankAccount(1L, new BigDecimal("1.00"), BankAccountStatus.ACTIVE, null);
+    Mockito.when(delegate.depositMoney(1L, BigDecimal.ONE))
+        .thenThrow(new ObjectOptimisticLockingFailureException(BankAccount.class, 1L))
+        .thenReturn(bankAccount);
+    RetryingBankAccountService service = new RetryingBankAccountService(delegate, registry, 3, 1, 1);
+    assertEquals(bankAccount, service.depositMoney(1L, BigDecimal.ONE));
+    Mockito.verify(delegate, Mockito.times(2)).depositMoney(1L, BigDecimal.ONE);
+    assertEquals(1.0, registry.counter("bank.accounts.optimistic.conflicts", "operation", "deposit").count(), 0.0);
+  }
+
+  @Test
+  public void testRetry_conflictOnEveryAttempt_OptimisticLockingFailureException() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    BankAccountService delegate = Mockito.mock(BankAccountService.class);
+    Mockito.when(delegate.blockBankAccount(1L)).thenThrow(new ObjectOptimisticLockingFailureException(BankAccount.class, 1L));
+    RetryingBankAccountService service = new RetryingBankAccountService(delegate, registry, 3, 0, 0);
+    try {
+      service.blockBankAccount(1L);
+    } catch (OptimisticLockingFailureException e) {
+      Mockito.verify(delegate, Mockito.times(3)).blockBankAccount(1L);
+      assertEquals(1.0, registry.counter("bank.accounts.optimistic.retries.exhausted", "operation", "block").count(), 0.0);
+      return;
+    }
+    throw new AssertionError("Conflict was not reported");
+  }
+}
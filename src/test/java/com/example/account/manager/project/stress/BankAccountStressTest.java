@@ -0,0 +1,100 @@
+package com.example.account.manager.project.stress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.account.manager.project.entities.BankAccount;
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.repositories.BankAccountRepository;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.services.BankAccountService;
+import com.example.account.manager.project.stress.StressHarness.Outcome;
+import com.example.account.manager.project.stress.StressHarness.Report;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.search.Search;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Короткий прогон по умолчанию; длинный с нужными параметрами:
+ * mvn test -Dtest=BankAccountStressTest -Dstress.threads=32 -Dstress.accounts=100 -Dstress.seconds=60 -Dstress.locking=optimistic
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.NONE, properties = {
+    "journal.enabled=false",
+    "bank.accounts.locking=${stress.locking:pessimistic}",
+    "logging.level.com.example.account.manager.project.services=WARN",
+    "logging.level.bank.operations=WARN"
+})
+@Slf4j
+public class BankAccountStressTest {
+
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+  @Autowired
+  UserRepository users;
+
+  @Autowired
+  BankAccountRepository accounts;
+
+  @Autowired
+  BankAccountService bankAccountService;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Test
+  public void testRandomOperations_manyThreads_moneyConservedAndNoDeadlocks() throws Exception {
+    int threads = Integer.getInteger("stress.threads", 8);
+    int accountCount = Integer.getInteger("stress.accounts", 10);
+    long seconds = Long.getLong("stress.seconds", 2);
+    User owner = users.save(new User("Stress", "Owner"));
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < accountCount; i++) {
+      BankAccount bankAccount = bankAccountService.createBankAccount(owner.getId());
+      bankAccountService.depositMoney(bankAccount.getId(), INITIAL_BALANCE);
+      ids.add(bankAccount.getId());
+    }
+
+    long timedBefore = timedOperations(null);
+    long rejectedBefore = timedOperations("rejected");
+    Report report = new StressHarness(bankAccountService, ids, threads, seconds, TimeUnit.SECONDS).run();
+    log.warn(System.lineSeparator() + report);
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (Long id : ids) {
+      BigDecimal balance = accounts.readById(id).get().getTotalBalance();
+      assertTrue("Negative balance of bank account with id:" + id + ": " + balance, balance.signum() >= 0);
+      total = total.add(balance);
+    }
+    BigDecimal expected = INITIAL_BALANCE.multiply(BigDecimal.valueOf(accountCount)).add(report.getDeposited())
+        .subtract(report.getWithdrawn());
+    assertEquals(expected, total);
+    assertEquals(0, report.count(Outcome.DEADLOCK));
+    assertEquals(report.getErrors().toString(), 0, report.count(Outcome.ERROR));
+    assertTrue(report.count(Outcome.APPLIED) > 0);
+
+    //каждый вызов сервиса учтён ровно один раз, даже если его обернул RetryingBankAccountService
+    assertEquals(report.total(), timedOperations(null) - timedBefore);
+    assertEquals(report.count(Outcome.REJECTED), timedOperations("rejected") - rejectedBefore);
+    assertEquals(0, meterRegistry.get("bank.accounts.transactions.active").gauge().value(), 0);
+  }
+
+  private long timedOperations(String outcome) {
+    Search search = meterRegistry.find("bank.accounts.operation");
+    if (outcome != null) {
+      search = search.tag("outcome", outcome);
+    }
+    return search.timers().stream().mapToLong(Timer::count).sum();
+  }
+}
@@ -0,0 +1,223 @@
+package com.example.account.manager.project.stress;
+
+import com.example.account.manager.project.exceptions.BankAccountIllegalStateException;
+import com.example.account.manager.project.exceptions.BankAccountStatusException;
+import com.example.account.manager.project.exceptions.BankAccountWithdrawOperationException;
+import com.example.account.manager.project.services.BankAccountService;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+/**
+ * Нагрузка на BankAccountService из нескольких потоков: случайные переводы, пополнения, списания,
+ * блокировки и активации по набору счетов. Считает исходы операций, задержки и суммы пополнений
+ * и списаний, по которым потом проверяется, что деньги не появились и не пропали.
+ */
+public class StressHarness {
+
+  enum Operation { TRANSFER, DEPOSIT, WITHDRAW, BLOCK, ACTIVATE }
+
+  enum Outcome { APPLIED, REJECTED, CONFLICT, LOCK_TIMEOUT, DEADLOCK, ERROR }
+
+  //H2: взаимная блокировка
+  private static final String DEADLOCK_SQL_STATE = "40001";
+  private static final int MAX_AMOUNT_CENTS = 1000;
+  private static final int MAX_REPORTED_ERRORS = 5;
+
+  private final BankAccountService service;
+  private final List<Long> bankAccountIds;
+  private final int threads;
+  private final long durationNanos;
+
+  private final Map<Operation, Recorder> latencies = new EnumMap<>(Operation.class);
+  private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+  private final LongAdder depositedCents = new LongAdder();
+  private final LongAdder withdrawnCents = new LongAdder();
+  private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+  public StressHarness(BankAccountService service, List<Long> bankAccountIds, int threads, long duration, TimeUnit unit) {
+    this.service = service;
+    this.bankAccountIds = bankAccountIds;
+    this.threads = threads;
+    this.durationNanos = unit.toNanos(duration);
+    for (Operation operation : Operation.values()) {
+      latencies.put(operation, new Recorder(3));
+    }
+    for (Outcome outcome : Outcome.values()) {
+      outcomes.put(outcome, new LongAdder());
+    }
+  }
+
+  public Report run() throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+          long deadline = System.nanoTime() + durationNanos;
+          while (System.nanoTime() < deadline) {
+            execute(ThreadLocalRandom.current());
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          done.countDown();
+        }
+      }, "stress-" + i);
+      worker.start();
+    }
+    long started = System.nanoTime();
+    start.countDown();
+    done.await();
+    long elapsedNanos = System.nanoTime() - started;
+    Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    latencies.forEach((operation, recorder) -> histograms.put(operation, recorder.getIntervalHistogram()));
+    Map<Outcome, Long> counts = new EnumMap<>(Outcome.class);
+    outcomes.forEach((outcome, adder) -> counts.put(outcome, adder.sum()));
+    return new Report(threads, bankAccountIds.size(), elapsedNanos, histograms, counts,
+        BigDecimal.valueOf(depositedCents.sum(), 2), BigDecimal.valueOf(withdrawnCents.sum(), 2), new ArrayList<>(errors));
+  }
+
+  private void execute(ThreadLocalRandom random) {
+    int dice = random.nextInt(100);
+    Operation operation = dice < 60 ? Operation.TRANSFER : dice < 75 ? Operation.DEPOSIT : dice < 90 ? Operation.WITHDRAW
+        : dice < 95 ? Operation.BLOCK : Operation.ACTIVATE;
+    Long bankAccountId = bankAccountIds.get(random.nextInt(bankAccountIds.size()));
+    long cents = 1 + random.nextInt(MAX_AMOUNT_CENTS);
+    BigDecimal amount = BigDecimal.valueOf(cents, 2);
+    long started = System.nanoTime();
+    Outcome outcome = Outcome.APPLIED;
+    try {
+      switch (operation) {
+        case TRANSFER:
+          service.transferMoney(bankAccountId, otherAccount(random, bankAccountId), amount);
+          break;
+        case DEPOSIT:
+          service.depositMoney(bankAccountId, amount);
+          depositedCents.add(cents);
+          break;
+        case WITHDRAW:
+          service.withdrawMoney(bankAccountId, amount);
+          withdrawnCents.add(cents);
+          break;
+        case BLOCK:
+          service.blockBankAccount(bankAccountId);
+          break;
+        default:
+          service.activateBankAccount(bankAccountId);
+          break;
+      }
+    } catch (RuntimeException e) {
+      outcome = classify(e);
+      if (outcome == Outcome.ERROR && errors.size() < MAX_REPORTED_ERRORS) {
+        errors.add(operation + ": " + e);
+      }
+    }
+    latencies.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+    outcomes.get(outcome).increment();
+  }
+
+  private Long otherAccount(ThreadLocalRandom random, Long bankAccountId) {
+    int index = bankAccountIds.indexOf(bankAccountId);
+    return bankAccountIds.get((index + 1 + random.nextInt(bankAccountIds.size() - 1)) % bankAccountIds.size());
+  }
+
+  private static Outcome classify(RuntimeException e) {
+    if (e instanceof BankAccountWithdrawOperationException || e instanceof BankAccountIllegalStateException
+        || e instanceof BankAccountStatusException) {
+      return Outcome.REJECTED;
+    }
+    if (e instanceof DeadlockLoserDataAccessException || hasSqlState(e, DEADLOCK_SQL_STATE)) {
+      return Outcome.DEADLOCK;
+    }
+    if (e instanceof OptimisticLockingFailureException) {
+      return Outcome.CONFLICT;
+    }
+    if (e instanceof PessimisticLockingFailureException) {
+      return Outcome.LOCK_TIMEOUT;
+    }
+    return Outcome.ERROR;
+  }
+
+  private static boolean hasSqlState(Throwable e, String sqlState) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLException && sqlState.equals(((SQLException) cause).getSQLState())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public static final class Report {
+
+    private final int threads;
+    private final int accounts;
+    private final long elapsedNanos;
+    private final Map<Operation, Histogram> latencies;
+    private final Map<Outcome, Long> outcomes;
+    private final BigDecimal deposited;
+    private final BigDecimal withdrawn;
+    private final List<String> errors;
+
+    Report(int threads, int accounts, long elapsedNanos, Map<Operation, Histogram> latencies, Map<Outcome, Long> outcomes,
+        BigDecimal deposited, BigDecimal withdrawn, List<String> errors) {
+      this.threads = threads;
+      this.accounts = accounts;
+      this.elapsedNanos = elapsedNanos;
+      this.latencies = latencies;
+      this.outcomes = outcomes;
+      this.deposited = deposited;
+      this.withdrawn = withdrawn;
+      this.errors = errors;
+    }
+
+    public long count(Outcome outcome) {
+      return outcomes.get(outcome);
+    }
+
+    public long total() {
+      return outcomes.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public BigDecimal getDeposited() {
+      return deposited;
+    }
+
+    public BigDecimal getWithdrawn() {
+      return withdrawn;
+    }
+
+    public List<String> getErrors() {
+      return errors;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder report = new StringBuilder();
+      double seconds = elapsedNanos / 1e9;
+      report.append(String.format("Stress: %d threads, %d accounts, %.1f s, %d operations, %.0f ops/s%n",
+          threads, accounts, seconds, total(), total() / seconds));
+      report.append(String.format("%-9s %8s %9s %9s %9s %9s%n", "operation", "count", "p50 us", "p99 us", "p99.9 us", "max us"));
+      latencies.forEach((operation, histogram) -> report.append(String.format("%-9s %8d %9d %9d %9d %9d%n", operation,
+          histogram.getTotalCount(), histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+          histogram.getValueAtPercentile(99.9), histogram.getMaxValue())));
+      report.append("outcomes: ").append(outcomes).append(System.lineSeparator());
+      errors.forEach(error -> report.append("error: ").append(error).append(System.lineSeparator()));
+      return report.toString();
+    }
+  }
+}
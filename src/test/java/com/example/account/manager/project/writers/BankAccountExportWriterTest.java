@@ -0,0 +1,89 @@
+package com.example.account.manager.project.writers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.account.manager.project.entities.User;
+import com.example.account.manager.project.history.TransactionHistoryWriter;
+import com.example.account.manager.project.repositories.UserRepository;
+import com.example.account.manager.project.services.BankAccountService;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ComponentScan({"com.example.account.manager.project.services", "com.example.account.manager.project.oplog",
+    "com.example.account.manager.project.history"})
+@Import(BankAccountExportWriter.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+public class BankAccountExportWriterTest {
+
+  @Autowired
+  UserRepository users;
+
+  @Autowired
+  BankAccountService bankAccountService;
+
+  @Autowired
+  TransactionHistoryWriter history;
+
+  @Autowired
+  BankAccountExportWriter exportWriter;
+
+  @Test
+  public void testWriteAccounts_csv_headerAndRowPerAccount() {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    Long bankAccountId = bankAccountService.createBankAccount(user.getId()).getId();
+    bankAccountService.depositMoney(bankAccountId, new BigDecimal("20.20"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    exportWriter.writeAccounts(ExportFormat.CSV, false, out);
+    String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertEquals("id,userId,status,balance", lines[0]);
+    assertTrue(lines.length > 1);
+    assertTrue(String.join("\n", lines).contains(bankAccountId + "," + user.getId() + ",ACTIVE,20.20"));
+  }
+
+  @Test
+  public void testWriteStatement_ndjsonGzip_movementsOfUserAccounts() throws Exception {
+    User user = users.save(new User("Vladimir", "Dyakov"));
+    User other = users.save(new User("Daria", "Vasilueva"));
+    Long bankAccountId = bankAccountService.createBankAccount(user.getId()).getId();
+    Long otherBankAccountId = bankAccountService.createBankAccount(other.getId()).getId();
+    bankAccountService.depositMoney(bankAccountId, new BigDecimal("10.00"));
+    bankAccountService.transferMoney(bankAccountId, otherBankAccountId, new BigDecimal("2.50"));
+    history.flush();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    exportWriter.writeStatement(user.getId(), 0, Long.MAX_VALUE, ExportFormat.NDJSON, true, out);
+    String[] lines = gunzip(out.toByteArray()).split("\n");
+    assertEquals(2, lines.length);
+    assertTrue(lines[0].startsWith("{\"id\":"));
+    assertTrue(lines[0].contains("\"bankAccountId\":" + bankAccountId + ",\"time\":\""));
+    assertTrue(lines[0].endsWith("\"operation\":\"DEPOSIT\",\"amount\":10.00,\"balance\":10.00,\"counterpartyId\":null}"));
+    assertTrue(lines[1].endsWith("\"operation\":\"TRANSFER\",\"amount\":-2.50,\"balance\":7.50,\"counterpartyId\":" + otherBankAccountId + "}"));
+  }
+
+  private static String gunzip(byte[] compressed) throws IOException {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      return new String(StreamUtils.copyToByteArray(in), StandardCharsets.UTF_8);
+    }
+  }
+}